@@ -2,6 +2,14 @@ package com.example.account.app;
 
 import java.lang.annotation.*;
 
+/**
+ * 계좌 락 정책
+ * tryLockTime  : 락 대기 시간(ms)
+ * leaseTime    : 락 유지 시간(ms), 지나면 자동 해제
+ * fair         : 먼저 기다린 요청부터 락 획득
+ * retryCount   : 대기 시간 내 획득 실패시 재시도 횟수
+ * retryBackoff : 첫 재시도 전 대기(ms), 재시도마다 2배
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
@@ -9,4 +17,12 @@ import java.lang.annotation.*;
 public @interface AccountLock {
     long tryLockTime() default 5000L;
 
+    long leaseTime() default 15000L;
+
+    boolean fair() default false;
+
+    int retryCount() default 0;
+
+    long retryBackoff() default 100L;
+
 }
@@ -0,0 +1,10 @@
+package com.example.account.app;
+
+import java.util.List;
+
+/**
+ * 여러 계좌를 함께 잠그는 요청 (이체)
+ */
+public interface AccountLockIdsInterface {
+    List<String> getAccountNumbers();
+}
@@ -0,0 +1,18 @@
+package com.example.account.app;
+
+import java.lang.annotation.*;
+
+/**
+ * Idempotency-Key 헤더로 재시도를 한 번만 실행
+ * value : key 의 범위 (같은 key 라도 API 가 다르면 다른 요청)
+ *
+ * 성공한 응답만 저장하고, 같은 key 로 다시 오면 저장된 응답을 그대로 돌려준다.
+ * 실패한 요청은 key 를 풀어서 재시도가 다시 실행되게 한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface Idempotent {
+    String value();
+}
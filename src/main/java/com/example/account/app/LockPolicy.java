@@ -0,0 +1,45 @@
+package com.example.account.app;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * AccountLock 에서 읽은 락 정책, 메서드당 한번만 만들어서 재사용
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class LockPolicy {
+    // 기존 LockService 기본값 : 1초 대기, 15초 유지
+    public static final LockPolicy DEFAULT = LockPolicy.builder()
+            .waitMillis(1000L)
+            .leaseMillis(15000L)
+            .fair(false)
+            .retryCount(0)
+            .retryBackoffMillis(100L)
+            .build();
+
+    private final long waitMillis;
+    private final long leaseMillis;
+    private final boolean fair;
+    private final int retryCount;
+    private final long retryBackoffMillis;
+
+    public static LockPolicy from(AccountLock accountLock) {
+        if (accountLock == null) {
+            return DEFAULT;
+        }
+        return LockPolicy.builder()
+                .waitMillis(accountLock.tryLockTime())
+                .leaseMillis(accountLock.leaseTime())
+                .fair(accountLock.fair())
+                .retryCount(accountLock.retryCount())
+                .retryBackoffMillis(accountLock.retryBackoff())
+                .build();
+    }
+
+    public long backoffMillis(int attempt) {
+        return retryBackoffMillis << Math.min(attempt, 16);
+    }
+}
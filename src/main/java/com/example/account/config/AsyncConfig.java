@@ -0,0 +1,58 @@
+package com.example.account.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 잔액 사용/취소를 servlet 스레드 밖에서 처리하기 위한 executor
+ * 일괄 처리는 따로 둬서 큰 batch 가 단건 요청의 스레드/큐를 차지하지 않게 한다.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+    @Value("${account.transaction.executor.core-size:16}")
+    private int corePoolSize;
+
+    @Value("${account.transaction.executor.max-size:64}")
+    private int maxPoolSize;
+
+    @Value("${account.transaction.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${account.transaction.batch.executor.size:8}")
+    private int batchPoolSize;
+
+    @Value("${account.transaction.batch.executor.queue-capacity:100}")
+    private int batchQueueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor transactionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("transaction-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor batchTransactionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchPoolSize);
+        executor.setMaxPoolSize(batchPoolSize);
+        executor.setQueueCapacity(batchQueueCapacity);
+        executor.setThreadNamePrefix("batch-transaction-");
+        // 꽉 차면 요청 스레드에서 처리 (batch 요청이 많을수록 느려진다)
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+
+        return executor;
+    }
+}
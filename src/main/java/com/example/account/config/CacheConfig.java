@@ -0,0 +1,68 @@
+package com.example.account.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * JVM 내부 캐시 (Caffeine)
+ * recordStats 를 켜두면 actuator 가 cache.gets / cache.evictions 등을 metrics 로 노출한다
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String ACCOUNT_USER = "accountUser";
+    public static final String TRANSACTION = "transaction";
+    public static final String TRANSACTION_NOT_FOUND = "transactionNotFound";
+
+    @Value("${account.cache.account-user.maximum-size:10000}")
+    private long accountUserMaximumSize;
+
+    @Value("${account.cache.account-user.ttl-seconds:600}")
+    private long accountUserTtlSeconds;
+
+    @Value("${account.cache.transaction.maximum-size:100000}")
+    private long transactionMaximumSize;
+
+    @Value("${account.cache.transaction.ttl-seconds:3600}")
+    private long transactionTtlSeconds;
+
+    @Value("${account.cache.transaction-not-found.maximum-size:10000}")
+    private long transactionNotFoundMaximumSize;
+
+    @Value("${account.cache.transaction-not-found.ttl-seconds:5}")
+    private long transactionNotFoundTtlSeconds;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // 등록한 캐시만 사용
+        cacheManager.setCacheNames(Collections.emptyList());
+        cacheManager.registerCustomCache(ACCOUNT_USER, Caffeine.newBuilder()
+                .maximumSize(accountUserMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(accountUserTtlSeconds))
+                .recordStats()
+                .build());
+        // 거래는 바뀌지 않으므로 마지막 조회 기준으로 만료
+        cacheManager.registerCustomCache(TRANSACTION, Caffeine.newBuilder()
+                .maximumSize(transactionMaximumSize)
+                .expireAfterAccess(Duration.ofSeconds(transactionTtlSeconds))
+                .recordStats()
+                .build());
+        // 커밋 직전에 조회된 id 가 오래 남지 않도록 짧게
+        cacheManager.registerCustomCache(TRANSACTION_NOT_FOUND, Caffeine.newBuilder()
+                .maximumSize(transactionNotFoundMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(transactionNotFoundTtlSeconds))
+                .recordStats()
+                .build());
+
+        return cacheManager;
+    }
+}
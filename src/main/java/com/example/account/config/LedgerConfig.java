@@ -0,0 +1,33 @@
+package com.example.account.config;
+
+import com.example.account.ledger.LedgerLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * 원장 모드 (account.ledger.enabled=true) 에서만 원장 파일을 연다
+ * 원장은 LedgerService 가 시작할 때 열고, 종료할 때 writer 를 멈춘다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+public class LedgerConfig {
+    @Value("${account.ledger.directory:./ledger}")
+    private String directory;
+
+    @Value("${account.ledger.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${account.ledger.group-commit.max-batch:1000}")
+    private int maxBatch;
+
+    @Bean(destroyMethod = "close")
+    public LedgerLog ledgerLog(MeterRegistry meterRegistry) {
+        return new LedgerLog(Paths.get(directory), segmentSizeMb * 1024 * 1024,
+                maxBatch, meterRegistry);
+    }
+}
@@ -2,15 +2,24 @@ package com.example.account.controller;
 
 import com.example.account.domain.Account;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountImportReport;
 import com.example.account.dto.AccountInfo;
+import com.example.account.dto.BulkAccountLookup;
 import com.example.account.dto.CreateAccount;
 import com.example.account.dto.DeleteAccount;
+import com.example.account.exception.AccountException;
+import com.example.account.service.AccountImportService;
 import com.example.account.service.AccountService;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ImportFormat;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,6 +27,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AccountController {
     private final AccountService accountService;
+    private final AccountImportService accountImportService;
 
 
 
@@ -58,9 +68,46 @@ public class AccountController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 여러 계좌번호 / 사용자를 한 번에 조회 (화면 하나에 한 번)
+     */
+    @PostMapping("/account/bulk")
+    public BulkAccountLookup.Response getAccountsInBulk(
+            @RequestBody @Valid BulkAccountLookup.Request request
+    ){
+        if (request.isEmpty()) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        return BulkAccountLookup.Response.from(request,
+                request.getAccountNumbers() == null ? Collections.emptyMap()
+                        : accountService.getAccountsByAccountNumbers(
+                                request.getAccountNumbers()),
+                request.getUserIds() == null ? Collections.emptyMap()
+                        : accountService.getAccountsByUserIds(request.getUserIds()));
+    }
+
+
 
 
 
+    /**
+     * 계좌 일괄 생성, 요청 본문(CSV / NDJSON)을 읽는 대로 처리하고 끝나면 결과를 반환
+     */
+    @PostMapping("/account/import")
+    public AccountImportReport importAccounts(
+            @RequestParam(value = "format", defaultValue = "CSV") ImportFormat format,
+            HttpServletRequest request
+    ) throws IOException {
+        return accountImportService.importAccounts(request.getInputStream(), format);
+    }
+
+    /**
+     * 진행중인 일괄 생성의 진행 상황
+     */
+    @GetMapping("/account/import")
+    public List<AccountImportReport> getRunningImports() {
+        return accountImportService.runningImports();
+    }
 
     @GetMapping("/account/{id}")
     public Account getAccount(
@@ -1,71 +1,147 @@
 package com.example.account.controller;
 
 import com.example.account.app.AccountLock;
+import com.example.account.app.Idempotent;
+import com.example.account.dto.BatchUseBalance;
 import com.example.account.dto.CancelBalance;
 import com.example.account.dto.QueryTransactionResponse;
+import com.example.account.dto.TransactionHistoryResponse;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransferBalance;
 import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
+import com.example.account.ledger.LedgerService;
+import com.example.account.service.BatchTransactionService;
+import com.example.account.service.FailedTransactionRecorder;
+import com.example.account.service.TransactionExportService;
 import com.example.account.service.TransactionService;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ExportFormat;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.TRANSFER_OUT;
+import static com.example.account.type.TransactionType.USE;
 
 /**
  * 잔액 관련 컨트롤러
  * 1. 잔액 사용
  * 2. 잔액 사용 취소
  * 3. 거래 확인
+ * 4. 계좌 거래 내역 (커서 페이지)
+ * 5. 거래 내보내기 (NDJSON / CSV 스트리밍)
+ * 6. 잔액 사용 일괄 처리 (정산)
+ * 7. 이체 (두 계좌를 함께 잠그고 한 트랜잭션에서 출금/입금)
+ *
+ * 잔액 사용/취소는 CompletableFuture 를 반환해서
+ * 락 대기와 서비스 호출 동안 servlet 스레드를 잡지 않는다
+ *
+ * 락 정책
+ * - 잔액 사용 : 짧게 기다리고 바로 실패 (클라이언트가 재시도)
+ * - 잔액 취소 : 공정 락으로 오래 기다리고 재시도까지 해서 최대한 성공
+ *
+ * 실패 거래는 FailedTransactionRecorder 큐에 넣고 바로 응답 (락도 바로 해제)
+ *
+ * 잔액 사용/취소/이체는 Idempotency-Key 헤더를 받는다 (IdempotencyAspect)
+ * 같은 key 의 재시도는 락을 잡지 않고 처음 성공한 응답을 그대로 받는다
+ *
+ * 원장 모드 (account.ledger.enabled=true) 에서는 잔액 사용/취소를 LedgerService 가 처리한다
+ * (계좌별 직렬화는 LedgerService 가 하므로 @AccountLock 은 건너뛴다)
  */
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 public class TransactionController {
     private final TransactionService transactionService;
+    private final FailedTransactionRecorder failedTransactionRecorder;
+    private final TransactionExportService transactionExportService;
+    private final BatchTransactionService batchTransactionService;
+    private final ObjectProvider<LedgerService> ledgerService;
+
     @PostMapping("/transaction/use")
-    @AccountLock
-    public UseBalance.Response useBalance(
+    @Idempotent("use")
+    @AccountLock(tryLockTime = 200L, leaseTime = 5000L)
+    public CompletableFuture<UseBalance.Response> useBalance(
             @Valid@RequestBody  UseBalance.Request request
-    ) throws InterruptedException {
+    ) {
+        return useBalanceAsync(request)
+                .whenComplete((transactionDto, e) -> {
+                    if (unwrap(e) instanceof AccountException) {
+                        log.error("Failed to use balance. ");
+                        failedTransactionRecorder.record(USE,
+                                request.getAccountNumber(),
+                                request.getAmount()
+                        );
+                    }
+                })
+                .thenApply(UseBalance.Response::from);
 
+    }
 
 
-        try{
-            Thread.sleep(3000L);
-            return UseBalance.Response.from(transactionService.useBalance(request.getUserId(),
-                    request.getAccountNumber(), request.getAmount()));
-        } catch (AccountException e){
-            log.error("Failed to use balance. ");
-            transactionService.saveFailedUseTransaction(
-                    request.getAccountNumber(),
+    /**
+     * 계좌별로 락 한 번, 트랜잭션 하나로 처리하므로 @AccountLock 을 쓰지 않는다
+     * 결과는 항목 순서대로, 실패한 항목은 errorCode 와 함께 F
+     */
+    @PostMapping("/transaction/use/batch")
+    public BatchUseBalance.Response useBalances(
+            @Valid @RequestBody BatchUseBalance.Request request
+    ) {
+        return BatchUseBalance.Response.from(
+                batchTransactionService.useBalances(request.getItems()));
+    }
+
+    @PostMapping("/transaction/transfer")
+    @Idempotent("transfer")
+    @AccountLock(tryLockTime = 1000L, leaseTime = 5000L)
+    public TransferBalance.Response transfer(
+            @Valid @RequestBody TransferBalance.Request request
+    ) {
+        try {
+            return TransferBalance.Response.from(transactionService.transfer(
+                    request.getUserId(), request.getFromAccountNumber(),
+                    request.getToAccountNumber(), request.getAmount()));
+        } catch (AccountException e) {
+            log.error("Failed to transfer. ");
+            failedTransactionRecorder.record(TRANSFER_OUT,
+                    request.getFromAccountNumber(),
                     request.getAmount()
             );
-
             throw e;
         }
-
     }
 
-
     @PostMapping("/transaction/cancel")
-    @AccountLock
-    public CancelBalance.Response cancelBalance(
+    @Idempotent("cancel")
+    @AccountLock(tryLockTime = 3000L, fair = true, retryCount = 2, retryBackoff = 200L)
+    public CompletableFuture<CancelBalance.Response> cancelBalance(
             @Valid @RequestBody CancelBalance.Request request
     ){
-        try{
-            return CancelBalance.Response.from(
-                    transactionService.cancelBalance(request.getTransactionId(),
-                    request.getAccountNumber(), request.getAmount()));
-        } catch (AccountException e){
-            log.error("Failed to use balance. ");
-            transactionService.saveFailedCancelTransaction(
-                    request.getAccountNumber(),
-                    request.getAmount()
-            );
-
-            throw e;
-        }
+        return cancelBalanceAsync(request)
+                .whenComplete((transactionDto, e) -> {
+                    if (unwrap(e) instanceof AccountException) {
+                        log.error("Failed to use balance. ");
+                        failedTransactionRecorder.record(CANCEL,
+                                request.getAccountNumber(),
+                                request.getAmount()
+                        );
+                    }
+                })
+                .thenApply(CancelBalance.Response::from);
 
     }
     @GetMapping("/transaction/{transactionId}")
@@ -77,4 +153,70 @@ public class TransactionController {
                 transactionService.queryTransaction(transactionId));
 
     }
+
+    /**
+     * 최근 거래부터 size 건, 다음 페이지는 응답의 nextCursor 로 요청
+     */
+    @GetMapping("/account/{accountNumber}/transactions")
+    public TransactionHistoryResponse getTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(value = "type", required = false) TransactionType transactionType,
+            @RequestParam(value = "result", required = false)
+                    TransactionResultType transactionResultType,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return TransactionHistoryResponse.from(transactionService.getTransactionHistory(
+                accountNumber, transactionType, transactionResultType, cursor, size));
+    }
+
+    /**
+     * [from, to) 구간 거래를 응답 스트림에 바로 쓴다, account_number 가 없으면 전체 계좌
+     * 검증은 출력 전에 끝내서 실패하면 일반 에러 응답이 나간다
+     */
+    @GetMapping("/transaction/export")
+    public void exportTransactions(
+            @RequestParam(value = "account_number", required = false) String accountNumber,
+            @RequestParam("from")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam("to")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+            HttpServletResponse response) throws IOException {
+        if (!from.isBefore(to)) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        Long accountId = transactionExportService.resolveAccountId(accountNumber);
+
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"transactions." + format.getExtension() + "\"");
+        transactionExportService.export(accountId, from, to, format,
+                response.getOutputStream());
+    }
+
+    private CompletableFuture<TransactionDto> useBalanceAsync(UseBalance.Request request) {
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger != null) {
+            return ledger.useBalance(request.getUserId(),
+                    request.getAccountNumber(), request.getAmount());
+        }
+        return transactionService.useBalanceAsync(request.getUserId(),
+                request.getAccountNumber(), request.getAmount());
+    }
+
+    private CompletableFuture<TransactionDto> cancelBalanceAsync(CancelBalance.Request request) {
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger != null) {
+            return ledger.cancelBalance(request.getTransactionId(),
+                    request.getAccountNumber(), request.getAmount());
+        }
+        return transactionService.cancelBalanceAsync(request.getTransactionId(),
+                request.getAccountNumber(), request.getAmount());
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null
+                ? e.getCause() : e;
+    }
 }
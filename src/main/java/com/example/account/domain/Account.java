@@ -18,7 +18,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Entity
-
+@Table(indexes = {
+        @Index(name = "ux_account_account_number", columnList = "account_number", unique = true),
+        @Index(name = "ix_account_account_user_id", columnList = "account_user_id")
+})
 public class Account extends BaseEntity{
 
 
@@ -34,6 +37,10 @@ public class Account extends BaseEntity{
     private LocalDateTime registerAt;
     private LocalDateTime unRegisteredAt;
 
+    // 낙관적 락 (ConcurrencyMode.OPTIMISTIC)
+    @Version
+    private Long version;
+
 
 
 
@@ -7,8 +7,10 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.SequenceGenerator;
 import java.time.LocalDateTime;
 
 
@@ -20,8 +22,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
 public class BaseEntity {
+    // 시퀀스 한번 조회로 id 50개를 메모리에서 할당 (pooled optimizer)
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "base_seq")
+    @SequenceGenerator(name = "base_seq", sequenceName = "hibernate_sequence",
+            allocationSize = 50)
     private Long id;
 
     @CreatedDate
@@ -17,6 +17,12 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(indexes = {
+        @Index(name = "ux_transaction_transaction_id", columnList = "transaction_id", unique = true),
+        // 계좌별 거래 내역 keyset 조회 (최근 순)
+        @Index(name = "ix_transaction_account_id_transacted_at_id",
+                columnList = "account_id, transacted_at, id")
+})
 public class Transaction extends BaseEntity{
 
     @Enumerated(EnumType.STRING)
@@ -33,5 +39,8 @@ public class Transaction extends BaseEntity{
     private String transactionId;
     private LocalDateTime transactedAt;
 
+    // 이체의 상대 거래 (TRANSFER_OUT <-> TRANSFER_IN)
+    private String counterpartTransactionId;
+
 
 }
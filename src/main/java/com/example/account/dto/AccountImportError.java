@@ -0,0 +1,15 @@
+package com.example.account.dto;
+
+import com.example.account.type.ErrorCode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 생성하지 못한 입력 줄
+ */
+@Getter
+@AllArgsConstructor
+public class AccountImportError {
+    private final long line;
+    private final ErrorCode errorCode;
+}
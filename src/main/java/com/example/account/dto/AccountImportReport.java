@@ -0,0 +1,25 @@
+package com.example.account.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 계좌 일괄 생성 진행 상황 / 결과, errors 는 최대 max-errors 건
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class AccountImportReport {
+    private String importId;
+    private boolean running;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long processed;
+    private long created;
+    private long rejected;
+    private List<AccountImportError> errors;
+}
@@ -0,0 +1,20 @@
+package com.example.account.dto;
+
+import com.example.account.domain.AccountUser;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 캐시에 두는 사용자 정보 (CacheConfig.ACCOUNT_USER)
+ * 엔티티는 영속성 컨텍스트에 묶여 있고 바뀔 수 있으므로 바뀌지 않는 값만 캐시한다
+ */
+@Getter
+@AllArgsConstructor
+public class AccountUserInfo {
+    private final Long id;
+    private final String name;
+
+    public static AccountUserInfo from(AccountUser accountUser) {
+        return new AccountUserInfo(accountUser.getId(), accountUser.getName());
+    }
+}
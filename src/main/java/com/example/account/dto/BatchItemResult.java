@@ -0,0 +1,31 @@
+package com.example.account.dto;
+
+import com.example.account.type.ErrorCode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 일괄 잔액 사용의 항목별 결과, 성공하면 transaction, 실패하면 errorCode
+ */
+@Getter
+@AllArgsConstructor
+public class BatchItemResult {
+    private final String accountNumber;
+    private final Long amount;
+    private final TransactionDto transaction;
+    private final ErrorCode errorCode;
+
+    public static BatchItemResult success(TransactionDto transaction) {
+        return new BatchItemResult(transaction.getAccountNumber(),
+                transaction.getAmount(), transaction, null);
+    }
+
+    public static BatchItemResult failure(UseBalance.Request request, ErrorCode errorCode) {
+        return new BatchItemResult(request.getAccountNumber(),
+                request.getAmount(), null, errorCode);
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.account.dto;
+
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 잔액 사용 일괄 처리 (정산)
+ * 응답 results 는 요청 items 순서 그대로
+ */
+public class BatchUseBalance {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request {
+        @NotEmpty
+        @Size(max = 10000)
+        private List<@Valid UseBalance.Request> items;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private long successCount;
+        private long failureCount;
+        private List<Result> results;
+
+        public static Response from(List<BatchItemResult> itemResults) {
+            long successCount = itemResults.stream()
+                    .filter(BatchItemResult::isSuccess)
+                    .count();
+            return Response.builder()
+                    .successCount(successCount)
+                    .failureCount(itemResults.size() - successCount)
+                    .results(itemResults.stream()
+                            .map(Result::from)
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Result {
+        private String accountNumber;
+        private Long amount;
+        private TransactionResultType transactionResult;
+        private String transactionId;
+        private LocalDateTime transactedAt;
+        private ErrorCode errorCode;
+
+        static Result from(BatchItemResult itemResult) {
+            TransactionDto transaction = itemResult.getTransaction();
+            return Result.builder()
+                    .accountNumber(itemResult.getAccountNumber())
+                    .amount(itemResult.getAmount())
+                    .transactionResult(itemResult.isSuccess()
+                            ? TransactionResultType.S : TransactionResultType.F)
+                    .transactionId(transaction == null ? null : transaction.getTransactionId())
+                    .transactedAt(transaction == null ? null : transaction.getTransactedAt())
+                    .errorCode(itemResult.getErrorCode())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+import javax.validation.constraints.Size;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 여러 계좌/사용자의 잔액을 한 번에 조회
+ * 응답은 요청 순서 그대로, 없는 항목은 found = false
+ */
+public class BulkAccountLookup {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request {
+        @Size(max = 1000)
+        private List<String> accountNumbers;
+
+        @Size(max = 1000)
+        private List<Long> userIds;
+
+        public boolean isEmpty() {
+            return (accountNumbers == null || accountNumbers.isEmpty())
+                    && (userIds == null || userIds.isEmpty());
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private List<AccountResult> accounts;
+        private List<UserResult> users;
+
+        public static Response from(Request request,
+                                    Map<String, AccountDto> accounts,
+                                    Map<Long, List<AccountDto>> users) {
+            return Response.builder()
+                    .accounts(orEmpty(request.getAccountNumbers()).stream()
+                            .map(accountNumber -> AccountResult.from(
+                                    accountNumber, accounts.get(accountNumber)))
+                            .collect(Collectors.toList()))
+                    .users(orEmpty(request.getUserIds()).stream()
+                            .map(userId -> UserResult.from(userId, users.get(userId)))
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+
+        private static <T> List<T> orEmpty(List<T> values) {
+            return values == null ? Collections.emptyList() : values;
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AccountResult {
+        private String accountNumber;
+        private boolean found;
+        private Long balance;
+
+        static AccountResult from(String accountNumber, AccountDto accountDto) {
+            return AccountResult.builder()
+                    .accountNumber(accountNumber)
+                    .found(accountDto != null)
+                    .balance(accountDto == null ? null : accountDto.getBalance())
+                    .build();
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UserResult {
+        private Long userId;
+        private boolean found;
+        private List<AccountInfo> accounts;
+
+        static UserResult from(Long userId, List<AccountDto> accountDtos) {
+            return UserResult.builder()
+                    .userId(userId)
+                    .found(accountDtos != null)
+                    .accounts(accountDtos == null ? Collections.emptyList()
+                            : accountDtos.stream()
+                            .map(accountDto -> AccountInfo.builder()
+                                    .accountNumber(accountDto.getAccountNumber())
+                                    .balance(accountDto.getBalance())
+                                    .build())
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+    }
+}
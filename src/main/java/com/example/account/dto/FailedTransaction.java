@@ -0,0 +1,19 @@
+package com.example.account.dto;
+
+import com.example.account.type.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 실패한 거래 기록 요청 (FailedTransactionRecorder 에서 모아서 저장)
+ */
+@Getter
+@AllArgsConstructor
+public class FailedTransaction {
+    private final TransactionType transactionType;
+    private final String accountNumber;
+    private final Long amount;
+    private final LocalDateTime failedAt;
+}
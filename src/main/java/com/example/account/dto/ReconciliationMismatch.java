@@ -0,0 +1,20 @@
+package com.example.account.dto;
+
+import com.example.account.type.MismatchType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 계좌별 첫 불일치 거래
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ReconciliationMismatch {
+    private String accountNumber;
+    private String transactionId;
+    private MismatchType mismatchType;
+    private Long expected;
+    private Long actual;
+}
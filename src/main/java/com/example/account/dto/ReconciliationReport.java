@@ -0,0 +1,25 @@
+package com.example.account.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 대사 결과, mismatches 는 최대 max-mismatches 건까지만 담고 전체 건수는 mismatchCount
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ReconciliationReport {
+    private boolean running;
+    private double progress;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long accounts;
+    private long transactions;
+    private long mismatchCount;
+    private List<ReconciliationMismatch> mismatches;
+}
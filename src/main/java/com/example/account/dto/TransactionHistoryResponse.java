@@ -0,0 +1,31 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {
+ *     "transactions" : [ ... ],
+ *     "nextCursor" : "MjAyMi0wNi0wMVQxMDowMDowMHwxMjM"
+ * }
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionHistoryResponse {
+    private List<QueryTransactionResponse> transactions;
+    private String nextCursor;
+
+    public static TransactionHistoryResponse from(TransactionPageDto transactionPageDto) {
+        return TransactionHistoryResponse.builder()
+                .transactions(transactionPageDto.getTransactions().stream()
+                        .map(QueryTransactionResponse::from)
+                        .collect(Collectors.toList()))
+                .nextCursor(transactionPageDto.getNextCursor())
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.account.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 거래 내역 한 페이지, 다음 페이지가 없으면 nextCursor 는 null
+ */
+@Getter
+@AllArgsConstructor
+public class TransactionPageDto {
+    private List<TransactionDto> transactions;
+    private String nextCursor;
+}
@@ -0,0 +1,79 @@
+package com.example.account.dto;
+
+import com.example.account.app.AccountLockIdsInterface;
+import com.example.account.type.TransactionResultType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import javax.validation.constraints.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class TransferBalance {
+
+    /**
+     * {
+     *     "userId" : 1,
+     *     "fromAccountNumber": "1000000000",
+     *     "toAccountNumber": "1000000001",
+     *     "amount" : 1000
+     * }
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request implements AccountLockIdsInterface {
+        @NotNull
+        @Min(1)
+        private Long userId;
+
+        @NotBlank
+        @Size(min = 9, max = 10)
+        private String fromAccountNumber;
+
+        @NotBlank
+        @Size(min = 9, max = 10)
+        private String toAccountNumber;
+
+        @NotNull
+        @Min(10)
+        @Max(1000_000_000)
+        private Long amount;
+
+        @JsonIgnore
+        @Override
+        public List<String> getAccountNumbers() {
+            return List.of(fromAccountNumber, toAccountNumber);
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response {
+        private String fromAccountNumber;
+        private String toAccountNumber;
+        private Long amount;
+        private TransactionResultType transactionResult;
+        private String withdrawalTransactionId;
+        private String depositTransactionId;
+        private LocalDateTime transactedAt;
+
+        public static Response from(TransferDto transferDto) {
+            TransactionDto withdrawal = transferDto.getWithdrawal();
+            TransactionDto deposit = transferDto.getDeposit();
+            return Response.builder()
+                    .fromAccountNumber(withdrawal.getAccountNumber())
+                    .toAccountNumber(deposit.getAccountNumber())
+                    .amount(withdrawal.getAmount())
+                    .transactionResult(withdrawal.getTransactionResultType())
+                    .withdrawalTransactionId(withdrawal.getTransactionId())
+                    .depositTransactionId(deposit.getTransactionId())
+                    .transactedAt(withdrawal.getTransactedAt())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.account.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 이체 결과, 출금 거래와 입금 거래 한 쌍
+ */
+@Getter
+@AllArgsConstructor
+public class TransferDto {
+    private final TransactionDto withdrawal;
+    private final TransactionDto deposit;
+}
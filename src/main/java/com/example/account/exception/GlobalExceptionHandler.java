@@ -5,6 +5,8 @@ import com.example.account.dto.ErrorResponse;
 import com.example.account.type.ErrorCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -16,10 +18,14 @@ import static com.example.account.type.ErrorCode.*;
 public class GlobalExceptionHandler {
     @ExceptionHandler(AccountException.class)
 
-    public ErrorResponse handleAccountException(AccountException e){
+    public ResponseEntity<ErrorResponse> handleAccountException(AccountException e){
         log.error("{} is occurred",e.getErrorCode());
 
-        return new ErrorResponse(e.getErrorCode(), e.getErrorMessage());
+        // 다른 에러는 200 + errorCode, key 재사용은 클라이언트 버그라 422 로 구분한다
+        HttpStatus status = e.getErrorCode() == IDEMPOTENCY_KEY_REUSED
+                ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.OK;
+        return ResponseEntity.status(status)
+                .body(new ErrorResponse(e.getErrorCode(), e.getErrorMessage()));
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
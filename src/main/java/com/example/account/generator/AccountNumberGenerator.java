@@ -0,0 +1,66 @@
+package com.example.account.generator;
+
+import com.example.account.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 계좌번호 생성기
+ * DB 시퀀스(account_number_seq)에서 blockSize 개씩 번호 구간을 예약해두고
+ * 메모리에서 하나씩 꺼내준다. 노드마다 다른 구간을 받으므로 중복이 없다.
+ *
+ * 시퀀스의 increment 는 blockSize 와 같아야 한다 (data.sql).
+ * 다르면 노드끼리 구간이 겹쳐 계좌번호가 중복되므로 시작할 때 검사해서 기동을 막는다.
+ */
+@Slf4j
+@Component
+public class AccountNumberGenerator implements ApplicationRunner {
+    static final long MAX_ACCOUNT_NUMBER = 9_999_999_999L;
+
+    private final AccountRepository accountRepository;
+    private final long blockSize;
+
+    private long next;
+    private long limit;
+
+    public AccountNumberGenerator(
+            AccountRepository accountRepository,
+            @Value("${account.number.block-size:100}") long blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.accountRepository = accountRepository;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * data.sql 이 실행된 뒤에 검사하도록 기동 마지막에 (ApplicationRunner)
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Long increment = accountRepository.accountNumberSequenceIncrement();
+        if (increment == null || increment != blockSize) {
+            throw new IllegalStateException(String.format(
+                    "account_number_seq increment (%s) must equal account.number.block-size (%d)",
+                    increment, blockSize));
+        }
+    }
+
+    /**
+     * 10자리 계좌번호, 예약한 구간을 다 쓰면 시퀀스에서 다음 구간을 받는다
+     */
+    public synchronized String next() {
+        if (next >= limit) {
+            next = accountRepository.nextAccountNumberBlock();
+            limit = next + blockSize;
+            log.debug("Account number block reserved : [{}, {})", next, limit);
+        }
+        if (next > MAX_ACCOUNT_NUMBER) {
+            throw new IllegalStateException("Account numbers exhausted");
+        }
+        return String.format("%010d", next++);
+    }
+}
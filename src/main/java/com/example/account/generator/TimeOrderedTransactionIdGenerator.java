@@ -0,0 +1,71 @@
+package com.example.account.generator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 시간순으로 증가하는 16자리 hex 거래 id (기본)
+ *
+ * | 41 bit 시각(ms, 2022-01-01 기준) | 10 bit 노드 | 12 bit 노드내 순번 |
+ *
+ * 같은 ms 에 순번을 다 쓰거나 시계가 뒤로 가면 다음 ms 를 당겨 쓰므로
+ * 한 노드 안에서는 항상 증가한다. 노드 id 는 노드마다 다르게 설정해야 한다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.transaction.id.type",
+        havingValue = "TIME_ORDERED", matchIfMissing = true)
+public class TimeOrderedTransactionIdGenerator implements TransactionIdGenerator {
+    static final long EPOCH_MILLIS = Instant.parse("2022-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long nodeId;
+    // (시각 << SEQUENCE_BITS) | 순번, 마지막으로 발급한 값
+    private final AtomicLong lastTick = new AtomicLong();
+
+    public TimeOrderedTransactionIdGenerator(
+            @Value("${account.transaction.id.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be 0.." + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String next() {
+        long tick = nextTick();
+        long timestamp = tick >>> SEQUENCE_BITS;
+        long sequence = tick & ((1L << SEQUENCE_BITS) - 1);
+        return toHex((timestamp << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | sequence);
+    }
+
+    private long nextTick() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTick.get();
+            long next = Math.max(now, last + 1);
+            if (lastTick.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    // 자리수를 고정해야 문자열 정렬 = 생성 순서
+    private static String toHex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+}
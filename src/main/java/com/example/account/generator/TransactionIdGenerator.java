@@ -0,0 +1,9 @@
+package com.example.account.generator;
+
+/**
+ * 거래 id 생성기
+ * account.transaction.id.type 으로 구현체 선택 (TIME_ORDERED | UUID)
+ */
+public interface TransactionIdGenerator {
+    String next();
+}
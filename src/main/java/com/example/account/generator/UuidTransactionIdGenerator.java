@@ -0,0 +1,18 @@
+package com.example.account.generator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * 기존 방식, 랜덤 UUID 32자리 hex
+ */
+@Component
+@ConditionalOnProperty(name = "account.transaction.id.type", havingValue = "UUID")
+public class UuidTransactionIdGenerator implements TransactionIdGenerator {
+    @Override
+    public String next() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
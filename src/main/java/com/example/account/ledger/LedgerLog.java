@@ -0,0 +1,393 @@
+package com.example.account.ledger;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 원장 파일 (append-only, memory-mapped)
+ *
+ * - 파일은 segmentSize 크기의 segment 로 나뉘고 이름은 첫 레코드의 sequence (ledger-000...1.log)
+ * - 쓰기는 writer 스레드 하나가 맡는다. 큐에 쌓인 요청을 maxBatch 개까지 한 번에 쓰고
+ *   force(fsync) 한 번 뒤에 모두 완료시킨다 (group commit)
+ * - 한 batch 는 한 segment 에 들어간다, 남은 공간이 모자라면 force 후 새 segment 로 넘어간다
+ * - checkpoint 파일에 DB 에 반영된 마지막 sequence 를 남기고, 그 이전 segment 는 지운다
+ *
+ * 쓰기에 실패하면 더 이상 쓰지 않는다 (fail-stop), 재시작해서 복구한다.
+ */
+@Slf4j
+public class LedgerLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    // 계좌번호 10자리, 거래 id 32자리 기준으로 넉넉하게
+    static final int MAX_RECORD_SIZE = 256;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxBatch;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    // 첫 sequence -> segment 파일
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final Timer fsyncTimer;
+    private final DistributionSummary groupSize;
+
+    // writer 스레드만 사용
+    private MappedByteBuffer current;
+    private long nextSequence = 1;
+    private Consumer<List<LedgerRecord>> onWritten;
+
+    private volatile long checkpoint;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private Thread writer;
+
+    public LedgerLog(Path directory, int segmentSize, int maxBatch, MeterRegistry meterRegistry) {
+        // batch 하나는 한 segment 에 들어가야 한다
+        if (maxBatch <= 0 || segmentSize < maxBatch * MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException(
+                    "segmentSize must hold maxBatch records of " + MAX_RECORD_SIZE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBatch = maxBatch;
+        this.fsyncTimer = Timer.builder("account.ledger.fsync")
+                .description("Time spent forcing a ledger group commit to disk")
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder("account.ledger.group.size")
+                .description("Records per ledger group commit")
+                .register(meterRegistry);
+        meterRegistry.gauge("account.ledger.append.queue", queue, BlockingQueue::size);
+    }
+
+    /**
+     * segment 를 처음부터 읽어서 검증하고 쓰기를 시작한다
+     * 마지막 segment 끝의 쓰다 만 batch (fsync 전이라 응답하지 않은 것) 만 지운다.
+     * 깨진 레코드 뒤에 정상 레코드가 있거나 batch 하나보다 길게 깨졌으면
+     * 이미 응답한 레코드가 깨진 것이므로 시작하지 않는다.
+     *
+     * @param onWritten fsync 된 레코드를 sequence 순서로 받는다 (writer 스레드, future 완료 전)
+     * @return checkpoint 이후의 레코드 (DB 반영이 끝나지 않았을 수 있는 것)
+     */
+    public synchronized List<LedgerRecord> open(Consumer<List<LedgerRecord>> onWritten)
+            throws IOException {
+        this.onWritten = onWritten;
+        Files.createDirectories(directory);
+        checkpoint = readCheckpoint();
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<LedgerRecord> unprojected = new ArrayList<>();
+        long lastSequence = 0;
+        int writePosition = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            boolean last = i == files.size() - 1;
+            segments.put(firstSequence(file), file);
+
+            MappedByteBuffer buffer = map(file, last ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY);
+            LedgerRecord record;
+            while ((record = LedgerRecord.read(buffer)) != null) {
+                if (lastSequence != 0 && record.getSequence() != lastSequence + 1) {
+                    throw new IllegalStateException("Ledger sequence gap at " + file
+                            + " : " + lastSequence + " -> " + record.getSequence());
+                }
+                lastSequence = record.getSequence();
+                if (record.getSequence() > checkpoint) {
+                    unprojected.add(record);
+                }
+            }
+            int dataEnd = dataEnd(buffer);
+            if (dataEnd > buffer.position()) {
+                if (!last || !isTornTail(buffer, dataEnd)) {
+                    throw new IllegalStateException("Corrupted ledger segment " + file
+                            + " at " + buffer.position() + ", data until " + dataEnd);
+                }
+                log.warn("Discarding torn ledger tail of {} at {}, {} bytes",
+                        file, buffer.position(), dataEnd - buffer.position());
+                zero(buffer, buffer.position(), dataEnd);
+            }
+            if (last) {
+                current = buffer;
+                writePosition = buffer.position();
+            }
+        }
+
+        nextSequence = Math.max(lastSequence, checkpoint) + 1;
+        if (current == null) {
+            rotate(nextSequence);
+        } else {
+            current.position(writePosition);
+        }
+        startWriter();
+        log.info("Ledger opened at {}, checkpoint {}, next sequence {}, {} unprojected",
+                directory, checkpoint, nextSequence, unprojected.size());
+        return unprojected;
+    }
+
+    /**
+     * group commit 큐에 넣는다, fsync 가 끝나면 sequence 가 붙은 레코드로 완료
+     * 같은 스레드가 넣은 레코드는 넣은 순서대로 쓰이고 완료된다.
+     */
+    public CompletableFuture<LedgerRecord> append(LedgerRecord record) {
+        CompletableFuture<LedgerRecord> future = new CompletableFuture<>();
+        if (closed || failure != null) {
+            future.completeExceptionally(new IllegalStateException("Ledger is not writable",
+                    failure));
+            return future;
+        }
+        queue.add(new Append(record, future));
+        return future;
+    }
+
+    /**
+     * sequence 까지 DB 에 반영됨, 그 이전 레코드만 있는 segment 는 지운다
+     */
+    public void checkpoint(long sequence) throws IOException {
+        if (sequence <= checkpoint) {
+            return;
+        }
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(Long.toString(sequence).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = sequence;
+
+        // 다음 segment 가 checkpoint 이하에서 시작하면 이 segment 는 모두 반영된 것
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next == null || next - 1 > sequence) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            Files.deleteIfExists(entry.getValue());
+            log.debug("Deleted projected ledger segment {}", entry.getValue());
+        }
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Append> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(append -> append.future.completeExceptionally(
+                new IllegalStateException("Ledger closed")));
+    }
+
+    private void startWriter() {
+        writer = new Thread(this::writeLoop, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void writeLoop() {
+        List<Append> batch = new ArrayList<>(maxBatch);
+        while (!closed) {
+            try {
+                Append first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * batch 를 쓰고 force 한 번, 실패하면 쓴 부분을 지우고 모두 실패시킨다
+     */
+    private void write(List<Append> batch) {
+        if (failure != null) {
+            batch.forEach(append -> append.future.completeExceptionally(
+                    new IllegalStateException("Ledger is not writable", failure)));
+            return;
+        }
+
+        List<byte[]> encoded = new ArrayList<>(batch.size());
+        List<LedgerRecord> records = new ArrayList<>(batch.size());
+        int bytes = 0;
+        long sequence = nextSequence;
+        for (Append append : batch) {
+            LedgerRecord record = append.record.withSequence(sequence++);
+            byte[] data = record.encode();
+            records.add(record);
+            encoded.add(data);
+            bytes += data.length;
+        }
+
+        int start = -1;
+        try {
+            if (current.remaining() < bytes) {
+                current.force();
+                rotate(nextSequence);
+            }
+            start = current.position();
+            encoded.forEach(current::put);
+
+            long forceStart = System.nanoTime();
+            current.force();
+            fsyncTimer.record(System.nanoTime() - forceStart, TimeUnit.NANOSECONDS);
+            groupSize.record(batch.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Ledger write failed, stop writing", e);
+            failure = e;
+            if (start >= 0) {
+                try {
+                    zero(current, start, current.position());
+                } catch (RuntimeException zeroFailure) {
+                    log.error("Failed to discard unacknowledged ledger records", zeroFailure);
+                }
+            }
+            batch.forEach(append -> append.future.completeExceptionally(e));
+            return;
+        }
+
+        nextSequence = sequence;
+        try {
+            onWritten.accept(records);
+        } catch (RuntimeException e) {
+            log.error("Ledger write listener failed", e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(records.get(i));
+        }
+    }
+
+    private void rotate(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s",
+                SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        current = map(file, FileChannel.MapMode.READ_WRITE);
+        segments.put(firstSequence, file);
+        log.info("Ledger segment {} opened", file);
+    }
+
+    private MappedByteBuffer map(Path file, FileChannel.MapMode mode) throws IOException {
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(mode, 0, channel.size());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 새 파일은 0 으로 채워진 채 늘어난다 -> 길이 0 이 기록의 끝
+            return channel.map(mode, 0, Math.max(channel.size(), segmentSize));
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+        return Long.parseLong(Files.readString(file).trim());
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // 읽기가 멈춘 곳부터 마지막으로 0 이 아닌 바이트 다음까지가 읽지 못한 데이터
+    private static int dataEnd(ByteBuffer buffer) {
+        int end = buffer.limit();
+        while (end > buffer.position() && buffer.get(end - 1) == 0) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * 읽지 못한 데이터가 fsync 전에 멈춘 마지막 batch 인지
+     * batch 하나보다 길거나, 그 안에서 정상 레코드가 읽히면 (중간 레코드가 깨진 것) 아니다
+     */
+    private boolean isTornTail(ByteBuffer buffer, int dataEnd) {
+        int from = buffer.position();
+        if (dataEnd - from > maxBatch * MAX_RECORD_SIZE) {
+            return false;
+        }
+        ByteBuffer view = buffer.duplicate();
+        for (int offset = from + 1; offset < dataEnd; offset++) {
+            view.position(offset);
+            if (LedgerRecord.read(view) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void zero(MappedByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    private static class Append {
+        private final LedgerRecord record;
+        private final CompletableFuture<LedgerRecord> future;
+
+        Append(LedgerRecord record, CompletableFuture<LedgerRecord> future) {
+            this.record = record;
+            this.future = future;
+        }
+    }
+}
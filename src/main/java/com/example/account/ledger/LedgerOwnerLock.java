@@ -0,0 +1,99 @@
+package com.example.account.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 원장 소유 노드 락
+ * 메모리 잔액은 노드 하나만 가지고 있어야 하므로, 원장 모드는 이 락을 잡은 노드에서만 시작한다.
+ * 락은 Redisson watchdog 으로 연장하고, 주기적으로 아직 잡고 있는지 확인한다.
+ * 잃어버리면 (Redis 장애로 만료 등) 그 뒤의 원장 쓰기는 모두 거절한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+public class LedgerOwnerLock {
+    private static final String LOCK_NAME = "LEDGER_OWNER";
+
+    private final RLock lock;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "ledger-owner-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private volatile long ownerThreadId;
+    private volatile boolean held;
+
+    public LedgerOwnerLock(
+            RedissonClient redissonClient,
+            @Value("${account.ledger.owner.check-interval-ms:1000}") long checkIntervalMillis) {
+        this.lock = redissonClient.getLock(LOCK_NAME);
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * 다른 노드가 잡고 있으면 실패 (원장 모드 노드는 하나만 뜰 수 있다)
+     */
+    public void acquire() {
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Ledger is owned by another node : " + LOCK_NAME);
+        }
+        ownerThreadId = Thread.currentThread().getId();
+        held = true;
+        checker.scheduleWithFixedDelay(this::check,
+                checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Ledger owner lock acquired");
+    }
+
+    /**
+     * 원장에 쓰기 전에 호출, 소유권을 잃었으면 실패
+     */
+    public void checkHeld() {
+        if (!held) {
+            throw new IllegalStateException("Ledger owner lock is not held");
+        }
+    }
+
+    void check() {
+        if (!held) {
+            return;
+        }
+        try {
+            if (!lock.isHeldByThread(ownerThreadId)) {
+                held = false;
+                log.error("Ledger owner lock lost, rejecting ledger writes");
+            }
+        } catch (Exception e) {
+            // 확인이 안되면 다른 노드가 잡았을 수도 있으므로 쓰기를 멈춘다
+            held = false;
+            log.error("Ledger owner lock check failed, rejecting ledger writes", e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        checker.shutdownNow();
+        try {
+            // 종료 스레드는 락을 잡은 스레드가 아니다
+            if (held && lock.isHeldByThread(ownerThreadId)) {
+                lock.forceUnlock();
+            }
+        } catch (Exception e) {
+            log.warn("Ledger owner lock release failed", e);
+        } finally {
+            held = false;
+        }
+    }
+}
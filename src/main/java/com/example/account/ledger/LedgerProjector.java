@@ -0,0 +1,192 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.service.AccountBalanceCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+
+/**
+ * 원장 -> DB 반영 (비동기)
+ * fsync 가 끝난 레코드를 sequence 순서로 batchSize 개씩 트랜잭션 하나로 반영한다.
+ * - 계좌 잔액은 batch 안의 변화량을 합쳐서 계좌당 update 한 번
+ * - 거래는 원장의 transactionId / 잔액 스냅샷 그대로 saveAll (JDBC batch)
+ * 커밋 뒤에 checkpoint 를 옮긴다. DB 장애시에는 같은 batch 를 계속 재시도한다.
+ * 반영하면 잔액이 음수가 되는 계좌가 있으면 batch 를 반영하지 않고 멈춘다 (원장과 DB 가 어긋난 것).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+public class LedgerProjector {
+    private final LedgerLog ledgerLog;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountBalanceCache accountBalanceCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long retryBackoffMillis;
+    private final BlockingQueue<LedgerRecord> queue = new LinkedBlockingQueue<>();
+    private final Counter projectedCounter;
+
+    private volatile boolean stopped;
+    private Thread projector;
+
+    public LedgerProjector(
+            LedgerLog ledgerLog,
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            AccountBalanceCache accountBalanceCache,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${account.ledger.projector.batch-size:500}") int batchSize,
+            @Value("${account.ledger.projector.retry-backoff-ms:1000}") long retryBackoffMillis) {
+        this.ledgerLog = ledgerLog;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountBalanceCache = accountBalanceCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.projectedCounter = Counter.builder("account.ledger.projected")
+                .description("Ledger records written to the database")
+                .register(meterRegistry);
+        meterRegistry.gauge("account.ledger.projection.lag", queue, BlockingQueue::size);
+    }
+
+    /**
+     * 반영된 batch 마다 onProjected 를 호출 (LedgerService 의 메모리 상태 정리)
+     */
+    public void start(Consumer<List<LedgerRecord>> onProjected) {
+        projector = new Thread(() -> projectLoop(onProjected), "ledger-projector");
+        projector.setDaemon(true);
+        projector.start();
+    }
+
+    /**
+     * sequence 순서대로 넣어야 한다 (group commit 완료 순서)
+     */
+    public void enqueue(LedgerRecord record) {
+        queue.add(record);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (projector != null) {
+            projector.interrupt();
+            try {
+                projector.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void projectLoop(Consumer<List<LedgerRecord>> onProjected) {
+        List<LedgerRecord> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopped) {
+                LedgerRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                projectWithRetry(batch);
+                onProjected.accept(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // 반영하지 못한 레코드는 재시작할 때 원장에서 다시 읽는다
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void projectWithRetry(List<LedgerRecord> batch) throws InterruptedException {
+        while (true) {
+            try {
+                project(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (stopped) {
+                    throw new InterruptedException("Ledger projector stopped");
+                }
+                log.error("Ledger projection failed, retry in {}ms", retryBackoffMillis, e);
+                Thread.sleep(retryBackoffMillis);
+            }
+        }
+        try {
+            ledgerLog.checkpoint(batch.get(batch.size() - 1).getSequence());
+        } catch (IOException e) {
+            // checkpoint 가 늦어지면 재시작때 다시 읽을 레코드가 늘어날 뿐이다
+            log.error("Ledger checkpoint failed", e);
+        }
+    }
+
+    void project(List<LedgerRecord> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Long> deltas = new LinkedHashMap<>();
+            batch.forEach(record ->
+                    deltas.merge(record.getAccountNumber(), record.delta(), Long::sum));
+            Map<String, Account> accounts = accountRepository
+                    .findByAccountNumberIn(deltas.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+            // update 가 영속성 컨텍스트를 비우므로 거래 저장보다 먼저
+            deltas.forEach((accountNumber, delta) -> {
+                if (accounts.containsKey(accountNumber) && delta != 0
+                        && accountRepository.applyBalanceDelta(accountNumber, delta) == 0) {
+                    throw new IllegalStateException("Ledger projection would overdraw account "
+                            + accountNumber + " by delta " + delta);
+                }
+            });
+
+            List<Transaction> transactions = new ArrayList<>(batch.size());
+            for (LedgerRecord record : batch) {
+                Account account = accounts.get(record.getAccountNumber());
+                if (account == null) {
+                    log.error("Skip ledger record {} of unknown account : {}",
+                            record.getSequence(), record.getAccountNumber());
+                    continue;
+                }
+                transactions.add(Transaction.builder()
+                        .transactionType(record.getTransactionType())
+                        .transactionResultType(S)
+                        .account(account)
+                        .amount(record.getAmount())
+                        .balanceSnapshot(record.getBalanceSnapshot())
+                        .transactionId(record.getTransactionId())
+                        .transactedAt(record.getTransactedAt())
+                        .build());
+            }
+            transactionRepository.saveAll(transactions);
+            accounts.values().forEach(account ->
+                    accountBalanceCache.evictAfterCommit(account.getAccountUser().getId()));
+        });
+        projectedCounter.increment(batch.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.account.ledger;
+
+import com.example.account.type.TransactionType;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * 원장 레코드, 잔액 사용(USE) / 취소(CANCEL) 한 건
+ *
+ * | int 길이 | int CRC32C | 본문 |
+ * 본문 : sequence, type, userId, amount, balanceSnapshot, transactedAt(ms),
+ *        accountNumber, transactionId (문자열은 short 길이 + UTF-8)
+ *
+ * 길이가 0 이면 기록의 끝, CRC 가 맞지 않으면 쓰다 만 레코드로 본다.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class LedgerRecord {
+    static final int HEADER_SIZE = 8;
+    private static final byte USE = 1;
+    private static final byte CANCEL = 2;
+
+    private final long sequence;
+    private final TransactionType transactionType;
+    private final Long userId;
+    private final String accountNumber;
+    private final long amount;
+    private final long balanceSnapshot;
+    private final String transactionId;
+    private final LocalDateTime transactedAt;
+
+    /**
+     * 잔액 변화량, 사용은 차감
+     */
+    public long delta() {
+        return transactionType == TransactionType.USE ? -amount : amount;
+    }
+
+    LedgerRecord withSequence(long sequence) {
+        return toBuilder().sequence(sequence).build();
+    }
+
+    byte[] encode() {
+        byte[] accountNumberBytes = accountNumber.getBytes(StandardCharsets.UTF_8);
+        byte[] transactionIdBytes = transactionId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 + 1 + 8 + 8 + 8 + 8
+                + 2 + accountNumberBytes.length + 2 + transactionIdBytes.length);
+        payload.putLong(sequence)
+                .put(transactionType == TransactionType.USE ? USE : CANCEL)
+                .putLong(userId == null ? 0L : userId)
+                .putLong(amount)
+                .putLong(balanceSnapshot)
+                .putLong(transactedAt.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .putShort((short) accountNumberBytes.length)
+                .put(accountNumberBytes)
+                .putShort((short) transactionIdBytes.length)
+                .put(transactionIdBytes);
+
+        ByteBuffer encoded = ByteBuffer.allocate(HEADER_SIZE + payload.capacity());
+        encoded.putInt(payload.capacity())
+                .putInt(checksum(payload.array()))
+                .put(payload.array());
+        return encoded.array();
+    }
+
+    /**
+     * 현재 위치의 레코드를 읽는다, 끝이거나 깨진 레코드면 null (위치는 그대로)
+     */
+    static LedgerRecord read(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        if (checksum(payload) != checksum) {
+            buffer.position(start);
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        long sequence = body.getLong();
+        byte type = body.get();
+        long userId = body.getLong();
+        long amount = body.getLong();
+        long balanceSnapshot = body.getLong();
+        long transactedAt = body.getLong();
+        return LedgerRecord.builder()
+                .sequence(sequence)
+                .transactionType(type == USE ? TransactionType.USE : TransactionType.CANCEL)
+                .userId(userId == 0L ? null : userId)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactedAt(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(transactedAt), ZoneOffset.UTC))
+                .accountNumber(readString(body))
+                .transactionId(readString(body))
+                .build();
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
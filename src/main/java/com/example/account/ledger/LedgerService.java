@@ -0,0 +1,441 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.service.TransactionCache;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.TRANSFER_IN;
+import static com.example.account.type.TransactionType.TRANSFER_OUT;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 원장 모드의 잔액 사용/취소 (account.ledger.enabled=true)
+ *
+ * 검증과 잔액 계산은 메모리의 계좌 상태로 하고, 원장에 fsync 되면 바로 응답한다.
+ * DB 반영은 LedgerProjector 가 뒤에서 한다.
+ *
+ * 계좌 상태는 반영되지 않은 레코드가 있는 계좌만 메모리에 둔다.
+ * - 처음 쓰는 계좌는 DB 에서 읽는다 (그 시점의 DB 잔액 = 실제 잔액)
+ * - 계좌의 레코드가 모두 반영되면 메모리에서 지워서, 다음 요청은 DB 를 다시 읽는다
+ * - 잔액은 fsync 된 레코드만 반영한 값으로 조회에 쓰고,
+ *   fsync 전 사용 금액은 reserved 로 따로 두어 검증에만 쓴다
+ * 반영 전의 거래도 조회(TransactionCache)와 취소가 가능하다.
+ *
+ * 시작할 때 checkpoint 이후의 레코드 중 DB 에 없는 것을 다시 반영한다.
+ * 메모리 잔액이 실제 잔액이려면
+ * - 원장 모드에서는 원장 밖의 잔액 변경 (이체, 일괄 처리) 을 받지 않는다
+ * - 원장은 LedgerOwnerLock 을 잡은 노드 하나만 연다
+ * 잔액 조회는 pendingBalances 로 반영 전 잔액을 덮어쓴다 (AccountService).
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+public class LedgerService {
+    private static final int RECOVERY_CHUNK_SIZE = 1000;
+    private static final int RELEASE_EPOCH_STRIPES = 1024;
+
+    private final LedgerLog ledgerLog;
+    private final LedgerOwnerLock ledgerOwnerLock;
+    private final LedgerProjector ledgerProjector;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionCache transactionCache;
+
+    private final Map<String, AccountState> states = new ConcurrentHashMap<>();
+    // 반영 전 거래 (취소 검증용)
+    private final Map<String, LedgerRecord> unprojected = new ConcurrentHashMap<>();
+    // 계좌 상태를 지울 때마다 올린다, DB 에서 읽는 동안 지워진 상태가 있었는지 확인용
+    private final AtomicLongArray releaseEpochs = new AtomicLongArray(RELEASE_EPOCH_STRIPES);
+
+    public LedgerService(
+            LedgerLog ledgerLog,
+            LedgerOwnerLock ledgerOwnerLock,
+            LedgerProjector ledgerProjector,
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            TransactionIdGenerator transactionIdGenerator,
+            TransactionCache transactionCache,
+            MeterRegistry meterRegistry) {
+        this.ledgerLog = ledgerLog;
+        this.ledgerOwnerLock = ledgerOwnerLock;
+        this.ledgerProjector = ledgerProjector;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.transactionCache = transactionCache;
+        meterRegistry.gauge("account.ledger.unprojected", unprojected, Map::size);
+        meterRegistry.gauge("account.ledger.accounts", states, Map::size);
+    }
+
+    /**
+     * 원장을 열고 반영되지 않은 레코드를 메모리 상태와 projector 에 다시 올린다
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        ledgerOwnerLock.acquire();
+        List<LedgerRecord> recovered = ledgerLog.open(this::onWritten);
+        int replayed = 0;
+        for (int from = 0; from < recovered.size(); from += RECOVERY_CHUNK_SIZE) {
+            List<LedgerRecord> chunk = recovered.subList(from,
+                    Math.min(from + RECOVERY_CHUNK_SIZE, recovered.size()));
+            Set<String> projected = new HashSet<>(transactionRepository.findExistingTransactionIds(
+                    chunk.stream().map(LedgerRecord::getTransactionId)
+                            .collect(Collectors.toList())));
+            for (LedgerRecord record : chunk) {
+                if (projected.contains(record.getTransactionId())) {
+                    continue;
+                }
+                try {
+                    AccountState state = state(record.getAccountNumber());
+                    state.recover(record);
+                    unprojected.put(record.getTransactionId(), record);
+                } catch (AccountException e) {
+                    log.error("Ledger record {} of unknown account : {}",
+                            record.getSequence(), record.getAccountNumber());
+                }
+                ledgerProjector.enqueue(record);
+                replayed++;
+            }
+        }
+        ledgerProjector.start(this::onProjected);
+        log.info("Ledger recovered, {} records replayed to projector", replayed);
+    }
+
+    /**
+     * 반영 전 레코드가 있는 계좌의 잔액 (DB 보다 최신), 없는 계좌는 빠진다
+     */
+    public Map<String, Long> pendingBalances(Collection<String> accountNumbers) {
+        Map<String, Long> balances = new HashMap<>();
+        for (String accountNumber : accountNumbers) {
+            AccountState state = states.get(accountNumber);
+            if (state != null) {
+                putBalance(balances, state);
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * 사용자들의 계좌 중 반영 전 레코드가 있는 계좌의 잔액
+     */
+    public Map<String, Long> pendingBalancesOfUsers(Collection<Long> userIds) {
+        Set<Long> users = new HashSet<>(userIds);
+        Map<String, Long> balances = new HashMap<>();
+        for (AccountState state : states.values()) {
+            if (users.contains(state.userId)) {
+                putBalance(balances, state);
+            }
+        }
+        return balances;
+    }
+
+    private static void putBalance(Map<String, Long> balances, AccountState state) {
+        synchronized (state) {
+            if (!state.removed) {
+                balances.put(state.accountNumber, state.balance);
+            }
+        }
+    }
+
+    /**
+     * 잔액 사용, 검증은 TransactionService.validateUseBalance 와 같은 순서
+     */
+    public CompletableFuture<TransactionDto> useBalance(
+            Long userId, String accountNumber, Long amount) {
+        return append(accountNumber, state -> {
+            if (!Objects.equals(userId, state.userId)) {
+                throw new AccountException(ErrorCode.USER_ACCOUNT_UN_MATCH);
+            }
+            if (state.accountStatus != AccountStatus.IN_USE) {
+                throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+            }
+            // fsync 전인 사용 금액도 빼고 검증한다
+            if (state.balance - state.reserved < amount) {
+                throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+            }
+            return record(USE, state, amount, state.latestBalance() - amount);
+        });
+    }
+
+    /**
+     * 잔액 사용 취소, 원거래는 반영 전이면 메모리, 아니면 DB 에서 찾는다
+     */
+    public CompletableFuture<TransactionDto> cancelBalance(
+            String transactionId, String accountNumber, Long amount) {
+        try {
+            validateCancel(transactionId, accountNumber, amount);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return append(accountNumber,
+                state -> record(CANCEL, state, amount, state.latestBalance() + amount));
+    }
+
+    private void validateCancel(String transactionId, String accountNumber, Long amount) {
+        TransactionType transactionType;
+        String originalAccountNumber;
+        long originalAmount;
+        LocalDateTime transactedAt;
+
+        LedgerRecord pending = unprojected.get(transactionId);
+        if (pending != null) {
+            transactionType = pending.getTransactionType();
+            originalAccountNumber = pending.getAccountNumber();
+            originalAmount = pending.getAmount();
+            transactedAt = pending.getTransactedAt();
+        } else {
+            Transaction transaction = transactionRepository.findByTransactionId(transactionId)
+                    .orElseThrow(() -> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+            transactionType = transaction.getTransactionType();
+            originalAccountNumber = transaction.getAccount().getAccountNumber();
+            originalAmount = transaction.getAmount();
+            transactedAt = transaction.getTransactedAt();
+        }
+
+        if (transactionType == TRANSFER_OUT || transactionType == TRANSFER_IN) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        if (!Objects.equals(originalAccountNumber, accountNumber)) {
+            throw new AccountException(ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH);
+        }
+        if (originalAmount != amount) {
+            throw new AccountException(ErrorCode.CANCEL_MUST_FULLY);
+        }
+        if (transactedAt.isBefore(LocalDateTime.now().minusYears(1))) {
+            throw new AccountException(ErrorCode.TOO_OLD_ORDER_TO_CANCEL);
+        }
+    }
+
+    /**
+     * 계좌 상태를 잠근 채로 검증 -> fsync 전 금액으로 잡아두기 -> 원장 큐에 넣기
+     * 잔액에는 fsync 뒤 (onWritten) 에 반영하고, 실패하면 잡아둔 금액을 되돌린다
+     */
+    private CompletableFuture<TransactionDto> append(
+            String accountNumber, Function<AccountState, LedgerRecord> command) {
+        try {
+            ledgerOwnerLock.checkHeld();
+            while (true) {
+                AccountState state = state(accountNumber);
+                synchronized (state) {
+                    // 반영이 끝나서 지워진 상태면 DB 에서 다시 읽는다
+                    if (state.removed) {
+                        continue;
+                    }
+                    LedgerRecord record = command.apply(state);
+                    state.reserve(record);
+                    return ledgerLog.append(record)
+                            .handle((written, e) -> onAppended(state, record, written, e));
+                }
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private TransactionDto onAppended(AccountState state, LedgerRecord record,
+                                      LedgerRecord written, Throwable error) {
+        if (error != null) {
+            log.error("Ledger append failed, account : {}", record.getAccountNumber(), error);
+            synchronized (state) {
+                state.revert(record);
+                release(state);
+            }
+            throw new CompletionException(error);
+        }
+        return toDto(written);
+    }
+
+    // ledger-writer 스레드, fsync 직후 sequence 순서대로 (checkpoint 가 순서에 의존)
+    void onWritten(List<LedgerRecord> records) {
+        for (LedgerRecord record : records) {
+            // 반영 전이라 pending 이 남아 있으므로 상태가 지워지지 않았다
+            AccountState state = states.get(record.getAccountNumber());
+            if (state != null) {
+                synchronized (state) {
+                    state.written(record);
+                }
+            }
+            unprojected.put(record.getTransactionId(), record);
+            transactionCache.putAfterCommit(toDto(record));
+            ledgerProjector.enqueue(record);
+        }
+    }
+
+    // ledger-projector 스레드, DB 커밋 뒤에 호출된다
+    void onProjected(List<LedgerRecord> records) {
+        for (LedgerRecord record : records) {
+            unprojected.remove(record.getTransactionId());
+            AccountState state = states.get(record.getAccountNumber());
+            if (state == null) {
+                continue;
+            }
+            synchronized (state) {
+                state.pending--;
+                release(state);
+            }
+        }
+    }
+
+    private void release(AccountState state) {
+        if (state.pending == 0) {
+            state.removed = true;
+            // 지우기 전에 올려야 그 사이에 DB 에서 읽은 상태를 버릴 수 있다
+            releaseEpochs.incrementAndGet(epochIndex(state.accountNumber));
+            states.remove(state.accountNumber, state);
+        }
+    }
+
+    /**
+     * 계좌 상태, 없으면 DB 에서 읽어서 넣는다 (map 밖에서 읽는다)
+     * 읽는 동안 같은 계좌의 상태가 반영을 끝내고 지워졌으면 읽은 잔액이 옛 값일 수 있어 다시 읽는다
+     */
+    private AccountState state(String accountNumber) {
+        while (true) {
+            AccountState state = states.get(accountNumber);
+            if (state != null) {
+                return state;
+            }
+            int epochIndex = epochIndex(accountNumber);
+            long epoch = releaseEpochs.get(epochIndex);
+            AccountState loaded = load(accountNumber);
+            AccountState existing = states.putIfAbsent(accountNumber, loaded);
+            if (existing != null) {
+                return existing;
+            }
+            if (releaseEpochs.get(epochIndex) == epoch) {
+                return loaded;
+            }
+            synchronized (loaded) {
+                loaded.removed = true;
+                states.remove(accountNumber, loaded);
+            }
+        }
+    }
+
+    private static int epochIndex(String accountNumber) {
+        return (accountNumber.hashCode() & Integer.MAX_VALUE) % RELEASE_EPOCH_STRIPES;
+    }
+
+    private AccountState load(String accountNumber) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        return new AccountState(accountNumber, account.getAccountUser().getId(),
+                account.getAccountStatus(), account.getBalance());
+    }
+
+    private LedgerRecord record(TransactionType transactionType, AccountState state,
+                                Long amount, long balanceSnapshot) {
+        return LedgerRecord.builder()
+                .transactionType(transactionType)
+                .userId(state.userId)
+                .accountNumber(state.accountNumber)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionId(transactionIdGenerator.next())
+                // 원장에는 ms 단위로 남는다
+                .transactedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .build();
+    }
+
+    private static TransactionDto toDto(LedgerRecord record) {
+        return TransactionDto.builder()
+                .accountNumber(record.getAccountNumber())
+                .transactionType(record.getTransactionType())
+                .transactionResultType(S)
+                .amount(record.getAmount())
+                .balanceSnapshot(record.getBalanceSnapshot())
+                .transactionId(record.getTransactionId())
+                .transactedAt(record.getTransactedAt())
+                .build();
+    }
+
+    /**
+     * 반영 전 레코드가 있는 계좌의 상태, 항상 자기 자신을 잠그고 읽고 쓴다
+     * balance  : fsync 된 레코드까지 반영한 잔액 (조회용)
+     * reserved : fsync 전인 사용 금액 (검증용)
+     * unwritten: fsync 전인 레코드의 변화량 합 (다음 레코드의 잔액 스냅샷용)
+     */
+    private static class AccountState {
+        private final String accountNumber;
+        private final Long userId;
+        private final AccountStatus accountStatus;
+        private long balance;
+        private long reserved;
+        private long unwritten;
+        private int pending;
+        private boolean removed;
+
+        AccountState(String accountNumber, Long userId, AccountStatus accountStatus, long balance) {
+            this.accountNumber = accountNumber;
+            this.userId = userId;
+            this.accountStatus = accountStatus;
+            this.balance = balance;
+        }
+
+        // fsync 전 레코드까지 모두 반영된 잔액
+        long latestBalance() {
+            return balance + unwritten;
+        }
+
+        void reserve(LedgerRecord record) {
+            unwritten += record.delta();
+            reserved += debit(record);
+            pending++;
+        }
+
+        void written(LedgerRecord record) {
+            balance += record.delta();
+            unwritten -= record.delta();
+            reserved -= debit(record);
+        }
+
+        void revert(LedgerRecord record) {
+            unwritten -= record.delta();
+            reserved -= debit(record);
+            pending--;
+        }
+
+        // 재시작시 원장에서 읽은 레코드는 이미 fsync 된 것
+        void recover(LedgerRecord record) {
+            balance += record.delta();
+            pending++;
+        }
+
+        private static long debit(LedgerRecord record) {
+            return Math.max(0L, -record.delta());
+        }
+    }
+}
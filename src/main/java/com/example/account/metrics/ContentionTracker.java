@@ -0,0 +1,80 @@
+package com.example.account.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 경합이 많은 계좌 top-K (Space-Saving)
+ * 최대 capacity 개의 계좌만 기억하고, 꽉 차면 가장 작은 카운터를 새 계좌에 넘겨준다.
+ * count 는 실제보다 최대 overestimate 만큼 클 수 있다.
+ */
+public class ContentionTracker {
+    private final int capacity;
+    private final Map<String, Slot> slots;
+
+    public ContentionTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void record(String accountNumber) {
+        Slot slot = slots.get(accountNumber);
+        if (slot != null) {
+            slot.count++;
+            return;
+        }
+        if (slots.size() < capacity) {
+            slots.put(accountNumber, new Slot(1L, 0L));
+            return;
+        }
+
+        Map.Entry<String, Slot> min = null;
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            if (min == null || entry.getValue().count < min.getValue().count) {
+                min = entry;
+            }
+        }
+        long minCount = min.getValue().count;
+        slots.remove(min.getKey());
+        slots.put(accountNumber, new Slot(minCount + 1, minCount));
+    }
+
+    public synchronized List<HotAccount> top(int limit) {
+        List<HotAccount> hotAccounts = new ArrayList<>(slots.size());
+        slots.forEach((accountNumber, slot) ->
+                hotAccounts.add(new HotAccount(accountNumber, slot.count, slot.overestimate)));
+
+        return hotAccounts.stream()
+                .sorted(Comparator.comparingLong(HotAccount::getContentionCount).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static class Slot {
+        private long count;
+        private final long overestimate;
+
+        Slot(long count, long overestimate) {
+            this.count = count;
+            this.overestimate = overestimate;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class HotAccount {
+        private final String accountNumber;
+        private final long contentionCount;
+        private final long overestimate;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.account.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/lockcontention?limit=20
+ * 락 경합이 많았던 계좌 순위
+ */
+@Component
+@Endpoint(id = "lockcontention")
+@RequiredArgsConstructor
+public class LockContentionEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final LockMetrics lockMetrics;
+
+    @ReadOperation
+    public List<ContentionTracker.HotAccount> hotAccounts(@Nullable Integer limit) {
+        return lockMetrics.hotAccounts(limit == null ? DEFAULT_LIMIT : limit);
+    }
+}
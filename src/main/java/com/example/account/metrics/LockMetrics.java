@@ -0,0 +1,81 @@
+package com.example.account.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌 락 지표
+ * - account.lock.wait     : 락 대기 시간 (result=acquired|failed)
+ * - account.lock.hold     : 락 획득 ~ 해제 시간
+ * - account.lock.failures : ACCOUNT_TRANSACTION_LOCK 발생 횟수
+ * - 경합 계좌 top-K       : /actuator/lockcontention
+ * OPTIMISTIC 모드의 재시도 소진, SHARDED 모드의 샤드 큐 거절도 락 실패로 센다.
+ */
+@Component
+public class LockMetrics {
+    private final Timer acquiredWaitTimer;
+    private final Timer failedWaitTimer;
+    private final Timer holdTimer;
+    private final Counter failureCounter;
+    private final ContentionTracker contentionTracker;
+    private final long contendedThresholdNanos;
+
+    public LockMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${account.lock.metrics.contended-threshold-ms:5}") long contendedThresholdMillis,
+            @Value("${account.lock.metrics.hot-account-capacity:100}") int hotAccountCapacity) {
+        this.acquiredWaitTimer = waitTimer(meterRegistry, "acquired");
+        this.failedWaitTimer = waitTimer(meterRegistry, "failed");
+        this.holdTimer = Timer.builder("account.lock.hold")
+                .description("Time an account lock is held")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("account.lock.failures")
+                .description("Account lock acquisition failures")
+                .register(meterRegistry);
+        this.contentionTracker = new ContentionTracker(hotAccountCapacity);
+        this.contendedThresholdNanos = TimeUnit.MILLISECONDS.toNanos(contendedThresholdMillis);
+    }
+
+    public void recordAcquired(String accountNumber, long waitNanos) {
+        acquiredWaitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos >= contendedThresholdNanos) {
+            contentionTracker.record(accountNumber);
+        }
+    }
+
+    public void recordFailed(String accountNumber, long waitNanos) {
+        failedWaitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+        failureCounter.increment();
+        contentionTracker.record(accountNumber);
+    }
+
+    /**
+     * 락 없이 실행하다 충돌한 경우 (OPTIMISTIC 재시도), 경합 계좌로만 센다
+     */
+    public void recordConflict(String accountNumber) {
+        contentionTracker.record(accountNumber);
+    }
+
+    public void recordHold(long holdNanos) {
+        holdTimer.record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public List<ContentionTracker.HotAccount> hotAccounts(int limit) {
+        return contentionTracker.top(limit);
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("account.lock.wait")
+                .description("Time spent waiting for an account lock")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.account.metrics;
+
+import com.example.account.dto.ReconciliationReport;
+import com.example.account.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * GET  /actuator/reconciliation : 마지막 (또는 진행중인) 대사 결과와 진행률
+ * POST /actuator/reconciliation : 대사 시작 (실행중이면 그대로 둔다)
+ */
+@Component
+@Endpoint(id = "reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationEndpoint {
+    private final ReconciliationService reconciliationService;
+
+    @ReadOperation
+    public ReconciliationReport report() {
+        return reconciliationService.lastReport();
+    }
+
+    @WriteOperation
+    public ReconciliationReport start() {
+        reconciliationService.start();
+        return reconciliationService.lastReport();
+    }
+}
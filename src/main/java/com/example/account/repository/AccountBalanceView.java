@@ -0,0 +1,10 @@
+package com.example.account.repository;
+
+/**
+ * 계좌 목록 조회용 projection, 엔티티를 만들지 않고 두 컬럼만 읽는다
+ */
+public interface AccountBalanceView {
+    String getAccountNumber();
+
+    Long getBalance();
+}
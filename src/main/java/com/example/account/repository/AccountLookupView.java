@@ -0,0 +1,12 @@
+package com.example.account.repository;
+
+/**
+ * 여러 계좌/사용자 일괄 조회용 projection
+ */
+public interface AccountLookupView {
+    Long getUserId();
+
+    String getAccountNumber();
+
+    Long getBalance();
+}
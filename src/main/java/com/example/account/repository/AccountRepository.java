@@ -2,17 +2,31 @@ package com.example.account.repository;
 
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
+import com.example.account.type.AccountStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
-    Optional<Account> findFirstByOrderByIdDesc();
-
+    /**
+     * 계좌번호 구간의 시작값 (AccountNumberGenerator)
+     */
+    @Query(value = "select next value for account_number_seq", nativeQuery = true)
+    Long nextAccountNumberBlock();
 
+    /**
+     * account_number_seq 의 increment, 구간 크기와 같은지 시작할 때 검사한다
+     */
+    @Query(value = "select increment from information_schema.sequences"
+            + " where sequence_name = 'ACCOUNT_NUMBER_SEQ'", nativeQuery = true)
+    Long accountNumberSequenceIncrement();
 
     Integer countByAccountUser(AccountUser accountUser);
 
@@ -20,5 +34,83 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
 
     List<Account> findByAccountUser(AccountUser accountUser);
 
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    @Query("select a.accountNumber as accountNumber, a.balance as balance"
+            + " from Account a where a.accountUser.id = :userId order by a.id")
+    List<AccountBalanceView> findBalancesByAccountUserId(@Param("userId") Long userId);
+
+    /**
+     * 사용자별 계좌 수, 계좌가 없는 사용자는 결과에 없다 (AccountImportService)
+     */
+    @Query("select a.accountUser.id as userId, count(a) as accountCount"
+            + " from Account a where a.accountUser.id in :userIds"
+            + " group by a.accountUser.id")
+    List<UserAccountCount> countByAccountUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 일괄 조회, IN 목록이 너무 길지 않도록 호출하는 쪽에서 나눠서 부른다
+     */
+    @Query("select a.accountUser.id as userId, a.accountNumber as accountNumber,"
+            + " a.balance as balance"
+            + " from Account a where a.accountNumber in :accountNumbers")
+    List<AccountLookupView> findBalancesByAccountNumberIn(
+            @Param("accountNumbers") Collection<String> accountNumbers);
+
+    @Query("select a.accountUser.id as userId, a.accountNumber as accountNumber,"
+            + " a.balance as balance"
+            + " from Account a where a.accountUser.id in :userIds order by a.id")
+    List<AccountLookupView> findBalancesByAccountUserIdIn(
+            @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 검증 + 차감을 한 문장으로 처리, 조건에 맞지 않으면 0 을 반환
+     * (소유주 일치, 사용중인 계좌, 잔액 >= 거래금액)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Account a"
+            + " set a.balance = a.balance - :amount, a.version = a.version + 1"
+            + " where a.accountNumber = :accountNumber"
+            + " and a.accountUser.id = :userId"
+            + " and a.accountStatus = :status"
+            + " and a.balance >= :amount")
+    int debitBalance(@Param("accountNumber") String accountNumber,
+                     @Param("userId") Long userId,
+                     @Param("amount") Long amount,
+                     @Param("status") AccountStatus status);
+
+    /**
+     * 입금 (이체), 사용중인 계좌가 아니면 0 을 반환
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Account a"
+            + " set a.balance = a.balance + :amount, a.version = a.version + 1"
+            + " where a.accountNumber = :accountNumber"
+            + " and a.accountStatus = :status")
+    int creditBalance(@Param("accountNumber") String accountNumber,
+                      @Param("amount") Long amount,
+                      @Param("status") AccountStatus status);
+
+    /**
+     * 원장 반영 (LedgerProjector), 원장에서 검증이 끝난 변화량을 더한다
+     * 잔액이 음수가 되면 0 을 반환 (원장 밖에서 잔액이 바뀐 경우)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Account a"
+            + " set a.balance = a.balance + :delta, a.version = a.version + 1"
+            + " where a.accountNumber = :accountNumber"
+            + " and a.balance + :delta >= 0")
+    int applyBalanceDelta(@Param("accountNumber") String accountNumber,
+                          @Param("delta") Long delta);
+
+
+
+    /**
+     * 대사 구간 계산용 (ReconciliationService)
+     */
+    @Query("select min(a.id) from Account a")
+    Long findMinId();
 
+    @Query("select max(a.id) from Account a")
+    Long findMaxId();
 }
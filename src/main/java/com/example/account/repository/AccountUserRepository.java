@@ -1,11 +1,60 @@
 package com.example.account.repository;
 
+import com.example.account.config.CacheConfig;
 import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountUserInfo;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 
 //  조회할 테이블에 대한 엔티티  pk id의 타입
+// findInfoById 는 캐시 (CacheConfig.ACCOUNT_USER), 변경/삭제시 해당 사용자만 evict
 @Repository
 public interface AccountUserRepository extends JpaRepository<AccountUser, Long> {
+
+    /**
+     * 엔티티가 아닌 바뀌지 않는 값으로 캐시한다 (요청/스레드 사이에 공유된다)
+     * 없는 사용자는 캐시하지 않는다
+     */
+    @Cacheable(cacheNames = CacheConfig.ACCOUNT_USER, key = "#p0", unless = "#result == null")
+    @Query("select new com.example.account.dto.AccountUserInfo(u.id, u.name)"
+            + " from AccountUser u where u.id = :id")
+    Optional<AccountUserInfo> findInfoById(@Param("id") Long id);
+
+    // 새 사용자는 id 가 없고 캐시에도 없다
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNT_USER, key = "#p0.id",
+            condition = "#p0.id != null")
+    <S extends AccountUser> S save(S accountUser);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNT_USER, key = "#p0")
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNT_USER, key = "#p0.id",
+            condition = "#p0.id != null")
+    void delete(AccountUser accountUser);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNT_USER, allEntries = true)
+    <S extends AccountUser> List<S> saveAll(Iterable<S> accountUsers);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNT_USER, allEntries = true)
+    void deleteAll();
+
+    /**
+     * 일괄 조회에서 없는 사용자를 구분하기 위해 id 만 읽는다
+     */
+    @Query("select u.id from AccountUser u where u.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
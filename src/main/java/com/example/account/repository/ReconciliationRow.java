@@ -0,0 +1,22 @@
+package com.example.account.repository;
+
+import com.example.account.type.TransactionType;
+
+/**
+ * 대사용 projection, 거래 한 건과 그 계좌의 현재 잔액
+ */
+public interface ReconciliationRow {
+    Long getAccountId();
+
+    String getAccountNumber();
+
+    Long getAccountBalance();
+
+    String getTransactionId();
+
+    TransactionType getTransactionType();
+
+    Long getAmount();
+
+    Long getBalanceSnapshot();
+}
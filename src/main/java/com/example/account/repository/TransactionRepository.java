@@ -1,13 +1,23 @@
 package com.example.account.repository;
 
 import com.example.account.domain.Account;
-import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository
@@ -17,6 +27,75 @@ public interface TransactionRepository
 
     Optional<Transaction> findByTransactionId(String transactionId);
 
+    /**
+     * 이미 저장된 거래 id 만 반환 (원장 복구시 반영 여부 확인)
+     */
+    @Query("select t.transactionId from Transaction t where t.transactionId in :transactionIds")
+    List<String> findExistingTransactionIds(
+            @Param("transactionIds") Collection<String> transactionIds);
+
+    /**
+     * 계좌 거래 내역 최근 순, (transactedAt, id) 커서 다음부터 pageable.size 만큼
+     * offset 없이 ix_transaction_account_id_transacted_at_id 를 따라 읽으므로 깊은 페이지도 같은 비용
+     * type, result 는 null 이면 조건 없음
+     */
+    @Query("select t from Transaction t"
+            + " where t.account = :account"
+            + " and (:type is null or t.transactionType = :type)"
+            + " and (:result is null or t.transactionResultType = :result)"
+            + " and (t.transactedAt < :cursorAt"
+            + " or (t.transactedAt = :cursorAt and t.id < :cursorId))"
+            + " order by t.transactedAt desc, t.id desc")
+    List<Transaction> findHistory(@Param("account") Account account,
+                                  @Param("type") TransactionType type,
+                                  @Param("result") TransactionResultType result,
+                                  @Param("cursorAt") LocalDateTime cursorAt,
+                                  @Param("cursorId") Long cursorId,
+                                  Pageable pageable);
+
+    /**
+     * 내보내기용 스트림, 트랜잭션 안에서 읽고 반드시 close
+     * fetchSize 만큼씩 DB 에서 가져오고 엔티티는 읽기 전용 (dirty checking 없음)
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("select t from Transaction t join fetch t.account a join fetch a.accountUser"
+            + " where a.id = :accountId"
+            + " and t.transactedAt >= :from and t.transactedAt < :to"
+            + " order by t.transactedAt, t.id")
+    Stream<Transaction> streamByAccountId(@Param("accountId") Long accountId,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
 
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("select t from Transaction t join fetch t.account a join fetch a.accountUser"
+            + " where t.transactedAt >= :from and t.transactedAt < :to"
+            + " order by t.transactedAt, t.id")
+    Stream<Transaction> streamByTransactedAt(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
 
+    /**
+     * 대사용 스트림, [fromAccountId, toAccountId) 계좌의 성공 거래를 계좌별 거래 순서로
+     * 엔티티 대신 projection 이라 persistence context 에 쌓이지 않는다
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "1000"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("select a.id as accountId, a.accountNumber as accountNumber,"
+            + " a.balance as accountBalance, t.transactionId as transactionId,"
+            + " t.transactionType as transactionType, t.amount as amount,"
+            + " t.balanceSnapshot as balanceSnapshot"
+            + " from Transaction t join t.account a"
+            + " where a.id >= :fromAccountId and a.id < :toAccountId"
+            + " and t.transactionResultType = com.example.account.type.TransactionResultType.S"
+            + " order by a.id, t.transactedAt, t.id")
+    Stream<ReconciliationRow> streamForReconciliation(
+            @Param("fromAccountId") Long fromAccountId,
+            @Param("toAccountId") Long toAccountId);
 }
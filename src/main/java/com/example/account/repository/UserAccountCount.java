@@ -0,0 +1,10 @@
+package com.example.account.repository;
+
+/**
+ * 사용자별 계좌 수 (일괄 생성 전에 한 번에 읽는다)
+ */
+public interface UserAccountCount {
+    Long getUserId();
+
+    Long getAccountCount();
+}
@@ -0,0 +1,194 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 사용자별 계좌 목록 near-cache
+ * 노드 메모리(local) -> Redis -> DB 순으로 읽는다. local hit 는 Redis 를 거치지 않는다.
+ *
+ * 캐시 값에는 읽기 시작할 때의 사용자 버전을 붙여둔다.
+ * 잔액/계좌가 바뀌면 커밋 뒤에 버전을 올리고 (응답 전에 끝날 때까지 기다린다)
+ * - Redis 의 값은 현재 버전과 같을 때만 쓴다
+ * - local 의 값은 topic 으로 받은 무효화 버전보다 오래됐으면 버린다
+ * 무효화 직전에 읽기 시작한 요청이 옛 값을 다시 넣어도 옛 버전이 붙어 있으므로 마찬가지.
+ *
+ * topic 메시지는 유실될 수 있으므로 local 은 짧은 ttl 로 두고, 재구독하면 모두 비운다.
+ * Redis 의 값은 ttl 과 max-size 로, 버전은 ttl 로 제한한다.
+ * Redis 장애시에는 DB 에서 바로 읽는다.
+ */
+@Slf4j
+@Component
+public class AccountBalanceCache {
+    private static final String MAP_NAME = "ACCOUNTS_BY_USER";
+    private static final String VERSION_MAP_NAME = "ACCOUNTS_BY_USER:VERSION";
+    private static final String VERSION_SEQUENCE_NAME = "ACCOUNTS_BY_USER:VERSION_SEQ";
+    private static final String INVALIDATION_TOPIC_NAME = "ACCOUNTS_BY_USER:INVALIDATION";
+    private static final long NO_VERSION = 0L;
+
+    private final Cache<Long, Entry> localAccounts;
+    // 사용자별로 마지막으로 받은 무효화 버전, 이보다 오래된 local 값은 쓰지 않는다
+    private final Cache<Long, Long> invalidatedVersions;
+    private final RMapCache<Long, Entry> accounts;
+    private final RMapCache<Long, Long> versions;
+    private final RAtomicLong versionSequence;
+    private final RTopic invalidations;
+    private final long ttlMillis;
+
+    public AccountBalanceCache(
+            RedissonClient redissonClient,
+            ObjectMapper objectMapper,
+            @Value("${account.cache.accounts-by-user.local-size:10000}") int localSize,
+            @Value("${account.cache.accounts-by-user.local-ttl-seconds:10}") long localTtlSeconds,
+            @Value("${account.cache.accounts-by-user.redis-max-size:100000}") int redisMaxSize,
+            @Value("${account.cache.accounts-by-user.ttl-seconds:60}") long ttlSeconds) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.localAccounts = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+        this.invalidatedVersions = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+        this.accounts = redissonClient.getMapCache(MAP_NAME,
+                new TypedJsonJacksonCodec(Long.class, Entry.class, objectMapper));
+        this.accounts.setMaxSize(redisMaxSize);
+        this.versions = redissonClient.getMapCache(VERSION_MAP_NAME, LongCodec.INSTANCE);
+        this.versionSequence = redissonClient.getAtomicLong(VERSION_SEQUENCE_NAME);
+        this.invalidations = redissonClient.getTopic(INVALIDATION_TOPIC_NAME,
+                new TypedJsonJacksonCodec(Invalidation.class, objectMapper));
+        this.invalidations.addListener(Invalidation.class,
+                (channel, invalidation) -> invalidateLocal(
+                        invalidation.getUserId(), invalidation.getVersion()));
+        // 구독이 끊긴 동안의 메시지는 받지 못했으므로 local 을 모두 버린다
+        this.invalidations.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                localAccounts.invalidateAll();
+            }
+        });
+    }
+
+    public List<AccountDto> get(Long userId, Supplier<List<AccountDto>> loader) {
+        Entry local = localAccounts.getIfPresent(userId);
+        if (local != null && !isInvalidated(userId, local)) {
+            return local.getAccounts();
+        }
+
+        long version;
+        try {
+            version = currentVersion(userId);
+            Entry cached = accounts.get(userId);
+            if (cached != null && cached.getVersion() == version) {
+                putLocal(userId, cached);
+                return cached.getAccounts();
+            }
+        } catch (Exception e) {
+            log.warn("Account cache read failed, user : {}", userId, e);
+            return loader.get();
+        }
+
+        // 읽는 동안 버전이 바뀌었으면 이 값은 다음 조회에서 버려진다
+        Entry loaded = new Entry(version, loader.get());
+        putLocal(userId, loaded);
+        accounts.fastPutAsync(userId, loaded, ttlMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((added, e) -> {
+                    if (e != null) {
+                        log.warn("Account cache write failed, user : {}", userId, e);
+                    }
+                });
+        return loaded.getAccounts();
+    }
+
+    /**
+     * 커밋된 뒤에 무효화 (커밋 전에 지우면 다른 요청이 커밋 전 값을 다시 캐시할 수 있다)
+     */
+    public void evictAfterCommit(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(userId);
+            }
+        });
+    }
+
+    private long currentVersion(Long userId) {
+        Long version = versions.get(userId);
+        return version == null ? NO_VERSION : version;
+    }
+
+    private boolean isInvalidated(Long userId, Entry entry) {
+        Long invalidated = invalidatedVersions.getIfPresent(userId);
+        return invalidated != null && entry.getVersion() < invalidated;
+    }
+
+    private void putLocal(Long userId, Entry entry) {
+        if (!isInvalidated(userId, entry)) {
+            localAccounts.put(userId, entry);
+        }
+    }
+
+    private void invalidateLocal(Long userId, long version) {
+        invalidatedVersions.asMap().merge(userId, version, Math::max);
+        localAccounts.invalidate(userId);
+    }
+
+    /**
+     * 버전을 올리고 모든 노드에 알린다, 끝날 때까지 기다린다
+     * 버전이 먼저 만료되면 옛 값이 다시 맞아 보일 수 있으므로 값 ttl 의 두 배로 둔다.
+     */
+    private void evict(Long userId) {
+        localAccounts.invalidate(userId);
+        try {
+            long version = versionSequence.incrementAndGet();
+            invalidateLocal(userId, version);
+            versions.fastPut(userId, version, ttlMillis * 2, TimeUnit.MILLISECONDS);
+            invalidations.publish(new Invalidation(userId, version));
+        } catch (Exception e) {
+            log.error("Account cache evict failed, user : {}", userId, e);
+        }
+    }
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private long version;
+        private List<AccountDto> accounts;
+    }
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Invalidation {
+        private Long userId;
+        private long version;
+    }
+}
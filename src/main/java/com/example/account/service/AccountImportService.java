@@ -0,0 +1,319 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.dto.AccountImportError;
+import com.example.account.dto.AccountImportReport;
+import com.example.account.generator.AccountNumberGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.UserAccountCount;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ImportFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+
+/**
+ * 계좌 일괄 생성 (제휴사 온보딩)
+ * 입력을 한 줄씩 읽어 chunk-size 줄마다 트랜잭션 하나로 처리한다.
+ * - 사용자 존재 여부와 계좌 수는 chunk 의 사용자들을 IN 조회 한 번으로 읽고 메모리에서 센다
+ * - 계좌번호는 AccountNumberGenerator 가 블록 단위로 예약한 구간에서 꺼낸다
+ * - 계좌는 saveAll 로 JDBC batch insert (hibernate.jdbc.batch_size)
+ *
+ * 잘못된 줄은 건너뛰고 줄 번호와 에러코드를 남긴다. 이미 commit 된 chunk 는 되돌리지 않는다.
+ * 진행 상황과 사용자별 계좌 수는 chunk 가 commit 된 뒤에만 갱신되고 GET /account/import 와 account.import.rows 지표로 볼 수 있다.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+    private final AccountRepository accountRepository;
+    private final AccountUserRepository accountUserRepository;
+    private final AccountNumberGenerator accountNumberGenerator;
+    private final AccountBalanceCache accountBalanceCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    private final Counter createdCounter;
+    private final Counter rejectedCounter;
+    private final Map<String, Run> running = new ConcurrentHashMap<>();
+
+    public AccountImportService(
+            AccountRepository accountRepository,
+            AccountUserRepository accountUserRepository,
+            AccountNumberGenerator accountNumberGenerator,
+            AccountBalanceCache accountBalanceCache,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${account.import.chunk-size:1000}") int chunkSize,
+            @Value("${account.import.max-errors:1000}") int maxErrors) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.accountRepository = accountRepository;
+        this.accountUserRepository = accountUserRepository;
+        this.accountNumberGenerator = accountNumberGenerator;
+        this.accountBalanceCache = accountBalanceCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.createdCounter = Counter.builder("account.import.rows")
+                .description("Rows processed by account import")
+                .tag("result", "created")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("account.import.rows")
+                .description("Rows processed by account import")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 입력 스트림을 끝까지 읽고 결과를 반환, 스트림은 호출한 쪽에서 닫는다
+     */
+    public AccountImportReport importAccounts(InputStream inputStream, ImportFormat format)
+            throws IOException {
+        Run run = new Run(UUID.randomUUID().toString());
+        running.put(run.importId, run);
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            Map<Long, Long> accountCounts = new HashMap<>();
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (format == ImportFormat.CSV && lineNumber == 1
+                        && isCsvHeader(line))) {
+                    continue;
+                }
+                chunk.add(parse(lineNumber, line, format));
+                if (chunk.size() == chunkSize) {
+                    importChunk(run, chunk, accountCounts);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(run, chunk, accountCounts);
+            }
+        } finally {
+            run.finishedAt = LocalDateTime.now();
+            running.remove(run.importId);
+        }
+        log.info("Account import {} finished : {} created, {} rejected",
+                run.importId, run.created.get(), run.rejected.get());
+
+        return run.report();
+    }
+
+    /**
+     * 진행중인 일괄 생성 목록
+     */
+    public List<AccountImportReport> runningImports() {
+        return running.values().stream()
+                .map(Run::report)
+                .collect(Collectors.toList());
+    }
+
+    private void importChunk(Run run, List<Row> rows, Map<Long, Long> accountCounts) {
+        Set<Long> userIds = new HashSet<>();
+        rows.stream()
+                .filter(row -> row.errorCode == null)
+                .forEach(row -> userIds.add(row.userId));
+
+        ChunkResult result = transactionTemplate.execute(status -> {
+            // 조회한 값은 DB 그대로라 롤백돼도 남겨둔다
+            prefetchAccountCounts(userIds, accountCounts);
+
+            ChunkResult chunk = new ChunkResult();
+            List<Account> accounts = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                ErrorCode errorCode = row.errorCode != null
+                        ? row.errorCode : validate(row, accountCounts, chunk.addedCounts);
+                if (errorCode != null) {
+                    chunk.errors.add(new AccountImportError(row.line, errorCode));
+                    continue;
+                }
+                chunk.addedCounts.merge(row.userId, 1L, Long::sum);
+                accounts.add(Account.builder()
+                        .accountUser(accountUserRepository.getById(row.userId))
+                        .accountStatus(IN_USE)
+                        .accountNumber(accountNumberGenerator.next())
+                        .balance(row.initialBalance)
+                        .registerAt(LocalDateTime.now())
+                        .build());
+            }
+            accountRepository.saveAll(accounts);
+            chunk.addedCounts.keySet().forEach(accountBalanceCache::evictAfterCommit);
+            chunk.created = accounts.size();
+            return chunk;
+        });
+
+        // commit 된 chunk 만 계좌 수와 진행 상황에 반영
+        result.addedCounts.forEach((userId, added) -> accountCounts.merge(userId, added, Long::sum));
+        run.created.addAndGet(result.created);
+        createdCounter.increment(result.created);
+        result.errors.forEach(error -> reject(run, error));
+        run.processed.addAndGet(rows.size());
+        log.debug("Account import {} : {} rows processed", run.importId, run.processed.get());
+    }
+
+    /**
+     * 처음 보는 사용자만 조회, 없는 사용자는 -1 로 기억해서 다시 조회하지 않는다
+     */
+    private void prefetchAccountCounts(Collection<Long> userIds, Map<Long, Long> accountCounts) {
+        List<Long> unknown = userIds.stream()
+                .filter(userId -> !accountCounts.containsKey(userId))
+                .collect(Collectors.toList());
+        if (unknown.isEmpty()) {
+            return;
+        }
+        unknown.forEach(userId -> accountCounts.put(userId, -1L));
+        accountUserRepository.findExistingIds(unknown)
+                .forEach(userId -> accountCounts.put(userId, 0L));
+        for (UserAccountCount count : accountRepository.countByAccountUserIdIn(unknown)) {
+            accountCounts.put(count.getUserId(), count.getAccountCount());
+        }
+    }
+
+    private static ErrorCode validate(
+            Row row, Map<Long, Long> accountCounts, Map<Long, Long> addedCounts) {
+        long count = accountCounts.get(row.userId);
+        if (count < 0) {
+            return ErrorCode.USER_NOT_FOUND;
+        }
+        if (count + addedCounts.getOrDefault(row.userId, 0L)
+                >= AccountService.MAX_ACCOUNT_PER_USER) {
+            return ErrorCode.MAX_ACCOUNT_PER_USER_10;
+        }
+        return null;
+    }
+
+    private void reject(Run run, AccountImportError error) {
+        run.rejected.incrementAndGet();
+        rejectedCounter.increment();
+        if (run.errorCount.incrementAndGet() <= maxErrors) {
+            run.errors.add(error);
+        }
+    }
+
+    private Row parse(long line, String text, ImportFormat format) {
+        try {
+            Long userId;
+            Long initialBalance;
+            if (format == ImportFormat.CSV) {
+                String[] columns = text.split(",", -1);
+                if (columns.length != 2) {
+                    return Row.invalid(line);
+                }
+                userId = Long.parseLong(columns[0].trim());
+                initialBalance = Long.parseLong(columns[1].trim());
+            } else {
+                JsonNode node = objectMapper.readTree(text);
+                if (!node.path("userId").canConvertToLong()
+                        || !node.path("initialBalance").canConvertToLong()) {
+                    return Row.invalid(line);
+                }
+                userId = node.get("userId").asLong();
+                initialBalance = node.get("initialBalance").asLong();
+            }
+            // CreateAccount.Request 와 같은 검증
+            if (userId < 1 || initialBalance < 0) {
+                return Row.invalid(line);
+            }
+            return new Row(line, userId, initialBalance, null);
+        } catch (NumberFormatException | IOException e) {
+            return Row.invalid(line);
+        }
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return !line.isEmpty() && !Character.isDigit(line.trim().charAt(0));
+    }
+
+    private static class Row {
+        private final long line;
+        private final Long userId;
+        private final Long initialBalance;
+        private final ErrorCode errorCode;
+
+        Row(long line, Long userId, Long initialBalance, ErrorCode errorCode) {
+            this.line = line;
+            this.userId = userId;
+            this.initialBalance = initialBalance;
+            this.errorCode = errorCode;
+        }
+
+        static Row invalid(long line) {
+            return new Row(line, null, null, ErrorCode.INVALID_REQUEST);
+        }
+    }
+
+    /**
+     * chunk 트랜잭션 안에서 쌓아두는 결과, commit 된 뒤에 Run 에 합친다
+     */
+    private static class ChunkResult {
+        private final Map<Long, Long> addedCounts = new HashMap<>();
+        private final List<AccountImportError> errors = new ArrayList<>();
+        private int created;
+    }
+
+    private static class Run {
+        private final String importId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final Queue<AccountImportError> errors = new ConcurrentLinkedQueue<>();
+
+        Run(String importId) {
+            this.importId = importId;
+        }
+
+        AccountImportReport report() {
+            return AccountImportReport.builder()
+                    .importId(importId)
+                    .running(finishedAt == null)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .processed(processed.get())
+                    .created(created.get())
+                    .rejected(rejected.get())
+                    .errors(new ArrayList<>(errors))
+                    .build();
+        }
+    }
+}
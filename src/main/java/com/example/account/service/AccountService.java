@@ -3,17 +3,26 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountUserInfo;
 import com.example.account.exception.AccountException;
+import com.example.account.generator.AccountNumberGenerator;
+import com.example.account.ledger.LedgerService;
+import com.example.account.repository.AccountLookupView;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.AccountStatus;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
-
-import javax.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -23,8 +32,16 @@ import static com.example.account.type.ErrorCode.*;
 @Service
 @RequiredArgsConstructor
 public class AccountService {
+    // 일괄 조회 IN 목록 최대 크기 (DB 마다 IN 목록/바인드 변수 제한이 있다)
+    static final int BULK_CHUNK_SIZE = 500;
+    static final int MAX_ACCOUNT_PER_USER = 10;
+
     private final AccountRepository accountRepository;
     private final AccountUserRepository accountUserRepository;
+    private final AccountNumberGenerator accountNumberGenerator;
+    private final AccountBalanceCache accountBalanceCache;
+    // 원장 모드에서만 있다, 반영 전 잔액은 DB 보다 원장이 최신
+    private final ObjectProvider<LedgerService> ledgerService;
 
     /**
      *
@@ -38,7 +55,9 @@ public class AccountService {
     @Transactional
     public AccountDto createAccount(Long userId, Long initialBalance) {
 
-        AccountUser accountUser = getAccountUser(userId);
+        AccountUserInfo accountUserInfo = getAccountUser(userId);
+        // 캐시로 있는 것을 확인했으므로 SELECT 없이 참조만
+        AccountUser accountUser = accountUserRepository.getById(accountUserInfo.getId());
 
 
 
@@ -50,14 +69,12 @@ public class AccountService {
 
 
 
-        String newAccountNumber = accountRepository.findFirstByOrderByIdDesc()
-                .map(account -> (Integer.parseInt(account.getAccountNumber()))+1+"")
-                .orElse("1000000000");
+        String newAccountNumber = accountNumberGenerator.next();
 
 
 
 
-        return  AccountDto.fromEntity(accountRepository.save(
+        Account account = accountRepository.save(
                 Account.builder()
                         .accountUser(accountUser)
                         .accountStatus(IN_USE)
@@ -65,13 +82,16 @@ public class AccountService {
                         .balance(initialBalance)
                         .registerAt(LocalDateTime.now())
                         .build()
-        ));
+        );
+        accountBalanceCache.evictAfterCommit(accountUserInfo.getId());
+
+        return  AccountDto.fromEntity(account);
 
 
     }
 
     private void  validateCreateAccount(AccountUser accountUser){
-        if(accountRepository.countByAccountUser(accountUser) >= 10)
+        if(accountRepository.countByAccountUser(accountUser) >= MAX_ACCOUNT_PER_USER)
         {
             throw new AccountException(MAX_ACCOUNT_PER_USER_10);
         }
@@ -96,7 +116,7 @@ public class AccountService {
     public AccountDto deleteAccount(Long userId,String accountNumber){
 
 
-        AccountUser accountUser = getAccountUser(userId);
+        AccountUserInfo accountUser = getAccountUser(userId);
 
 
         /**
@@ -111,6 +131,10 @@ public class AccountService {
                 .orElseThrow(()->new AccountException(ACCOUNT_NOT_FOUND));
 
         validateDeleteAccount(accountUser, account);
+        // 원장에 반영 전 거래가 있으면 DB 잔액이 실제 잔액이 아니다
+        if (!pendingBalances(List.of(accountNumber)).isEmpty()) {
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+        }
 
 
         /**
@@ -122,13 +146,14 @@ public class AccountService {
         account.setAccountStatus(AccountStatus.UNREGISTERED);
         account.setUnRegisteredAt(LocalDateTime.now());
         accountRepository.save(account);
+        accountBalanceCache.evictAfterCommit(accountUser.getId());
 
         return AccountDto.fromEntity(account);
     }
 
 
 
-    private void validateDeleteAccount(AccountUser accountUser, Account account) {
+    private void validateDeleteAccount(AccountUserInfo accountUser, Account account) {
 
          if (!Objects.equals(accountUser.getId(), account.getAccountUser().getId())){
                 throw   new AccountException(USER_ACCOUNT_UN_MATCH);
@@ -144,20 +169,113 @@ public class AccountService {
 
 
 
-    @Transactional
+    /**
+     * 계좌번호/잔액만 projection 으로 읽는다 (엔티티, 사용자 join, dirty checking 없음)
+     * 원장 모드에서는 반영 전인 계좌의 잔액을 원장 잔액으로 덮어쓴다.
+     * 원장 잔액을 먼저 읽어야 그 사이에 반영되어 메모리에서 지워진 계좌도 옛 DB 값이 나가지 않는다.
+     */
+    @Transactional(readOnly = true)
     public List<AccountDto> getAccountByUserId(Long userId) {
-        AccountUser accountUser = getAccountUser(userId);
+        AccountUserInfo accountUser = getAccountUser(userId);
+        Map<String, Long> pending = pendingBalancesOfUsers(List.of(accountUser.getId()));
+
+        // 잔액 대시보드 조회, AccountBalanceCache 에 없을 때만 DB
+        List<AccountDto> accounts = accountBalanceCache.get(accountUser.getId(), () ->
+                accountRepository.findBalancesByAccountUserId(accountUser.getId()).stream()
+                        .map(view -> AccountDto.builder()
+                                .userId(accountUser.getId())
+                                .accountNumber(view.getAccountNumber())
+                                .balance(view.getBalance())
+                                .build())
+                        .collect(Collectors.toList()));
+        // 캐시에 있는 객체는 바꾸지 않는다
+        return accounts.stream()
+                .map(account -> withPendingBalance(account, pending))
+                .collect(Collectors.toList());
+    }
 
-        List<Account> accounts = accountRepository.findByAccountUser(accountUser);
+    /**
+     * 계좌번호 여러 개를 IN 조회, 없는 계좌번호는 결과 map 에 없다
+     */
+    @Transactional(readOnly = true)
+    public Map<String, AccountDto> getAccountsByAccountNumbers(
+            Collection<String> accountNumbers) {
+        Map<String, Long> pending = pendingBalances(accountNumbers);
+        Map<String, AccountDto> accounts = new HashMap<>();
+        for (List<String> chunk : chunks(accountNumbers)) {
+            for (AccountLookupView view :
+                    accountRepository.findBalancesByAccountNumberIn(chunk)) {
+                accounts.put(view.getAccountNumber(),
+                        withPendingBalance(toAccountDto(view), pending));
+            }
+        }
+        return accounts;
+    }
 
-        return accounts.stream()
-                .map(AccountDto::fromEntity)
+    /**
+     * 사용자 여러 명의 계좌를 IN 조회
+     * 있는 사용자는 (계좌가 없어도) 빈 목록으로, 없는 사용자는 결과 map 에 없다
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<AccountDto>> getAccountsByUserIds(Collection<Long> userIds) {
+        Map<String, Long> pending = pendingBalancesOfUsers(userIds);
+        Map<Long, List<AccountDto>> accounts = new HashMap<>();
+        for (List<Long> chunk : chunks(userIds)) {
+            accountUserRepository.findExistingIds(chunk)
+                    .forEach(userId -> accounts.put(userId, new ArrayList<>()));
+            for (AccountLookupView view :
+                    accountRepository.findBalancesByAccountUserIdIn(chunk)) {
+                accounts.computeIfAbsent(view.getUserId(), id -> new ArrayList<>())
+                        .add(withPendingBalance(toAccountDto(view), pending));
+            }
+        }
+        return accounts;
+    }
 
-                .collect(Collectors.toList());
+    private static AccountDto toAccountDto(AccountLookupView view) {
+        return AccountDto.builder()
+                .userId(view.getUserId())
+                .accountNumber(view.getAccountNumber())
+                .balance(view.getBalance())
+                .build();
+    }
+
+    private Map<String, Long> pendingBalances(Collection<String> accountNumbers) {
+        LedgerService ledger = ledgerService.getIfAvailable();
+        return ledger == null ? Map.of() : ledger.pendingBalances(accountNumbers);
+    }
+
+    private Map<String, Long> pendingBalancesOfUsers(Collection<Long> userIds) {
+        LedgerService ledger = ledgerService.getIfAvailable();
+        return ledger == null ? Map.of() : ledger.pendingBalancesOfUsers(userIds);
+    }
+
+    private static AccountDto withPendingBalance(AccountDto account, Map<String, Long> pending) {
+        Long balance = pending.get(account.getAccountNumber());
+        if (balance == null) {
+            return account;
+        }
+        return AccountDto.builder()
+                .userId(account.getUserId())
+                .accountNumber(account.getAccountNumber())
+                .balance(balance)
+                .registeredAt(account.getRegisteredAt())
+                .unRegisteredAt(account.getUnRegisteredAt())
+                .build();
+    }
+
+    // 중복을 빼고 BULK_CHUNK_SIZE 씩 나눈다
+    private static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += BULK_CHUNK_SIZE) {
+            chunks.add(distinct.subList(i, Math.min(i + BULK_CHUNK_SIZE, distinct.size())));
+        }
+        return chunks;
     }
 
-    private AccountUser getAccountUser(Long userId) {
-        AccountUser accountUser = accountUserRepository.findById(userId)
+    private AccountUserInfo getAccountUser(Long userId) {
+        AccountUserInfo accountUser = accountUserRepository.findInfoById(userId)
                 .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
         return accountUser;
     }
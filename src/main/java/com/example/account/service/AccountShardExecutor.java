@@ -0,0 +1,187 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
+import com.example.account.type.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌번호 해시로 고른 단일 스레드 샤드에서 명령을 실행 (ConcurrencyMode.SHARDED)
+ * 같은 계좌의 명령은 항상 같은 스레드에서 들어온 순서대로 실행되므로 락이 필요 없다.
+ * 샤드 스레드는 첫 명령이 들어올때 만들어진다.
+ * 샤드는 JVM 안에서만 유효하므로 단일 노드에서만 안전하다.
+ *
+ * 여러 계좌 명령 (submitAll) 은 관련된 샤드를 번호 순서로 모두 점유한 뒤
+ * 마지막 샤드 스레드에서 실행한다. 샤드를 항상 같은 순서로 점유하므로 교착되지 않는다.
+ * 샤드 스레드 안에서 점유하지 않은 샤드의 명령을 기다리면 이 순서가 깨지므로 (교착)
+ * 중첩 호출은 점유한 샤드의 계좌만 허용하고 나머지는 바로 실패시킨다.
+ */
+@Slf4j
+@Component
+public class AccountShardExecutor {
+    private final ThreadPoolExecutor[] shards;
+    private final LockMetrics lockMetrics;
+
+    public AccountShardExecutor(
+            LockMetrics lockMetrics,
+            @Value("${account.concurrency.sharded.shards:16}") int shardCount,
+            @Value("${account.concurrency.sharded.queue-capacity:10000}") int queueCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.lockMetrics = lockMetrics;
+        this.shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "account-shard-" + i;
+            int index = i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new ShardThread(runnable, name, this, index));
+        }
+    }
+
+    /**
+     * 계좌의 샤드에 명령을 넣는다
+     * 그 샤드를 이미 점유한 샤드 스레드에서 다시 호출하면 (중첩 호출) 줄을 서지 않고 바로 실행한다.
+     * 점유하지 않은 샤드의 중첩 호출, 샤드 큐가 가득 찬 경우는 락 실패와 같은 ACCOUNT_TRANSACTION_LOCK
+     */
+    public <T> CompletableFuture<T> submit(String accountNumber, Command<T> command) {
+        return submitAll(List.of(accountNumber), command);
+    }
+
+    /**
+     * 여러 계좌의 샤드를 모두 점유하고 명령을 실행한다 (이체)
+     * 앞 샤드 스레드들은 명령이 끝날 때까지 다른 명령을 받지 않고 기다린다.
+     */
+    public <T> CompletableFuture<T> submitAll(Collection<String> accountNumbers, Command<T> command) {
+        int[] indexes = accountNumbers.stream()
+                .mapToInt(this::shardOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ShardThread shardThread = currentShardThread();
+        if (shardThread == null) {
+            CompletableFuture<Void> released = new CompletableFuture<>();
+            result.whenComplete((value, e) -> released.complete(null));
+            occupy(accountNumbers, indexes, 0, command, result, released);
+            return result;
+        }
+
+        // 중첩 호출, 다른 샤드를 기다리면 그 샤드를 점유하고 이 샤드를 기다리는 명령과 서로 기다린다
+        if (Arrays.stream(indexes).allMatch(shardThread::owns)) {
+            run(command, result);
+        } else {
+            log.warn("Nested shard call for unowned shard : {}", accountNumbers);
+            accountNumbers.forEach(accountNumber -> lockMetrics.recordFailed(accountNumber, 0L));
+            result.completeExceptionally(
+                    new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+        }
+        return result;
+    }
+
+    public int shardOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    // indexes[position] 샤드를 점유하고, 마지막 샤드면 명령 실행, 아니면 다음 샤드로
+    private <T> void occupy(Collection<String> accountNumbers, int[] indexes,
+                            int position, Command<T> command, CompletableFuture<T> result,
+                            CompletableFuture<Void> released) {
+        int index = indexes[position];
+        boolean last = position == indexes.length - 1;
+        try {
+            shards[index].execute(() -> {
+                if (last) {
+                    ShardThread current = (ShardThread) Thread.currentThread();
+                    current.owned = indexes;
+                    try {
+                        run(command, result);
+                    } finally {
+                        current.owned = null;
+                    }
+                    return;
+                }
+                occupy(accountNumbers, indexes, position + 1, command, result, released);
+                released.join();
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Account shard queue full : {}", accountNumbers);
+            accountNumbers.forEach(accountNumber -> lockMetrics.recordFailed(accountNumber, 0L));
+            result.completeExceptionally(
+                    new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+        }
+    }
+
+    // 이 executor 의 샤드 스레드에서 호출됐으면 그 스레드, 아니면 null
+    private ShardThread currentShardThread() {
+        Thread current = Thread.currentThread();
+        if (!(current instanceof ShardThread) || ((ShardThread) current).executor != this) {
+            return null;
+        }
+        return (ShardThread) current;
+    }
+
+    private static <T> void run(Command<T> command, CompletableFuture<T> result) {
+        try {
+            result.complete(command.run());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Command<T> {
+        T run() throws Throwable;
+    }
+
+    private static class ShardThread extends Thread {
+        private final AccountShardExecutor executor;
+        private final int index;
+        // 여러 샤드를 점유하고 명령을 실행하는 동안 점유한 샤드들
+        private volatile int[] owned;
+
+        ShardThread(Runnable runnable, String name, AccountShardExecutor executor, int index) {
+            super(runnable, name);
+            this.executor = executor;
+            this.index = index;
+            setDaemon(true);
+        }
+
+        boolean owns(int shard) {
+            if (shard == index) {
+                return true;
+            }
+            int[] current = owned;
+            if (current == null) {
+                return false;
+            }
+            for (int ownedShard : current) {
+                if (ownedShard == shard) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
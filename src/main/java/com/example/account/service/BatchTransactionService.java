@@ -0,0 +1,276 @@
+package com.example.account.service;
+
+import com.example.account.app.LockPolicy;
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.BatchItemResult;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ConcurrencyMode;
+import com.example.account.type.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * 잔액 사용 일괄 처리 (정산)
+ * 요청을 계좌별로 묶어서 계좌마다
+ * 락 한 번 -> 트랜잭션 하나 안에서 요청 순서대로 검증 -> 거래는 saveAll (JDBC batch)
+ * 계좌 차감은 성공한 금액의 합으로 debitBalance 한 번 (잔액 조건이 붙은 update),
+ * 그 사이 다른 경로에서 잔액이 바뀌어 0 건이면 다시 읽어서 검증한다.
+ *
+ * 계좌 묶음은 parallelism 개의 작업이 나눠서 처리한다 (batchTransactionExecutor).
+ * ConcurrencyMode 를 따른다
+ * - LOCK      : 계좌 락
+ * - SHARDED   : 계좌의 샤드 스레드에서 실행
+ * - OPTIMISTIC: 락 없이 실행, 차감 재시도가 모두 실패하면 그 계좌 묶음 전체 실패
+ *
+ * 원장 모드에서는 DB 잔액을 바로 바꾸면 원장의 메모리 잔액과 어긋나므로 받지 않는다.
+ *
+ * 항목 검증 실패는 같은 batch 에 실패 거래로 남기고,
+ * 계좌 묶음 전체 실패 (락, 계좌 없음, 충돌) 는 FailedTransactionRecorder 로 넘긴다.
+ */
+@Slf4j
+@Service
+public class BatchTransactionService {
+    private static final LockPolicy BATCH_LOCK_POLICY = LockPolicy.builder()
+            .waitMillis(3000L)
+            .leaseMillis(30000L)
+            .fair(false)
+            .retryCount(1)
+            .retryBackoffMillis(200L)
+            .build();
+    private static final int MAX_DEBIT_ATTEMPTS = 3;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionCache transactionCache;
+    private final AccountBalanceCache accountBalanceCache;
+    private final FailedTransactionRecorder failedTransactionRecorder;
+    private final LockService lockService;
+    private final AccountShardExecutor shardExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final ConcurrencyMode concurrencyMode;
+    private final int parallelism;
+    private final boolean ledgerEnabled;
+
+    public BatchTransactionService(
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            TransactionIdGenerator transactionIdGenerator,
+            TransactionCache transactionCache,
+            AccountBalanceCache accountBalanceCache,
+            FailedTransactionRecorder failedTransactionRecorder,
+            LockService lockService,
+            AccountShardExecutor shardExecutor,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("batchTransactionExecutor") Executor executor,
+            @Value("${account.concurrency.mode:LOCK}") ConcurrencyMode concurrencyMode,
+            @Value("${account.transaction.batch.parallelism:8}") int parallelism,
+            @Value("${account.ledger.enabled:false}") boolean ledgerEnabled) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.transactionCache = transactionCache;
+        this.accountBalanceCache = accountBalanceCache;
+        this.failedTransactionRecorder = failedTransactionRecorder;
+        this.lockService = lockService;
+        this.shardExecutor = shardExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.concurrencyMode = concurrencyMode;
+        this.parallelism = parallelism;
+        this.ledgerEnabled = ledgerEnabled;
+    }
+
+    /**
+     * 항목별 결과를 요청 순서대로 반환, 일부가 실패해도 나머지는 처리된다
+     */
+    public List<BatchItemResult> useBalances(List<UseBalance.Request> requests) {
+        if (ledgerEnabled) {
+            throw new AccountException(ErrorCode.LEDGER_MODE_UNSUPPORTED);
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            groups.computeIfAbsent(requests.get(i).getAccountNumber(),
+                    accountNumber -> new ArrayList<>()).add(i);
+        }
+
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+        Queue<List<Integer>> pending = new ConcurrentLinkedQueue<>(groups.values());
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[
+                Math.min(parallelism, groups.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> {
+                List<Integer> group;
+                while ((group = pending.poll()) != null) {
+                    processGroup(requests, group, results);
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(workers).join();
+
+        return Arrays.asList(results);
+    }
+
+    private void processGroup(List<UseBalance.Request> requests, List<Integer> group,
+                              BatchItemResult[] results) {
+        String accountNumber = requests.get(group.get(0)).getAccountNumber();
+        List<UseBalance.Request> items = new ArrayList<>(group.size());
+        group.forEach(index -> items.add(requests.get(index)));
+
+        List<BatchItemResult> groupResults;
+        try {
+            groupResults = runExclusively(accountNumber,
+                    () -> transactionTemplate.execute(status -> debitAccount(accountNumber, items)));
+        } catch (Throwable e) {
+            ErrorCode errorCode = errorCodeOf(e);
+            log.error("Batch debit failed for accountNumber: {}, {}", accountNumber, errorCode);
+            groupResults = new ArrayList<>(items.size());
+            for (UseBalance.Request item : items) {
+                failedTransactionRecorder.record(USE, accountNumber, item.getAmount());
+                groupResults.add(BatchItemResult.failure(item, errorCode));
+            }
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            results[group.get(i)] = groupResults.get(i);
+        }
+    }
+
+    private <T> T runExclusively(String accountNumber, AccountShardExecutor.Command<T> command)
+            throws Throwable {
+        if (concurrencyMode == ConcurrencyMode.SHARDED) {
+            try {
+                return shardExecutor.submit(accountNumber, command).join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return command.run();
+        }
+
+        lockService.lock(accountNumber, BATCH_LOCK_POLICY);
+        try {
+            return command.run();
+        } finally {
+            lockService.unlock(accountNumber, BATCH_LOCK_POLICY);
+        }
+    }
+
+    /**
+     * 한 계좌의 항목을 순서대로 차감, 검증에 실패한 항목은 실패 거래로 남긴다
+     */
+    private List<BatchItemResult> debitAccount(
+            String accountNumber, List<UseBalance.Request> items) {
+        for (int attempt = 1; ; attempt++) {
+            Account account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+            // 엔티티는 고치지 않는다 (dirty checking 으로 version 비교 update 가 나가지 않게)
+            long balance = account.getBalance();
+            long debited = 0L;
+            List<Long> snapshots = new ArrayList<>(items.size());
+            List<ErrorCode> errorCodes = new ArrayList<>(items.size());
+            for (UseBalance.Request item : items) {
+                ErrorCode errorCode = validate(account, balance, item);
+                if (errorCode == null) {
+                    balance -= item.getAmount();
+                    debited += item.getAmount();
+                }
+                errorCodes.add(errorCode);
+                snapshots.add(balance);
+            }
+
+            Long userId = account.getAccountUser().getId();
+            if (debited > 0 && accountRepository.debitBalance(
+                    accountNumber, userId, debited, AccountStatus.IN_USE) == 0) {
+                if (attempt < MAX_DEBIT_ATTEMPTS) {
+                    continue;
+                }
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            return saveTransactions(account, items, snapshots, errorCodes);
+        }
+    }
+
+    private List<BatchItemResult> saveTransactions(
+            Account account, List<UseBalance.Request> items,
+            List<Long> snapshots, List<ErrorCode> errorCodes) {
+        List<Transaction> transactions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            transactions.add(Transaction.builder()
+                    .transactionType(USE)
+                    .transactionResultType(errorCodes.get(i) == null ? S : F)
+                    .account(account)
+                    .amount(items.get(i).getAmount())
+                    .balanceSnapshot(snapshots.get(i))
+                    .transactionId(transactionIdGenerator.next())
+                    .transactedAt(LocalDateTime.now())
+                    .build());
+        }
+        transactionRepository.saveAll(transactions);
+        accountBalanceCache.evictAfterCommit(account.getAccountUser().getId());
+
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            TransactionDto transaction = TransactionDto.fromEntity(transactions.get(i));
+            transactionCache.putAfterCommit(transaction);
+            results.add(errorCodes.get(i) == null
+                    ? BatchItemResult.success(transaction)
+                    : BatchItemResult.failure(items.get(i), errorCodes.get(i)));
+        }
+        return results;
+    }
+
+    // TransactionService.validateUseBalance 와 같은 순서로 검증
+    private static ErrorCode validate(Account account, long balance, UseBalance.Request item) {
+        if (!Objects.equals(item.getUserId(), account.getAccountUser().getId())) {
+            return ErrorCode.USER_ACCOUNT_UN_MATCH;
+        }
+        if (account.getAccountStatus() != AccountStatus.IN_USE) {
+            return ErrorCode.ACCOUNT_ALREADY_UNREGISTERED;
+        }
+        if (balance < item.getAmount()) {
+            return ErrorCode.AMOUNT_EXCEED_BALANCE;
+        }
+        return null;
+    }
+
+    // 락 실패, 계좌 없음, 차감 재시도 소진은 AccountException
+    private static ErrorCode errorCodeOf(Throwable e) {
+        if (e instanceof AccountException) {
+            return ((AccountException) e).getErrorCode();
+        }
+        log.error("Unexpected batch debit failure", e);
+        return ErrorCode.INTERNAL_SERVER_ERROR;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.account.service;
+
+import com.example.account.dto.FailedTransaction;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 실패한 거래를 요청 스레드 밖에서 모아서 저장
+ * 요청 쪽은 큐에 넣기만 하므로 계좌 락을 바로 놓을 수 있고,
+ * 실패가 몰려도 batch 단위 saveAll 로 DB 쓰기 횟수가 줄어든다.
+ *
+ * 큐가 가득 차서 offerTimeout 안에 넣지 못하면 호출 스레드에서 바로 저장한다 (backpressure)
+ */
+@Slf4j
+@Component
+public class FailedTransactionRecorder {
+    private final TransactionService transactionService;
+    private final BlockingQueue<FailedTransaction> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "failed-transaction-writer"));
+
+    public FailedTransactionRecorder(
+            TransactionService transactionService,
+            MeterRegistry meterRegistry,
+            @Value("${account.transaction.failed.queue-capacity:10000}") int queueCapacity,
+            @Value("${account.transaction.failed.batch-size:500}") int batchSize,
+            @Value("${account.transaction.failed.flush-interval-ms:200}") long flushIntervalMillis,
+            @Value("${account.transaction.failed.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.transactionService = transactionService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        meterRegistry.gauge("account.transaction.failed.queue", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(TransactionType transactionType, String accountNumber, Long amount) {
+        FailedTransaction failedTransaction = new FailedTransaction(
+                transactionType, accountNumber, amount, LocalDateTime.now());
+        try {
+            if (queue.offer(failedTransaction, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            log.warn("Failed transaction queue full, saving on caller thread");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save(Collections.singletonList(failedTransaction));
+    }
+
+    /**
+     * 큐를 batchSize 씩 비울때까지 저장
+     */
+    public synchronized void flush() {
+        List<FailedTransaction> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            save(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private void save(List<FailedTransaction> batch) {
+        try {
+            transactionService.saveFailedTransactions(batch);
+        } catch (Exception e) {
+            // 실패 기록이 안된다고 요청을 다시 실패시키지는 않는다
+            log.error("Failed to save {} failed transactions", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.account.service;
+
+import com.example.account.app.Idempotent;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key 헤더가 있는 요청을 key 당 한 번만 실행
+ * LockAopAspect 보다 먼저 실행돼서, 재시도는 락도 DB 도 건드리지 않는다.
+ *
+ * 1. 같은 key 인데 요청 지문(메서드 + 경로 + 본문)이 다르면 IDEMPOTENCY_KEY_REUSED (422)
+ * 2. 같은 노드에서 처리중인 같은 key 는 그 결과를 같이 기다린다 (coalesce)
+ * 3. 저장소에 완료된 응답이 있으면 그대로 돌려준다 (replay)
+ * 4. 다른 노드에서 처리중이면 IDEMPOTENCY_KEY_IN_PROGRESS
+ * 5. 처음이면 실행하고 성공한 응답만 저장, 실패하면 key 를 풀어준다
+ *
+ * 실행하는 동안 처리중 표시를 in-flight-ttl 의 1/3 마다 연장한다.
+ * 락 대기 + 트랜잭션이 in-flight-ttl 보다 길어져도 key 가 풀려서 재시도가 두 번 실행되지 않는다.
+ * 노드가 죽으면 연장이 멈추므로 표시는 in-flight-ttl 뒤에 사라진다.
+ *
+ * 본문은 역직렬화된 인자를 다시 JSON 으로 만들어서 비교한다 (공백, 필드 순서는 무시된다).
+ *
+ * 저장소 장애시에는 key 없이 실행한다 (기존 동작).
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IdempotencyAspect {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    // 이 노드에서 처리중인 요청
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, JavaType> responseTypes = new ConcurrentHashMap<>();
+    private final long renewIntervalMillis;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "idempotency-renew");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Counter executedCounter;
+    private final Counter replayedCounter;
+    private final Counter coalescedCounter;
+    private final Counter inProgressCounter;
+    private final Counter reusedCounter;
+
+    public IdempotencyAspect(
+            IdempotencyStore idempotencyStore,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${account.idempotency.in-flight-ttl-ms:30000}") long inFlightTtlMillis) {
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.renewIntervalMillis = Math.max(1L, inFlightTtlMillis / 3);
+        this.executedCounter = counter(meterRegistry, "executed");
+        this.replayedCounter = counter(meterRegistry, "replayed");
+        this.coalescedCounter = counter(meterRegistry, "coalesced");
+        this.inProgressCounter = counter(meterRegistry, "in_progress");
+        this.reusedCounter = counter(meterRegistry, "reused");
+    }
+
+    @Around("@annotation(idempotent)")
+    public Object aroundMethod(ProceedingJoinPoint pjp, Idempotent idempotent)
+            throws Throwable {
+        HttpServletRequest request = currentRequest();
+        String idempotencyKey = request == null ? null : request.getHeader(HEADER);
+        if (idempotencyKey == null) {
+            return pjp.proceed();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        String key = idempotent.value() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(pjp, request);
+        boolean async = returnsCompletionStage(pjp);
+
+        InFlight current = new InFlight(fingerprint);
+        CompletableFuture<Object> result = current.result;
+        InFlight running = inFlight.putIfAbsent(key, current);
+        if (running != null) {
+            if (!running.fingerprint.equals(fingerprint)) {
+                return respond(reused(), async);
+            }
+            coalescedCounter.increment();
+            return respond(running.result, async);
+        }
+        result.whenComplete((value, e) -> inFlight.remove(key, current));
+
+        IdempotencyStore.Entry entry;
+        try {
+            entry = idempotencyStore.claim(key, fingerprint);
+        } catch (Exception e) {
+            log.warn("Idempotency store unavailable, key : {}", key, e);
+            complete(result, proceed(pjp, async));
+            return respond(result, async);
+        }
+
+        if (entry == null) {
+            executedCounter.increment();
+            Renewal renewal = new Renewal(key, fingerprint);
+            complete(result, proceed(pjp, async)
+                    .whenComplete((value, e) -> {
+                        renewal.stop();
+                        save(key, fingerprint, value, e);
+                    }));
+        } else if (entry.getFingerprint() != null && !entry.getFingerprint().equals(fingerprint)) {
+            complete(result, reused());
+        } else if (entry.isCompleted()) {
+            replayedCounter.increment();
+            replay(pjp, entry.getResponse(), result);
+        } else {
+            inProgressCounter.increment();
+            result.completeExceptionally(
+                    new AccountException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS));
+        }
+        return respond(result, async);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private CompletableFuture<Object> reused() {
+        reusedCounter.increment();
+        return CompletableFuture.failedFuture(
+                new AccountException(ErrorCode.IDEMPOTENCY_KEY_REUSED));
+    }
+
+    private void save(String key, String fingerprint, Object value, Throwable error) {
+        try {
+            if (error == null) {
+                idempotencyStore.complete(key, fingerprint, objectMapper.writeValueAsString(value));
+            } else {
+                idempotencyStore.release(key);
+            }
+        } catch (Exception e) {
+            // 저장 실패는 응답에 영향을 주지 않는다, 선점 표시는 in-flight-ttl 뒤에 사라진다
+            log.error("Idempotency store write failed, key : {}", key, e);
+        }
+    }
+
+    private void replay(ProceedingJoinPoint pjp, String response, CompletableFuture<Object> result) {
+        try {
+            result.complete(objectMapper.readValue(response, responseType(pjp)));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> proceed(ProceedingJoinPoint pjp, boolean async) {
+        try {
+            Object value = pjp.proceed();
+            return async
+                    ? ((CompletionStage<Object>) value).toCompletableFuture()
+                    : CompletableFuture.completedFuture(value);
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void complete(CompletableFuture<Object> result, CompletableFuture<Object> source) {
+        source.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(unwrap(e));
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    /**
+     * 비동기 메서드는 새 future 로, 동기 메서드는 결과를 기다려서 반환
+     */
+    private static Object respond(CompletableFuture<Object> result, boolean async)
+            throws Throwable {
+        if (async) {
+            return result.thenApply(value -> value);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private JavaType responseType(ProceedingJoinPoint pjp) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        return responseTypes.computeIfAbsent(method, m -> {
+            ResolvableType type = ResolvableType.forMethodReturnType(m);
+            if (CompletionStage.class.isAssignableFrom(type.toClass())) {
+                type = type.as(CompletionStage.class).getGeneric(0);
+            }
+            return objectMapper.constructType(type.getType());
+        });
+    }
+
+    private static boolean returnsCompletionStage(ProceedingJoinPoint pjp) {
+        return pjp.getSignature() instanceof MethodSignature
+                && CompletionStage.class.isAssignableFrom(
+                ((MethodSignature) pjp.getSignature()).getReturnType());
+    }
+
+    /**
+     * 메서드 + 경로 + 본문(인자 JSON) 의 SHA-256
+     */
+    private String fingerprint(ProceedingJoinPoint pjp, HttpServletRequest request)
+            throws JsonProcessingException {
+        String text = request.getMethod() + " " + request.getRequestURI() + "\n"
+                + objectMapper.writeValueAsString(pjp.getArgs());
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        return ((ServletRequestAttributes) attributes).getRequest();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null
+                ? e.getCause() : e;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("account.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 처리중 표시 연장, stop 이 끝난 뒤에는 연장하지 않는다
+     * (complete 로 저장한 응답의 ttl 을 처리중 ttl 로 덮어쓰지 않도록)
+     */
+    private class Renewal {
+        private final String key;
+        private final String fingerprint;
+        private final ScheduledFuture<?> task;
+        private boolean stopped;
+
+        Renewal(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.task = renewer.scheduleWithFixedDelay(this::renew,
+                    renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void renew() {
+            if (stopped) {
+                return;
+            }
+            try {
+                if (!idempotencyStore.renew(key, fingerprint)) {
+                    log.warn("Idempotency key expired while in flight, key : {}", key);
+                }
+            } catch (Exception e) {
+                // 다음 주기에 다시 시도, 그 사이 만료되면 재시도가 실행될 수 있다
+                log.warn("Idempotency key renew failed, key : {}", key, e);
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            task.cancel(false);
+        }
+    }
+
+    private static class InFlight {
+        private final String fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
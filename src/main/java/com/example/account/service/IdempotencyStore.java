@@ -0,0 +1,50 @@
+package com.example.account.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Idempotency-Key 저장소
+ * account.idempotency.store 로 구현체 선택 (REDIS | MEMORY)
+ *
+ * key 는 처리중(completed = false) -> 완료(응답 JSON) 순서로 바뀐다.
+ * 요청 지문(메서드 + 경로 + 본문의 해시)을 같이 저장해서, 같은 key 로 다른 요청이 오면 구분한다.
+ * 처리중 표시는 in-flight-ttl 이 지나면 사라져서, 노드가 죽어도 key 가 영원히 잠기지 않는다.
+ * 실행중인 노드는 renew 로 계속 연장하므로, 요청이 in-flight-ttl 보다 오래 걸려도 풀리지 않는다.
+ */
+public interface IdempotencyStore {
+    /**
+     * key 를 선점, 선점했으면 null, 이미 있으면 저장된 기록
+     */
+    Entry claim(String key, String fingerprint);
+
+    /**
+     * 처리중 표시를 in-flight-ttl 만큼 다시 연장, key 가 이미 없으면 false
+     * complete/release 뒤에는 호출하지 않는다 (IdempotencyAspect 가 보장)
+     */
+    boolean renew(String key, String fingerprint);
+
+    /**
+     * 응답 저장, ttl 동안 재시도에 그대로 돌려준다
+     */
+    void complete(String key, String fingerprint, String response);
+
+    /**
+     * 선점 해제, 실패한 요청은 같은 key 로 다시 실행할 수 있다
+     */
+    void release(String key);
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    class Entry {
+        private boolean completed;
+        private String fingerprint;
+        private String response;
+
+        static Entry inProgress(String fingerprint) {
+            return new Entry(false, fingerprint, null);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.account.service;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 계좌번호 기준 JVM 내부 락 (계좌마다 하나)
+ * 같은 노드에서 같은 계좌를 노리는 요청은 여기서 먼저 줄을 서고,
+ * 락을 잡은 요청 하나만 Redis 락을 시도한다.
+ *
+ * 계좌마다 따로 잡으므로 서로 다른 계좌끼리 기다리는 일이 없고,
+ * 대기자도 보유자도 없는 계좌의 락은 바로 지운다.
+ * 스레드에 묶이지 않아서 잡은 스레드가 아니어도 풀 수 있다 (재진입은 안 된다).
+ */
+public class LocalAccountLocks {
+    private final Map<String, Entry> locks = new ConcurrentHashMap<>();
+
+    /**
+     * timeout 안에 락을 잡으면 true
+     */
+    public boolean tryLock(String accountNumber, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        CompletableFuture<Void> granted = acquire(accountNumber);
+        try {
+            granted.get(timeout, unit);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            // 포기하기 직전에 락을 넘겨받았으면 잡은 것으로 본다
+            return !granted.completeExceptionally(new CancellationException());
+        } catch (InterruptedException e) {
+            if (!granted.completeExceptionally(new CancellationException())) {
+                unlock(accountNumber);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 스레드를 잡지 않고 기다린다, timeout 안에 락을 잡으면 true 로 완료
+     * 락을 넘겨받으면 unlock 을 호출한 스레드에서 완료된다.
+     */
+    public CompletableFuture<Boolean> tryLockAsync(
+            String accountNumber, long timeout, TimeUnit unit) {
+        CompletableFuture<Void> granted = acquire(accountNumber);
+        if (granted.isDone()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        CompletableFuture.delayedExecutor(timeout, unit).execute(() ->
+                granted.completeExceptionally(new CancellationException()));
+        return granted.handle((ignored, e) -> e == null);
+    }
+
+    /**
+     * 기다리는 요청이 있으면 들어온 순서대로 넘겨주고, 없으면 락을 지운다
+     */
+    public void unlock(String accountNumber) {
+        Entry entry = locks.get(accountNumber);
+        if (entry == null) {
+            return;
+        }
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (entry) {
+                if (!entry.held) {
+                    return;
+                }
+                next = entry.waiters.poll();
+                if (next == null) {
+                    entry.held = false;
+                    entry.removed = true;
+                    locks.remove(accountNumber, entry);
+                    return;
+                }
+            }
+            // 넘겨받은 쪽의 후속 작업이 entry 를 잡은 채로 돌지 않도록 밖에서 완료,
+            // 시간 초과로 포기한 대기자면 다음으로 넘어간다
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return locks.size();
+    }
+
+    private CompletableFuture<Void> acquire(String accountNumber) {
+        while (true) {
+            Entry entry = locks.computeIfAbsent(accountNumber, key -> new Entry());
+            synchronized (entry) {
+                // unlock 이 지운 락이면 새로 만든다
+                if (entry.removed) {
+                    continue;
+                }
+                if (!entry.held) {
+                    entry.held = true;
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> waiter = new CompletableFuture<>();
+                entry.waiters.add(waiter);
+                return waiter;
+            }
+        }
+    }
+
+    private static class Entry {
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private boolean held;
+        private boolean removed;
+    }
+}
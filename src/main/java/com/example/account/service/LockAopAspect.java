@@ -1,35 +1,292 @@
 package com.example.account.service;
 
+import com.example.account.app.AccountLock;
 import com.example.account.app.AccountLockIdInterface;
+import com.example.account.app.AccountLockIdsInterface;
+import com.example.account.app.LockPolicy;
+import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
+import com.example.account.type.ConcurrencyMode;
+import com.example.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
 
+import javax.persistence.OptimisticLockException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
 @Aspect
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class LockAopAspect {
+    // 비동기 락 소유자 id, 실제 스레드 id 와 겹치지 않도록 음수를 사용
+    private static final AtomicLong ASYNC_LOCK_OWNER = new AtomicLong();
+
     private final LockService lockService;
+    private final LockMetrics lockMetrics;
+    private final AccountShardExecutor shardExecutor;
+    // 메서드별 락 정책, 최초 호출때 한번만 annotation 을 읽는다
+    private final ConcurrentMap<Method, LockPolicy> lockPolicies = new ConcurrentHashMap<>();
+
+    // 비동기 락을 잡은 뒤의 메서드 실행은 Redisson(netty) 스레드가 아닌 여기서
+    @Autowired
+    @Qualifier("transactionExecutor")
+    private Executor transactionExecutor = Runnable::run;
+
+    @Value("${account.concurrency.mode:LOCK}")
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.LOCK;
+
+    @Value("${account.concurrency.optimistic.max-retries:3}")
+    private int optimisticMaxRetries = 3;
+
+    @Value("${account.concurrency.optimistic.backoff-ms:10}")
+    private long optimisticBackoffMillis = 10L;
+
+    // 원장 모드의 잔액 사용/취소는 LedgerService 가 계좌 상태를 잠그고 처리한다
+    @Value("${account.ledger.enabled:false}")
+    private boolean ledgerEnabled = false;
+
     @Around("@annotation(com.example.account.app.AccountLock)&& args(request)")
     public Object aroundMethod(
             ProceedingJoinPoint pjp,
             AccountLockIdInterface request
     ) throws  Throwable{
+        // Redis 락을 또 잡으면 원장 쓰기마다 Redis 왕복이 붙는다
+        if (ledgerEnabled) {
+            return pjp.proceed();
+        }
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return returnsCompletionStage(pjp)
+                    ? proceedOptimisticAsync(pjp, request.getAccountNumber(), 0, System.nanoTime())
+                    : proceedOptimistic(pjp, List.of(request.getAccountNumber()));
+        }
+        if (concurrencyMode == ConcurrencyMode.SHARDED) {
+            return proceedSharded(pjp, List.of(request.getAccountNumber()));
+        }
+
+        LockPolicy policy = resolvePolicy(pjp);
+        if (returnsCompletionStage(pjp)) {
+            return aroundAsyncMethod(pjp, request.getAccountNumber(), policy);
+        }
+
         //lock 취득 시도
-        lockService.lock(request.getAccountNumber());
+        lockService.lock(request.getAccountNumber(), policy);
+        long lockedAt = System.nanoTime();
 
         try {
 
             return pjp.proceed();
         }finally {
-            {
+            try {
                 //lock  해제
-                lockService.unlock(request.getAccountNumber());
+                lockService.unlock(request.getAccountNumber(), policy);
+            } finally {
+                lockMetrics.recordHold(System.nanoTime() - lockedAt);
+            }
+        }
+    }
+
+    /**
+     * 여러 계좌를 다루는 요청 (이체), 동기 메서드만 지원
+     * LOCK      : 모든 계좌를 계좌번호 순서로 한 번에 잠근다
+     * OPTIMISTIC: 단일 계좌와 같이 version 충돌시 재시도
+     * SHARDED   : 두 계좌의 샤드를 모두 점유하고 실행 (AccountShardExecutor.submitAll)
+     */
+    @Around("@annotation(com.example.account.app.AccountLock) && args(request)")
+    public Object aroundMultiAccountMethod(
+            ProceedingJoinPoint pjp,
+            AccountLockIdsInterface request
+    ) throws Throwable {
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return proceedOptimistic(pjp, request.getAccountNumbers());
+        }
+        if (concurrencyMode == ConcurrencyMode.SHARDED) {
+            return proceedSharded(pjp, request.getAccountNumbers());
+        }
+
+        LockPolicy policy = resolvePolicy(pjp);
+        lockService.lockAll(request.getAccountNumbers(), policy);
+        long lockedAt = System.nanoTime();
+        try {
+            return pjp.proceed();
+        } finally {
+            try {
+                lockService.unlockAll(request.getAccountNumbers(), policy);
+            } finally {
+                lockMetrics.recordHold(System.nanoTime() - lockedAt);
+            }
+        }
+    }
+
+    /**
+     * CompletableFuture 를 반환하는 메서드는 락 대기/해제 동안 호출 스레드를 잡지 않는다
+     * 락 취득 -> 메서드 실행 -> 결과 future 완료 -> 락 해제 -> 응답
+     * 메서드 실행은 transactionExecutor 에서, 락을 잡은 뒤에는 실행이 거절돼도 락을 푼다.
+     */
+    private CompletableFuture<Object> aroundAsyncMethod(
+            ProceedingJoinPoint pjp, String accountNumber, LockPolicy policy) {
+        long ownerId = ASYNC_LOCK_OWNER.decrementAndGet();
+        CompletableFuture<Void> locked = lockService.lockAsync(accountNumber, policy, ownerId);
+        AtomicLong lockedAt = new AtomicLong();
+
+        return locked
+                .thenComposeAsync(ignored -> {
+                    lockedAt.set(System.nanoTime());
+                    return proceedAsync(pjp);
+                }, transactionExecutor)
+                .handle((value, error) -> {
+                    if (locked.isCompletedExceptionally()) {
+                        // 락을 못 잡았으면 풀 것도 없다
+                        return CompletableFuture.failedFuture(error);
+                    }
+                    return lockService
+                            .unlockAsync(accountNumber, policy, ownerId)
+                            .handle((unlocked, unlockError) -> {
+                                if (lockedAt.get() != 0L) {
+                                    lockMetrics.recordHold(System.nanoTime() - lockedAt.get());
+                                }
+                                if (unlockError != null) {
+                                    log.error("Redis unlock failed", unlockError);
+                                }
+                                if (error != null) {
+                                    throw error instanceof CompletionException
+                                            ? (CompletionException) error
+                                            : new CompletionException(error);
+                                }
+                                return value;
+                            });
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 락 없이 계좌의 샤드 스레드에서 실행 (여러 계좌면 모든 샤드를 점유하고)
+     * 비동기 메서드는 결과 future 가 끝날때까지 샤드 스레드가 기다려야
+     * 같은 계좌의 다음 명령과 겹치지 않는다.
+     */
+    private Object proceedSharded(ProceedingJoinPoint pjp, Collection<String> accountNumbers)
+            throws Throwable {
+        if (returnsCompletionStage(pjp)) {
+            return shardExecutor.submitAll(accountNumbers, () -> proceedAsync(pjp).join());
+        }
+
+        try {
+            return shardExecutor.submitAll(accountNumbers, pjp::proceed).join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 락 없이 실행하고 version 충돌이면 새 트랜잭션으로 다시 실행
+     * 재시도를 다 쓰면 락 실패와 같은 ACCOUNT_TRANSACTION_LOCK (지표도 락 실패로)
+     */
+    private Object proceedOptimistic(ProceedingJoinPoint pjp, Collection<String> accountNumbers)
+            throws Throwable {
+        long start = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return pjp.proceed();
+            } catch (Exception e) {
+                if (!isOptimisticFailure(e)) {
+                    throw e;
+                }
+                if (attempt >= optimisticMaxRetries) {
+                    log.error("Optimistic retries exhausted", e);
+                    long waitNanos = System.nanoTime() - start;
+                    accountNumbers.forEach(accountNumber ->
+                            lockMetrics.recordFailed(accountNumber, waitNanos));
+                    throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                }
+                log.debug("Optimistic lock conflict, retry {}", attempt + 1);
+                accountNumbers.forEach(lockMetrics::recordConflict);
+                Thread.sleep(optimisticBackoffMillis << attempt);
             }
         }
     }
+
+    private CompletableFuture<Object> proceedOptimisticAsync(
+            ProceedingJoinPoint pjp, String accountNumber, int attempt, long start) {
+        return proceedAsync(pjp)
+                .handle((value, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(value);
+                    }
+                    if (!isOptimisticFailure(error)) {
+                        return CompletableFuture.failedFuture(error);
+                    }
+                    if (attempt >= optimisticMaxRetries) {
+                        log.error("Optimistic retries exhausted", error);
+                        lockMetrics.recordFailed(accountNumber, System.nanoTime() - start);
+                        return CompletableFuture.failedFuture(
+                                new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+                    }
+                    log.debug("Optimistic lock conflict, retry {}", attempt + 1);
+                    lockMetrics.recordConflict(accountNumber);
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(
+                                            optimisticBackoffMillis << attempt, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored ->
+                                    proceedOptimisticAsync(pjp, accountNumber, attempt + 1, start));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static boolean isOptimisticFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException
+                    || cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> proceedAsync(ProceedingJoinPoint pjp) {
+        try {
+            return ((CompletionStage<Object>) pjp.proceed()).toCompletableFuture();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private LockPolicy resolvePolicy(ProceedingJoinPoint pjp) {
+        if (!(pjp.getSignature() instanceof MethodSignature)) {
+            return LockPolicy.DEFAULT;
+        }
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        if (method == null) {
+            return LockPolicy.DEFAULT;
+        }
+        return lockPolicies.computeIfAbsent(method, m ->
+                LockPolicy.from(AnnotationUtils.findAnnotation(m, AccountLock.class)));
+    }
+
+    private boolean returnsCompletionStage(ProceedingJoinPoint pjp) {
+        return pjp.getSignature() instanceof MethodSignature
+                && CompletionStage.class.isAssignableFrom(
+                ((MethodSignature) pjp.getSignature()).getReturnType());
+    }
 }
@@ -1,46 +1,315 @@
 package com.example.account.service;
 
+import com.example.account.app.LockPolicy;
 import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
 import com.example.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.RedissonMultiLock;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 계좌 락 (2단계)
+ * 1. JVM 내부 계좌별 락    -> 같은 노드의 경쟁자는 여기서 대기
+ * 2. Redisson 분산 락       -> 노드당 한 스레드만 Redis 에 접근
+ * Redis 오류는 락 실패로 본다 (로컬 락만으로 진행하지 않는다).
+ *
+ * 비동기 경로(lockAsync)도 같은 로컬 락을 스레드를 잡지 않고 기다린 뒤
+ * ownerId 를 락 소유자로 Redis 락을 잡는다.
+ * 대기/유지 시간, 공정성, 재시도는 LockPolicy 를 따른다.
+ *
+ * 여러 계좌 (lockAll) 는 계좌번호 정렬 순서로 잡아서
+ * 서로 반대 순서로 잡으려는 두 요청이 교착되지 않게 한다.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LockService {
     private final RedissonClient redissonClient;
+    private final LockMetrics lockMetrics;
+    private final LocalAccountLocks localLocks = new LocalAccountLocks();
 
     public void lock(String accountNumber) {
+        lock(accountNumber, LockPolicy.DEFAULT);
+    }
 
-        RLock lock = redissonClient.getLock(getLockKey(accountNumber));
+    public void lock(String accountNumber, LockPolicy policy) {
         log.debug("Trying lock for accountNumber: {}", accountNumber);
+        long start = System.nanoTime();
+
+        for (int attempt = 0; ; attempt++) {
+            if (tryLock(accountNumber, policy)) {
+                lockMetrics.recordAcquired(accountNumber, System.nanoTime() - start);
+                return;
+            }
+            if (attempt >= policy.getRetryCount()) {
+                lockMetrics.recordFailed(accountNumber, System.nanoTime() - start);
+                log.error("======Lock acquisition failed=====");
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            backoff(policy.backoffMillis(attempt));
+        }
+    }
 
+    public void unlock(String accountNumber){
+        unlock(accountNumber, LockPolicy.DEFAULT);
+    }
+
+    public void unlock(String accountNumber, LockPolicy policy){
+        log.debug("unlock for accountNumber: {}", accountNumber);
         try {
-            boolean isLock = lock.tryLock(1, 15, TimeUnit.SECONDS);
-            if(!isLock) {
+            getLock(accountNumber, policy).unlock();
+        } finally {
+            localLocks.unlock(accountNumber);
+        }
+    }
 
+    /**
+     * 여러 계좌를 한 번에 잠근다 (이체)
+     * 로컬 락과 Redis 락 (RedissonMultiLock) 모두 계좌번호 순서로
+     * 전부 잡거나 하나도 잡지 않는다. 공정 락은 지원하지 않는다.
+     */
+    public void lockAll(Collection<String> accountNumbers, LockPolicy policy) {
+        List<String> ordered = new ArrayList<>(new TreeSet<>(accountNumbers));
+        log.debug("Trying lock for accountNumbers: {}", ordered);
+        long start = System.nanoTime();
+
+        for (int attempt = 0; ; attempt++) {
+            if (tryLockAll(ordered, policy)) {
+                long waitNanos = System.nanoTime() - start;
+                ordered.forEach(accountNumber ->
+                        lockMetrics.recordAcquired(accountNumber, waitNanos));
+                return;
+            }
+            if (attempt >= policy.getRetryCount()) {
+                long waitNanos = System.nanoTime() - start;
+                ordered.forEach(accountNumber ->
+                        lockMetrics.recordFailed(accountNumber, waitNanos));
                 log.error("======Lock acquisition failed=====");
                 throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
             }
-        } catch (AccountException e){
-            throw e;
+            backoff(policy.backoffMillis(attempt));
+        }
+    }
 
-        } catch (Exception e){
-            log.error("Redis lock failed",e);
+    public void unlockAll(Collection<String> accountNumbers, LockPolicy policy) {
+        List<String> ordered = new ArrayList<>(new TreeSet<>(accountNumbers));
+        log.debug("unlock for accountNumbers: {}", ordered);
+        try {
+            multiLock(ordered).unlock();
+        } finally {
+            unlockLocal(ordered);
         }
+    }
 
+    public CompletableFuture<Void> lockAsync(String accountNumber, long ownerId) {
+        return lockAsync(accountNumber, LockPolicy.DEFAULT, ownerId);
+    }
+
+    public CompletableFuture<Void> lockAsync(
+            String accountNumber, LockPolicy policy, long ownerId) {
+        log.debug("Trying async lock for accountNumber: {}", accountNumber);
+        long start = System.nanoTime();
 
+        return tryLockAsync(accountNumber, policy, ownerId, 0)
+                .whenComplete((locked, e) -> {
+                    if (e == null) {
+                        lockMetrics.recordAcquired(accountNumber, System.nanoTime() - start);
+                    } else {
+                        lockMetrics.recordFailed(accountNumber, System.nanoTime() - start);
+                    }
+                });
     }
 
-    public void unlock(String accountNumber){
-        log.debug("unlock for accountNumber: {}", accountNumber);
-        redissonClient.getLock(getLockKey(accountNumber)).unlock();
+    public CompletableFuture<Void> unlockAsync(String accountNumber, long ownerId) {
+        return unlockAsync(accountNumber, LockPolicy.DEFAULT, ownerId);
+    }
+
+    public CompletableFuture<Void> unlockAsync(
+            String accountNumber, LockPolicy policy, long ownerId) {
+        log.debug("async unlock for accountNumber: {}", accountNumber);
+
+        CompletableFuture<Void> unlocked;
+        try {
+            unlocked = getLock(accountNumber, policy)
+                    .unlockAsync(ownerId)
+                    .toCompletableFuture();
+        } catch (RuntimeException e) {
+            unlocked = CompletableFuture.failedFuture(e);
+        }
+        // Redis 해제가 실패해도 로컬 락은 푼다
+        return unlocked.whenComplete((ignored, e) -> localLocks.unlock(accountNumber));
+    }
+
+    /**
+     * 로컬 락 -> Redis 락 순서로 한번 시도, 대기 시간은 두 단계가 나눠쓴다
+     */
+    private boolean tryLock(String accountNumber, LockPolicy policy) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(policy.getWaitMillis());
+        try {
+            if (!localLocks.tryLock(accountNumber, policy.getWaitMillis(), TimeUnit.MILLISECONDS)) {
+                log.debug("Local lock busy for accountNumber: {}", accountNumber);
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+
+        try {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(
+                    Math.max(0L, deadline - System.nanoTime()));
+            boolean isLock = getLock(accountNumber, policy).tryLock(remainingMillis,
+                    policy.getLeaseMillis(), TimeUnit.MILLISECONDS);
+            if (!isLock) {
+                localLocks.unlock(accountNumber);
+            }
+            return isLock;
+        } catch (InterruptedException e) {
+            localLocks.unlock(accountNumber);
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        } catch (RuntimeException e) {
+            log.error("Redis lock failed", e);
+            localLocks.unlock(accountNumber);
+            return false;
+        }
+    }
+
+    private boolean tryLockAll(List<String> orderedAccountNumbers, LockPolicy policy) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(policy.getWaitMillis());
+        List<String> acquired = new ArrayList<>(orderedAccountNumbers.size());
+
+        try {
+            for (String accountNumber : orderedAccountNumbers) {
+                long remainingNanos = Math.max(0L, deadline - System.nanoTime());
+                if (!localLocks.tryLock(accountNumber, remainingNanos, TimeUnit.NANOSECONDS)) {
+                    log.debug("Local lock busy for accountNumbers: {}", orderedAccountNumbers);
+                    unlockLocal(acquired);
+                    return false;
+                }
+                acquired.add(accountNumber);
+            }
+        } catch (InterruptedException e) {
+            unlockLocal(acquired);
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+
+        try {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(
+                    Math.max(0L, deadline - System.nanoTime()));
+            boolean isLock = multiLock(orderedAccountNumbers).tryLock(remainingMillis,
+                    policy.getLeaseMillis(), TimeUnit.MILLISECONDS);
+            if (!isLock) {
+                unlockLocal(acquired);
+            }
+            return isLock;
+        } catch (InterruptedException e) {
+            unlockLocal(acquired);
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        } catch (RuntimeException e) {
+            log.error("Redis lock failed", e);
+            unlockLocal(acquired);
+            return false;
+        }
+    }
+
+    private void unlockLocal(List<String> accountNumbers) {
+        accountNumbers.forEach(localLocks::unlock);
+    }
+
+    private RLock multiLock(List<String> orderedAccountNumbers) {
+        RLock[] locks = new RLock[orderedAccountNumbers.size()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = redissonClient.getLock(getLockKey(orderedAccountNumbers.get(i)));
+        }
+        return new RedissonMultiLock(locks);
+    }
+
+    private CompletableFuture<Void> tryLockAsync(
+            String accountNumber, LockPolicy policy, long ownerId, int attempt) {
+        return tryLockOnceAsync(accountNumber, policy, ownerId)
+                .thenCompose(isLock -> {
+                    if (isLock) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    if (attempt >= policy.getRetryCount()) {
+                        log.error("======Lock acquisition failed=====");
+                        throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                    }
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(
+                                            policy.backoffMillis(attempt), TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored ->
+                                    tryLockAsync(accountNumber, policy, ownerId, attempt + 1));
+                });
+    }
+
+    /**
+     * tryLock 의 비동기 버전, 로컬 락 -> Redis 락 순서로 한번 시도
+     */
+    private CompletableFuture<Boolean> tryLockOnceAsync(
+            String accountNumber, LockPolicy policy, long ownerId) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(policy.getWaitMillis());
+
+        return localLocks.tryLockAsync(accountNumber, policy.getWaitMillis(), TimeUnit.MILLISECONDS)
+                .thenCompose(localLocked -> {
+                    if (!localLocked) {
+                        log.debug("Local lock busy for accountNumber: {}", accountNumber);
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(
+                            Math.max(0L, deadline - System.nanoTime()));
+                    CompletableFuture<Boolean> redisLocked;
+                    try {
+                        redisLocked = getLock(accountNumber, policy)
+                                .tryLockAsync(remainingMillis, policy.getLeaseMillis(),
+                                        TimeUnit.MILLISECONDS, ownerId)
+                                .toCompletableFuture();
+                    } catch (RuntimeException e) {
+                        redisLocked = CompletableFuture.failedFuture(e);
+                    }
+                    return redisLocked.handle((isLock, e) -> {
+                        if (e != null) {
+                            log.error("Redis lock failed", e);
+                        }
+                        boolean locked = e == null && Boolean.TRUE.equals(isLock);
+                        if (!locked) {
+                            localLocks.unlock(accountNumber);
+                        }
+                        return locked;
+                    });
+                });
+    }
+
+    private void backoff(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+    }
+
+    private RLock getLock(String accountNumber, LockPolicy policy) {
+        return policy.isFair()
+                ? redissonClient.getFairLock(getLockKey(accountNumber))
+                : redissonClient.getLock(getLockKey(accountNumber));
     }
 
     private String getLockKey(String accountNumber)
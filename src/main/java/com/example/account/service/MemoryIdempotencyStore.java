@@ -0,0 +1,73 @@
+package com.example.account.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 노드 메모리 저장소 (단일 노드, 로컬 개발용)
+ * 노드가 여러 개면 다른 노드로 간 재시도는 막지 못한다.
+ * 처리중 표시는 in-flight-ttl, 완료된 응답은 ttl 뒤에 만료 (RedisIdempotencyStore 와 같다)
+ */
+@Component
+@ConditionalOnProperty(name = "account.idempotency.store", havingValue = "MEMORY")
+public class MemoryIdempotencyStore implements IdempotencyStore {
+    private final Cache<String, Entry> entries;
+
+    public MemoryIdempotencyStore(
+            @Value("${account.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${account.idempotency.ttl-seconds:86400}") long ttlSeconds,
+            @Value("${account.idempotency.in-flight-ttl-ms:30000}") long inFlightTtlMillis) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long inFlightTtlNanos = TimeUnit.MILLISECONDS.toNanos(inFlightTtlMillis);
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.isCompleted() ? ttlNanos : inFlightTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry,
+                                                  long currentTime, long currentDuration) {
+                        return entry.isCompleted() ? ttlNanos : inFlightTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public Entry claim(String key, String fingerprint) {
+        return entries.asMap().putIfAbsent(key, Entry.inProgress(fingerprint));
+    }
+
+    @Override
+    public boolean renew(String key, String fingerprint) {
+        // 새 값으로 바꿔야 expireAfterUpdate 로 만료 시간이 다시 잡힌다
+        return entries.asMap().computeIfPresent(key,
+                (k, entry) -> !entry.isCompleted() && fingerprint.equals(entry.getFingerprint())
+                        ? Entry.inProgress(fingerprint) : entry) != null;
+    }
+
+    @Override
+    public void complete(String key, String fingerprint, String response) {
+        entries.put(key, new Entry(true, fingerprint, response));
+    }
+
+    @Override
+    public void release(String key) {
+        entries.invalidate(key);
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.account.service;
+
+import com.example.account.dto.ReconciliationMismatch;
+import com.example.account.dto.ReconciliationReport;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.ReconciliationRow;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.MismatchType;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 잔액 대사
+ * 계좌별 성공 거래를 순서대로 다시 적용해서
+ * 1. 직전 balanceSnapshot ± amount == 이번 balanceSnapshot
+ * 2. 마지막 balanceSnapshot == Account.balance
+ * 를 확인하고 계좌마다 처음 어긋난 거래를 보고한다.
+ * (초기 잔액은 거래로 남지 않으므로 첫 거래의 snapshot 을 기준으로 삼는다)
+ *
+ * 계좌 id 구간을 partition-size 이하가 될때까지 반으로 나눠 ForkJoinPool 에서 처리하고,
+ * 구간마다 읽기 전용 트랜잭션에서 projection 스트림으로 읽어 메모리는 구간 크기와 무관하다.
+ * parallelism 은 DB 커넥션 풀 크기보다 작게 둬야 한다.
+ *
+ * 지표
+ * - account.reconciliation.accounts / transactions : 처리 건수 (rate 로 처리량)
+ * - account.reconciliation.mismatches              : 불일치 건수
+ * - account.reconciliation.progress                : 진행률 (0..1)
+ * - account.reconciliation.duration                : 한 번 실행 시간
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ForkJoinPool pool;
+    private final long partitionSize;
+    private final int maxMismatches;
+
+    private final Counter accountCounter;
+    private final Counter transactionCounter;
+    private final Counter mismatchCounter;
+    private final Timer durationTimer;
+
+    private CompletableFuture<ReconciliationReport> current;
+    private volatile Run lastRun;
+
+    public ReconciliationService(
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${account.reconciliation.parallelism:4}") int parallelism,
+            @Value("${account.reconciliation.partition-size:1000}") long partitionSize,
+            @Value("${account.reconciliation.max-mismatches:1000}") int maxMismatches) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("partitionSize must be positive");
+        }
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.pool = new ForkJoinPool(parallelism);
+        this.partitionSize = partitionSize;
+        this.maxMismatches = maxMismatches;
+
+        this.accountCounter = Counter.builder("account.reconciliation.accounts")
+                .description("Accounts reconciled")
+                .register(meterRegistry);
+        this.transactionCounter = Counter.builder("account.reconciliation.transactions")
+                .description("Transactions replayed by reconciliation")
+                .register(meterRegistry);
+        this.mismatchCounter = Counter.builder("account.reconciliation.mismatches")
+                .description("Accounts whose history does not match the balance")
+                .register(meterRegistry);
+        this.durationTimer = Timer.builder("account.reconciliation.duration")
+                .description("Time of one reconciliation run")
+                .register(meterRegistry);
+        Gauge.builder("account.reconciliation.progress", this,
+                        service -> service.lastRun == null ? 0 : service.lastRun.progress())
+                .description("Progress of the current reconciliation run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 대사를 시작, 이미 실행중이면 실행중인 결과를 돌려준다
+     */
+    public synchronized CompletableFuture<ReconciliationReport> start() {
+        if (current != null && !current.isDone()) {
+            return current;
+        }
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        Run run = minId == null
+                ? new Run(0L, 0L)
+                : new Run(minId, maxId + 1);
+        lastRun = run;
+
+        Timer.Sample sample = Timer.start();
+        current = CompletableFuture
+                .runAsync(() -> new Partition(run, run.fromId, run.toId).invoke(), pool)
+                .handle((ignored, e) -> {
+                    sample.stop(durationTimer);
+                    run.finishedAt = LocalDateTime.now();
+                    if (e != null) {
+                        log.error("Reconciliation failed", e);
+                        throw new IllegalStateException("Reconciliation failed", e);
+                    }
+                    log.info("Reconciliation finished : {} accounts, {} transactions, {} mismatches",
+                            run.accounts.get(), run.transactions.get(), run.mismatchCount.get());
+                    return run.report();
+                });
+        return current;
+    }
+
+    public ReconciliationReport reconcile() {
+        return start().join();
+    }
+
+    /**
+     * 마지막 (또는 진행중인) 실행의 상태
+     */
+    public ReconciliationReport lastReport() {
+        Run run = lastRun;
+        return run == null ? null : run.report();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void reconcileRange(Run run, long fromId, long toId) {
+        // 건수는 구간 안에서 모았다가 한 번에 더한다 (공유 카운터 경합 방지)
+        long transactions = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<ReconciliationRow> rows =
+                         transactionRepository.streamForReconciliation(fromId, toId)) {
+                Iterator<ReconciliationRow> iterator = rows.iterator();
+                Replay replay = null;
+                while (iterator.hasNext()) {
+                    ReconciliationRow row = iterator.next();
+                    if (replay == null || !replay.accountId.equals(row.getAccountId())) {
+                        finish(run, replay);
+                        replay = new Replay(row);
+                    }
+                    replay.apply(row);
+                    count++;
+                }
+                finish(run, replay);
+            }
+            return count;
+        });
+        run.transactions.addAndGet(transactions);
+        transactionCounter.increment(transactions);
+        run.doneIds.addAndGet(toId - fromId);
+    }
+
+    private void finish(Run run, Replay replay) {
+        if (replay == null) {
+            return;
+        }
+        run.accounts.incrementAndGet();
+        accountCounter.increment();
+
+        ReconciliationMismatch mismatch = replay.finish();
+        if (mismatch != null) {
+            mismatchCounter.increment();
+            if (run.mismatchCount.incrementAndGet() <= maxMismatches) {
+                run.mismatches.add(mismatch);
+            }
+        }
+    }
+
+    /**
+     * 계좌 하나의 거래를 순서대로 적용, 처음 어긋난 거래만 기억한다
+     */
+    static class Replay {
+        private final Long accountId;
+        private final String accountNumber;
+        private final Long accountBalance;
+        private Long balance;
+        private String lastTransactionId;
+        private ReconciliationMismatch mismatch;
+
+        Replay(ReconciliationRow first) {
+            this.accountId = first.getAccountId();
+            this.accountNumber = first.getAccountNumber();
+            this.accountBalance = first.getAccountBalance();
+        }
+
+        void apply(ReconciliationRow row) {
+            if (mismatch != null) {
+                return;
+            }
+            if (balance != null) {
+                long expected = isDebit(row.getTransactionType())
+                        ? balance - row.getAmount()
+                        : balance + row.getAmount();
+                if (expected != row.getBalanceSnapshot()) {
+                    mismatch = mismatch(row.getTransactionId(), MismatchType.SNAPSHOT,
+                            expected, row.getBalanceSnapshot());
+                    return;
+                }
+            }
+            balance = row.getBalanceSnapshot();
+            lastTransactionId = row.getTransactionId();
+        }
+
+        // USE, TRANSFER_OUT 은 출금 / CANCEL, TRANSFER_IN 은 입금
+        private static boolean isDebit(TransactionType transactionType) {
+            return transactionType == TransactionType.USE
+                    || transactionType == TransactionType.TRANSFER_OUT;
+        }
+
+        ReconciliationMismatch finish() {
+            if (mismatch == null && !balance.equals(accountBalance)) {
+                mismatch = mismatch(lastTransactionId, MismatchType.BALANCE,
+                        balance, accountBalance);
+            }
+            return mismatch;
+        }
+
+        private ReconciliationMismatch mismatch(String transactionId, MismatchType type,
+                                                Long expected, Long actual) {
+            return ReconciliationMismatch.builder()
+                    .accountNumber(accountNumber)
+                    .transactionId(transactionId)
+                    .mismatchType(type)
+                    .expected(expected)
+                    .actual(actual)
+                    .build();
+        }
+    }
+
+    /**
+     * 계좌 id 구간 [fromId, toId), partitionSize 이하가 될때까지 반으로 나눈다
+     * 거래가 몰린 구간은 다른 워커가 나머지 반을 훔쳐가서 처리한다
+     */
+    private class Partition extends RecursiveAction {
+        private final Run run;
+        private final long fromId;
+        private final long toId;
+
+        Partition(Run run, long fromId, long toId) {
+            this.run = run;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId <= partitionSize) {
+                if (fromId < toId) {
+                    reconcileRange(run, fromId, toId);
+                }
+                return;
+            }
+            long mid = fromId + (toId - fromId) / 2;
+            invokeAll(new Partition(run, fromId, mid), new Partition(run, mid, toId));
+        }
+    }
+
+    private static class Run {
+        private final long fromId;
+        private final long toId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+        private final AtomicLong doneIds = new AtomicLong();
+        private final AtomicLong accounts = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+        private final AtomicLong mismatchCount = new AtomicLong();
+        private final Queue<ReconciliationMismatch> mismatches = new ConcurrentLinkedQueue<>();
+
+        Run(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        double progress() {
+            long total = toId - fromId;
+            return total == 0 ? 1.0 : (double) doneIds.get() / total;
+        }
+
+        ReconciliationReport report() {
+            return ReconciliationReport.builder()
+                    .running(finishedAt == null)
+                    .progress(finishedAt == null ? progress() : 1.0)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .accounts(accounts.get())
+                    .transactions(transactions.get())
+                    .mismatchCount(mismatchCount.get())
+                    .mismatches(new ArrayList<>(mismatches))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.account.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 저장소 (기본), 모든 노드가 같은 key 를 본다
+ * 선점은 SET NX PX 한 번, 연장은 PEXPIRE 한 번, 완료는 SET EX 한 번
+ */
+@Component
+@ConditionalOnProperty(name = "account.idempotency.store",
+        havingValue = "REDIS", matchIfMissing = true)
+public class RedisIdempotencyStore implements IdempotencyStore {
+    private static final String KEY_PREFIX = "IDEMPOTENCY:";
+
+    private final RedissonClient redissonClient;
+    private final TypedJsonJacksonCodec codec;
+    private final long ttlSeconds;
+    private final long inFlightTtlMillis;
+
+    public RedisIdempotencyStore(
+            RedissonClient redissonClient,
+            ObjectMapper objectMapper,
+            @Value("${account.idempotency.ttl-seconds:86400}") long ttlSeconds,
+            @Value("${account.idempotency.in-flight-ttl-ms:30000}") long inFlightTtlMillis) {
+        this.redissonClient = redissonClient;
+        this.codec = new TypedJsonJacksonCodec(Entry.class, objectMapper);
+        this.ttlSeconds = ttlSeconds;
+        this.inFlightTtlMillis = inFlightTtlMillis;
+    }
+
+    @Override
+    public Entry claim(String key, String fingerprint) {
+        RBucket<Entry> bucket = bucket(key);
+        // 선점 실패 후 읽기 전에 만료될 수 있으므로 한 번 더 시도
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (bucket.trySet(Entry.inProgress(fingerprint), inFlightTtlMillis, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+            Entry entry = bucket.get();
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return Entry.inProgress(fingerprint);
+    }
+
+    @Override
+    public boolean renew(String key, String fingerprint) {
+        return bucket(key).expire(inFlightTtlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void complete(String key, String fingerprint, String response) {
+        bucket(key).set(new Entry(true, fingerprint, response), ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void release(String key) {
+        bucket(key).delete();
+    }
+
+    private RBucket<Entry> bucket(String key) {
+        return redissonClient.getBucket(KEY_PREFIX + key, codec);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.account.service;
+
+import com.example.account.config.CacheConfig;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 거래 조회 캐시
+ * 거래는 한번 저장되면 바뀌지 않으므로 transactionId 로 TransactionDto 를 캐시한다.
+ * 없는 거래 id 는 짧게 negative 캐시해서 반복 조회가 DB 까지 가지 않게 한다.
+ *
+ * 적중률은 actuator cache.gets, 조회 시간은 account.transaction.query (result=hit|miss|not_found)
+ */
+@Component
+public class TransactionCache {
+    private final Cache transactions;
+    private final Cache notFound;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+    private final Timer notFoundTimer;
+
+    public TransactionCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.transactions = cacheManager.getCache(CacheConfig.TRANSACTION);
+        this.notFound = cacheManager.getCache(CacheConfig.TRANSACTION_NOT_FOUND);
+        this.hitTimer = queryTimer(meterRegistry, "hit");
+        this.missTimer = queryTimer(meterRegistry, "miss");
+        this.notFoundTimer = queryTimer(meterRegistry, "not_found");
+    }
+
+    /**
+     * 캐시에 없으면 loader 로 읽어서 캐시 (read-through)
+     */
+    public TransactionDto get(String transactionId, Supplier<TransactionDto> loader) {
+        long start = System.nanoTime();
+
+        TransactionDto cached = transactions.get(transactionId, TransactionDto.class);
+        if (cached != null) {
+            hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        if (notFound.get(transactionId) != null) {
+            notFoundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new AccountException(ErrorCode.TRANSACTION_NOT_FOUND);
+        }
+
+        try {
+            TransactionDto loaded = loader.get();
+            transactions.put(transactionId, loaded);
+            missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return loaded;
+        } catch (AccountException e) {
+            if (e.getErrorCode() == ErrorCode.TRANSACTION_NOT_FOUND) {
+                notFound.put(transactionId, Boolean.TRUE);
+                notFoundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 저장한 거래를 캐시, 트랜잭션 안이면 커밋된 뒤에 넣는다 (롤백된 거래는 캐시하지 않음)
+     */
+    public void putAfterCommit(TransactionDto transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(transaction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(transaction);
+            }
+        });
+    }
+
+    private void put(TransactionDto transaction) {
+        transactions.put(transaction.getTransactionId(), transaction);
+        notFound.evict(transaction.getTransactionId());
+    }
+
+    private static Timer queryTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("account.transaction.query")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
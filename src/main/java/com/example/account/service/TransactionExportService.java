@@ -0,0 +1,131 @@
+package com.example.account.service;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 거래 내보내기 (NDJSON / CSV)
+ * 결과를 List 로 모으지 않고 DB 커서에서 한 건씩 읽어 바로 출력 스트림에 쓴다.
+ * CHUNK 건마다 persistence context 를 비우고 writer 를 flush 하므로 메모리는 결과 크기와 무관하다.
+ */
+@Slf4j
+@Service
+public class TransactionExportService {
+    static final int CHUNK = 1_000;
+    static final String CSV_HEADER = "transactionId,accountNumber,transactionType,"
+            + "transactionResultType,amount,balanceSnapshot,transactedAt";
+
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter jsonWriter;
+
+    public TransactionExportService(
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            EntityManager entityManager,
+            ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.entityManager = entityManager;
+        // 한 줄 쓸때마다 writer 가 닫히거나 flush 되지 않도록 (flush 는 CHUNK 마다)
+        this.jsonWriter = objectMapper.writerFor(TransactionDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 계좌번호가 없으면 null (전체 계좌), 있는데 계좌가 없으면 ACCOUNT_NOT_FOUND
+     * 출력을 시작하기 전에 검증해야 에러 응답을 보낼 수 있다
+     */
+    @Transactional(readOnly = true)
+    public Long resolveAccountId(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        return accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND))
+                .getId();
+    }
+
+    /**
+     * [from, to) 구간의 거래를 거래시각 순으로 출력, 쓴 건수를 반환
+     */
+    @Transactional(readOnly = true)
+    public long export(Long accountId, LocalDateTime from, LocalDateTime to,
+                       ExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long count = 0;
+        try (Stream<Transaction> transactions = accountId == null
+                ? transactionRepository.streamByTransactedAt(from, to)
+                : transactionRepository.streamByAccountId(accountId, from, to)) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                write(writer, format, TransactionDto.fromEntity(iterator.next()));
+                if (++count % CHUNK == 0) {
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} transactions", count);
+
+        return count;
+    }
+
+    private void write(Writer writer, ExportFormat format, TransactionDto transaction)
+            throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            jsonWriter.writeValue(writer, transaction);
+        } else {
+            // 모든 값이 숫자/enum/hex 라서 escape 가 필요 없다
+            writer.write(String.valueOf(transaction.getTransactionId()));
+            writer.write(',');
+            writer.write(transaction.getAccountNumber());
+            writer.write(',');
+            writer.write(transaction.getTransactionType().name());
+            writer.write(',');
+            writer.write(transaction.getTransactionResultType().name());
+            writer.write(',');
+            writer.write(String.valueOf(transaction.getAmount()));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.getBalanceSnapshot()));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.getTransactedAt()));
+        }
+        writer.write('\n');
+    }
+}
@@ -4,8 +4,13 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.FailedTransaction;
+import com.example.account.dto.TransactionCursor;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionPageDto;
+import com.example.account.dto.TransferDto;
 import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.TransactionRepository;
@@ -15,12 +20,20 @@ import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.example.account.type.TransactionResultType.*;
 import static com.example.account.type.TransactionType.*;
@@ -29,13 +42,41 @@ import static com.example.account.type.TransactionType.*;
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
+    static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     private final TransactionRepository transactionRepository;
     private final AccountUserRepository accountUserRepository;
     private final AccountRepository accountRepository;
-
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionCache transactionCache;
+    private final AccountBalanceCache accountBalanceCache;
+
+    // 원장 모드에서는 잔액 사용/취소만 LedgerService 로 처리한다
+    @Value("${account.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    /**
+     * 잔액 차감은 조건부 update 한 문장으로 처리해서 외부 락 없이도 안전하다
+     * 갱신된 row 가 없을 때만 다시 조회해서 실패 원인을 찾는다
+     */
     @Transactional
     public TransactionDto useBalance(Long userId, String accountNumber, Long amount){
 
+        int debited = accountRepository.debitBalance(
+                accountNumber, userId, amount, AccountStatus.IN_USE);
+        if (debited == 0) {
+            throw getUseBalanceFailure(userId, accountNumber, amount);
+        }
+
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(()->new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        accountBalanceCache.evictAfterCommit(userId);
+
+        return   TransactionDto.fromEntity(saveAndGetTransaction(USE,S,account,amount));
+    }
+
+    private AccountException getUseBalanceFailure(
+            Long userId, String accountNumber, Long amount) {
         AccountUser user = accountUserRepository.findById(userId)
                 .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
         Account account = accountRepository.findByAccountNumber(accountNumber)
@@ -49,15 +90,18 @@ public class TransactionService {
          */
         validateUseBalance(user, account, amount);
 
-        account.useBalance(amount);
-
-
-
-
-        return   TransactionDto.fromEntity(saveAndGetTransaction(USE,S,account,amount));
-
-
+        // 검증은 통과 -> update 와 조회 사이에 다른 거래가 잔액을 바꾼 경우
+        return new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+    }
 
+    /**
+     * transactionExecutor 에서 잔액 사용, 요청 스레드는 바로 반환된다
+     */
+    @Async("transactionExecutor")
+    @Transactional
+    public CompletableFuture<TransactionDto> useBalanceAsync(
+            Long userId, String accountNumber, Long amount) {
+        return CompletableFuture.completedFuture(useBalance(userId, accountNumber, amount));
     }
 
     // 사용자가 없는 경우 => 위에서 체크
@@ -76,29 +120,23 @@ public class TransactionService {
         }
     }
 
-    @Transactional
-    public void saveFailedUseTransaction(String accountNumber, Long amount) {
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
-
-        saveAndGetTransaction(USE,F,account, amount);
-
-    }
-
     private Transaction saveAndGetTransaction(
             TransactionType transactionType,
             TransactionResultType transactionResultType
             , Account account, Long amount) {
-        return transactionRepository.save(
+        Transaction transaction = transactionRepository.save(
                 Transaction.builder()
                     .transactionType(transactionType)
                     .transactionResultType(transactionResultType)
                     .account(account)
                     .amount(amount)
                     .balanceSnapshot(account.getBalance())
-                    .transactionId(UUID.randomUUID().toString().replace("-",""))
+                    .transactionId(transactionIdGenerator.next())
                     .transactedAt(LocalDateTime.now())
                 .build());
+        transactionCache.putAfterCommit(TransactionDto.fromEntity(transaction));
+
+        return transaction;
 
     }
 
@@ -117,7 +155,7 @@ public class TransactionService {
 
         validateCancelBalance(transaction,account,amount);
         account.cancelBalance(amount);
-
+        accountBalanceCache.evictAfterCommit(account.getAccountUser().getId());
 
         return TransactionDto.fromEntity(saveAndGetTransaction(CANCEL,S, account, amount));
 
@@ -125,7 +163,20 @@ public class TransactionService {
 
     }
 
+    @Async("transactionExecutor")
+    @Transactional
+    public CompletableFuture<TransactionDto> cancelBalanceAsync(
+            String transactionId, String accountNumber, Long amount) {
+        return CompletableFuture.completedFuture(
+                cancelBalance(transactionId, accountNumber, amount));
+    }
+
     private void validateCancelBalance(Transaction transaction, Account account, Long amount){
+        // 이체는 출금/입금이 한 쌍이라 한쪽만 취소할 수 없다
+        if (transaction.getTransactionType() == TRANSFER_OUT
+                || transaction.getTransactionType() == TRANSFER_IN) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
         if (!Objects.equals(transaction.getAccount().getId(), account.getId())){
             throw new AccountException(ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH);
 
@@ -140,21 +191,146 @@ public class TransactionService {
         }
     }
 
+    /**
+     * 이체, 출금과 입금을 한 트랜잭션에서 처리하고 거래 두 건을 남긴다
+     * 두 계좌의 락은 LockAopAspect 가 계좌번호 순서로 잡는다 (lockAll).
+     * 출금은 useBalance 와 같은 조건부 update, 입금 계좌가 없거나 해지되면 출금도 롤백된다.
+     */
     @Transactional
-    public void saveFailedCancelTransaction(
-            String accountNumber, Long amount) {
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(()-> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+    public TransferDto transfer(Long userId, String fromAccountNumber,
+                                String toAccountNumber, Long amount) {
+        // 원장의 메모리 잔액을 거치지 않고 DB 잔액을 바꾸면 원장 잔액과 어긋난다
+        if (ledgerEnabled) {
+            throw new AccountException(ErrorCode.LEDGER_MODE_UNSUPPORTED);
+        }
+        if (Objects.equals(fromAccountNumber, toAccountNumber)) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
 
+        int debited = accountRepository.debitBalance(
+                fromAccountNumber, userId, amount, AccountStatus.IN_USE);
+        if (debited == 0) {
+            throw getUseBalanceFailure(userId, fromAccountNumber, amount);
+        }
+        int credited = accountRepository.creditBalance(
+                toAccountNumber, amount, AccountStatus.IN_USE);
+        if (credited == 0) {
+            accountRepository.findByAccountNumber(toAccountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
 
-        saveAndGetTransaction(CANCEL,F,account,amount);
+        Map<String, Account> accounts = accountRepository.findByAccountNumberIn(
+                        List.of(fromAccountNumber, toAccountNumber))
+                .stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+        Account from = accounts.get(fromAccountNumber);
+        Account to = accounts.get(toAccountNumber);
+
+        String withdrawalId = transactionIdGenerator.next();
+        String depositId = transactionIdGenerator.next();
+        LocalDateTime transactedAt = LocalDateTime.now();
+        List<Transaction> transactions = transactionRepository.saveAll(List.of(
+                transferTransaction(TRANSFER_OUT, from, amount, withdrawalId, depositId,
+                        transactedAt),
+                transferTransaction(TRANSFER_IN, to, amount, depositId, withdrawalId,
+                        transactedAt)));
+
+        accountBalanceCache.evictAfterCommit(from.getAccountUser().getId());
+        accountBalanceCache.evictAfterCommit(to.getAccountUser().getId());
+        TransactionDto withdrawal = TransactionDto.fromEntity(transactions.get(0));
+        TransactionDto deposit = TransactionDto.fromEntity(transactions.get(1));
+        transactionCache.putAfterCommit(withdrawal);
+        transactionCache.putAfterCommit(deposit);
+
+        return new TransferDto(withdrawal, deposit);
+    }
 
+    private static Transaction transferTransaction(
+            TransactionType transactionType, Account account, Long amount,
+            String transactionId, String counterpartTransactionId,
+            LocalDateTime transactedAt) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(S)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(account.getBalance())
+                .transactionId(transactionId)
+                .counterpartTransactionId(counterpartTransactionId)
+                .transactedAt(transactedAt)
+                .build();
     }
 
-    public TransactionDto queryTransaction(String transactionId) {
+    /**
+     * 실패 거래를 모아서 저장 (FailedTransactionRecorder)
+     * 계좌는 IN 조회 한번, 거래는 saveAll 로 batch insert
+     */
+    @Transactional
+    public void saveFailedTransactions(List<FailedTransaction> failedTransactions) {
+        Map<String, Account> accounts = accountRepository.findByAccountNumberIn(
+                        failedTransactions.stream()
+                                .map(FailedTransaction::getAccountNumber)
+                                .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+        List<Transaction> transactions = new ArrayList<>(failedTransactions.size());
+        for (FailedTransaction failed : failedTransactions) {
+            Account account = accounts.get(failed.getAccountNumber());
+            if (account == null) {
+                log.warn("Skip failed transaction of unknown account : {}",
+                        failed.getAccountNumber());
+                continue;
+            }
+            transactions.add(Transaction.builder()
+                    .transactionType(failed.getTransactionType())
+                    .transactionResultType(F)
+                    .account(account)
+                    .amount(failed.getAmount())
+                    .balanceSnapshot(account.getBalance())
+                    .transactionId(transactionIdGenerator.next())
+                    .transactedAt(failed.getFailedAt())
+                    .build());
+        }
+        transactionRepository.saveAll(transactions)
+                .forEach(saved -> transactionCache.putAfterCommit(TransactionDto.fromEntity(saved)));
+    }
 
+    /**
+     * 거래는 바뀌지 않으므로 TransactionCache 에서 먼저 찾는다
+     */
+    public TransactionDto queryTransaction(String transactionId) {
+        return transactionCache.get(transactionId, () ->
+                TransactionDto.fromEntity(transactionRepository.findByTransactionId(transactionId)
+                        .orElseThrow(()-> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND))));
+    }
 
-            return TransactionDto.fromEntity(transactionRepository.findByTransactionId(transactionId)
-                    .orElseThrow(()-> new AccountException(ErrorCode.TRANSACTION_NOT_FOUND)));
+    /**
+     * 계좌 거래 내역 (최근 순, keyset 페이지)
+     * size + 1 건을 읽어서 다음 페이지가 있는지 판단한다
+     */
+    @Transactional
+    public TransactionPageDto getTransactionHistory(
+            String accountNumber, TransactionType transactionType,
+            TransactionResultType transactionResultType, String cursor, int size) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        int pageSize = Math.min(Math.max(size, 1), MAX_HISTORY_PAGE_SIZE);
+        TransactionCursor from = cursor == null
+                ? TransactionCursor.FIRST : TransactionCursor.decode(cursor);
+
+        List<Transaction> transactions = transactionRepository.findHistory(
+                account, transactionType, transactionResultType,
+                from.getTransactedAt(), from.getId(), PageRequest.of(0, pageSize + 1));
+
+        String nextCursor = null;
+        if (transactions.size() > pageSize) {
+            transactions = transactions.subList(0, pageSize);
+            nextCursor = TransactionCursor.of(transactions.get(pageSize - 1)).encode();
+        }
+        return new TransactionPageDto(transactions.stream()
+                .map(TransactionDto::fromEntity)
+                .collect(Collectors.toList()), nextCursor);
     }
 }
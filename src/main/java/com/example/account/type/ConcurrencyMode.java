@@ -0,0 +1,13 @@
+package com.example.account.type;
+
+/**
+ * 계좌 잔액 변경시 동시성 제어 방식
+ * LOCK       : Redisson 분산 락 (기본)
+ * OPTIMISTIC : 락 없이 Account.version 충돌시 재시도
+ * SHARDED    : 계좌별 단일 스레드 샤드에서 순서대로 실행 (AccountShardExecutor)
+ */
+public enum ConcurrencyMode {
+    LOCK,
+    OPTIMISTIC,
+    SHARDED
+}
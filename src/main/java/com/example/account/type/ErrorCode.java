@@ -22,7 +22,10 @@ public enum ErrorCode {
     CANCEL_MUST_FULLY("부분 취소는 허용되지 않습니다 "),
     TOO_OLD_ORDER_TO_CANCEL("1년이 지난 거래는 취소가 불가능합니다"),
     ACCOUNT_ALREADY_UNREGISTERED("계좌가 이미 해지되었습니다 "),
-    BALANCE_NOT_EMPTY("잔액이 있는 계좌는 해지할 수 없습니다");
+    BALANCE_NOT_EMPTY("잔액이 있는 계좌는 해지할 수 없습니다"),
+    IDEMPOTENCY_KEY_IN_PROGRESS("같은 Idempotency-Key 의 요청이 처리중입니다"),
+    IDEMPOTENCY_KEY_REUSED("같은 Idempotency-Key 로 다른 요청을 보낼 수 없습니다"),
+    LEDGER_MODE_UNSUPPORTED("원장 모드에서는 지원하지 않는 거래입니다");
 
 
 
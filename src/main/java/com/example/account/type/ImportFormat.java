@@ -0,0 +1,10 @@
+package com.example.account.type;
+
+/**
+ * 계좌 일괄 생성 입력 형식
+ * CSV    : userId,initialBalance (첫 줄 헤더는 건너뜀)
+ * NDJSON : {"userId":1,"initialBalance":1000} 한 줄에 하나
+ */
+public enum ImportFormat {
+    CSV, NDJSON
+}
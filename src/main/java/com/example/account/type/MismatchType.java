@@ -0,0 +1,10 @@
+package com.example.account.type;
+
+/**
+ * 대사 불일치 종류
+ * SNAPSHOT : 직전 잔액 ± 거래금액 과 balanceSnapshot 이 다름
+ * BALANCE  : 마지막 balanceSnapshot 과 Account.balance 가 다름
+ */
+public enum MismatchType {
+    SNAPSHOT, BALANCE
+}
@@ -1,5 +1,7 @@
 package com.example.account.type;
 
 public enum TransactionType {
-    USE,CANCEL
+    USE,CANCEL,
+    // 이체는 출금/입금 두 거래가 counterpartTransactionId 로 서로를 가리킨다
+    TRANSFER_OUT,TRANSFER_IN
 }
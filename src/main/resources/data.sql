@@ -5,4 +5,5 @@ values (2,'edi',now(),now());
 insert into account_user(id,name,created_at,updated_at)
 values (3,'steve',now(),now());
 
-
+-- 계좌번호 시퀀스, increment 는 account.number.block-size 와 같게 (다르면 기동 실패)
+create sequence if not exists account_number_seq start with 1000000000 increment by 100;
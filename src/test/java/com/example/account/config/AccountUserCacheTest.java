@@ -0,0 +1,134 @@
+package com.example.account.config;
+
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountUserInfo;
+import com.example.account.repository.AccountUserRepository;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * AccountUserRepository 캐시 annotation 동작 확인 (JPA 없이 mock repository 에 캐시 프록시)
+ */
+@SpringJUnitConfig(AccountUserCacheTest.Config.class)
+class AccountUserCacheTest {
+    private static final AccountUserRepository REPOSITORY = mock(AccountUserRepository.class);
+
+    @Configuration
+    @Import(CacheConfig.class)
+    static class Config {
+        @Bean
+        AccountUserRepository accountUserRepository() {
+            return REPOSITORY;
+        }
+    }
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        reset(REPOSITORY);
+        cacheManager.getCache(CacheConfig.ACCOUNT_USER).clear();
+    }
+
+    @Test
+    void findInfoById_cached() {
+        //given
+        given(REPOSITORY.findInfoById(1L)).willReturn(Optional.of(info(1L)));
+
+        //when
+        accountUserRepository.findInfoById(1L);
+        Optional<AccountUserInfo> cached = accountUserRepository.findInfoById(1L);
+
+        //then
+        assertEquals("Pobi", cached.get().getName());
+        verify(REPOSITORY, times(1)).findInfoById(1L);
+        CacheStats stats = nativeCache().stats();
+        assertEquals(1L, stats.hitCount());
+    }
+
+    @Test
+    void notFound_notCached() {
+        //given
+        given(REPOSITORY.findInfoById(2L)).willReturn(Optional.empty());
+
+        //when
+        accountUserRepository.findInfoById(2L);
+        Optional<AccountUserInfo> result = accountUserRepository.findInfoById(2L);
+
+        //then
+        assertFalse(result.isPresent());
+        verify(REPOSITORY, times(2)).findInfoById(2L);
+    }
+
+    @Test
+    void save_evict() {
+        //given
+        AccountUser user = user(3L);
+        given(REPOSITORY.findInfoById(3L)).willReturn(Optional.of(info(3L)));
+        given(REPOSITORY.save(user)).willReturn(user);
+        accountUserRepository.findInfoById(3L);
+
+        //when
+        accountUserRepository.save(user);
+        accountUserRepository.findInfoById(3L);
+
+        //then
+        verify(REPOSITORY, times(2)).findInfoById(3L);
+    }
+
+    @Test
+    void saveNewUser_noEvict() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        given(REPOSITORY.save(user)).willReturn(user);
+        given(REPOSITORY.findInfoById(4L)).willReturn(Optional.of(info(4L)));
+        accountUserRepository.findInfoById(4L);
+
+        //when
+        // id 가 없는 새 사용자, null key 로 evict 하지 않는다
+        accountUserRepository.save(user);
+        accountUserRepository.findInfoById(4L);
+
+        //then
+        verify(REPOSITORY, times(1)).save(user);
+        verify(REPOSITORY, times(1)).findInfoById(4L);
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cacheManager.getCache(CacheConfig.ACCOUNT_USER)).getNativeCache();
+    }
+
+    private static AccountUserInfo info(Long id) {
+        return new AccountUserInfo(id, "Pobi");
+    }
+
+    private static AccountUser user(Long id) {
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(id);
+        return user;
+    }
+}
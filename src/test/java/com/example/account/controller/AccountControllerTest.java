@@ -3,13 +3,17 @@ package com.example.account.controller;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountImportReport;
+import com.example.account.dto.BulkAccountLookup;
 import com.example.account.dto.CreateAccount;
 import com.example.account.dto.DeleteAccount;
 import com.example.account.exception.AccountException;
 import com.example.account.type.AccountStatus;
+import com.example.account.service.AccountImportService;
 import com.example.account.service.AccountService;
 
 import com.example.account.type.ErrorCode;
+import com.example.account.type.ImportFormat;
 import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -23,9 +27,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,6 +46,9 @@ class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private AccountImportService accountImportService;
+
 
     @Autowired
     private MockMvc mockMvc;
@@ -169,4 +180,73 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.errorMessage").value("존재하는 계좌가 없습니다"))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void successGetAccountsInBulk() throws Exception {
+        //given
+        given(accountService.getAccountsByAccountNumbers(anyList()))
+                .willReturn(Map.of("1000000001", AccountDto.builder()
+                        .accountNumber("1000000001")
+                        .balance(2000L)
+                        .build()));
+        given(accountService.getAccountsByUserIds(anyList()))
+                .willReturn(Map.of(1L, List.of(AccountDto.builder()
+                        .accountNumber("1000000001")
+                        .balance(2000L)
+                        .build())));
+
+        //when
+        //then
+        mockMvc.perform(post("/account/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BulkAccountLookup.Request(
+                                        List.of("9999999999", "1000000001"),
+                                        List.of(1L, 2L)))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts[0].accountNumber").value("9999999999"))
+                .andExpect(jsonPath("$.accounts[0].found").value(false))
+                .andExpect(jsonPath("$.accounts[1].found").value(true))
+                .andExpect(jsonPath("$.accounts[1].balance").value(2000))
+                .andExpect(jsonPath("$.users[0].userId").value(1))
+                .andExpect(jsonPath("$.users[0].accounts[0].accountNumber")
+                        .value("1000000001"))
+                .andExpect(jsonPath("$.users[1].found").value(false));
+    }
+
+    @Test
+    void getAccountsInBulk_emptyRequest() throws Exception {
+        //given
+        //when
+        //then
+        mockMvc.perform(post("/account/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(jsonPath("$.errorCode").value("INVALID_REQUEST"));
+    }
+
+    @Test
+    void successImportAccounts() throws Exception {
+        //given
+        given(accountImportService.importAccounts(any(), eq(ImportFormat.NDJSON)))
+                .willReturn(AccountImportReport.builder()
+                        .importId("importId")
+                        .processed(2)
+                        .created(2)
+                        .errors(List.of())
+                        .build());
+
+        //when
+        //then
+        mockMvc.perform(post("/account/import")
+                        .param("format", "NDJSON")
+                        .contentType("application/x-ndjson")
+                        .content("{\"userId\":1,\"initialBalance\":1000}\n"
+                                + "{\"userId\":2,\"initialBalance\":2000}\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importId").value("importId"))
+                .andExpect(jsonPath("$.created").value(2));
+    }
+}
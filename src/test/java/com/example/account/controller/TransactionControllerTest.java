@@ -1,9 +1,20 @@
 package com.example.account.controller;
 
+import com.example.account.dto.BatchItemResult;
+import com.example.account.dto.BatchUseBalance;
 import com.example.account.dto.CancelBalance;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionPageDto;
+import com.example.account.dto.TransferBalance;
+import com.example.account.dto.TransferDto;
 import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.service.BatchTransactionService;
+import com.example.account.service.FailedTransactionRecorder;
+import com.example.account.service.TransactionExportService;
 import com.example.account.service.TransactionService;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ExportFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,20 +22,31 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.example.account.type.TransactionResultType.*;
 import static com.example.account.type.TransactionType.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TransactionController.class)
@@ -33,6 +55,15 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private FailedTransactionRecorder failedTransactionRecorder;
+
+    @MockBean
+    private TransactionExportService transactionExportService;
+
+    @MockBean
+    private BatchTransactionService batchTransactionService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -44,21 +75,25 @@ class TransactionControllerTest {
         //given
         //dto 관심을 가지는 정보는 response 에 담길 정보들
         // 성공데이터를 줬을때
-        given(transactionService.useBalance(anyLong(),anyString(), anyLong()))
-                .willReturn(TransactionDto.builder()
+        given(transactionService.useBalanceAsync(anyLong(),anyString(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(TransactionDto.builder()
                         .accountNumber("1000000000")
                         .transactedAt(LocalDateTime.now())
                         .amount(12345L)
                         .transactionId("transactionId")
                         .transactionResultType(S)
-                        .build());
+                        .build()));
         //when
-        mockMvc.perform(post("/transaction/use")
+        MvcResult result = mockMvc.perform(post("/transaction/use")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(
                         new UseBalance.Request(1L,"2000000000",3000L)
                 ))
-        ).andDo(print())
+        ).andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.accountNumber").value("1000000000"))
                 .andExpect(jsonPath("$.transactionResult").value("S"))
@@ -71,24 +106,28 @@ class TransactionControllerTest {
     @Test
     void successCancelBalance() throws Exception {
         //given
-        given(transactionService.cancelBalance(anyString(),anyString(),anyLong())
-        ).willReturn(TransactionDto.builder()
+        given(transactionService.cancelBalanceAsync(anyString(),anyString(),anyLong())
+        ).willReturn(CompletableFuture.completedFuture(TransactionDto.builder()
                         .accountNumber("1000000000")
                         .transactedAt(LocalDateTime.now())
                         .amount(12345L)
                         .transactionId("transactionIdForCancel")
                         .transactionResultType(S)
 
-                .build());
+                .build()));
 
 
-        mockMvc.perform(post("/transaction/cancel")
+        MvcResult result = mockMvc.perform(post("/transaction/cancel")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(
                         new CancelBalance.Request("transactionId"
                                 ,"2000000000",3000L)
                         ))
-        ).andDo(print())
+        ).andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.accountNumber").value("1000000000"))
                 .andExpect(jsonPath("$.transactionResult").value("S"))
@@ -99,6 +138,28 @@ class TransactionControllerTest {
         //then
     }
 
+    @Test
+    void failUseBalance_saveFailedTransaction() throws Exception {
+        //given
+        given(transactionService.useBalanceAsync(anyLong(),anyString(), anyLong()))
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE)));
+        //when
+        MvcResult result = mockMvc.perform(post("/transaction/use")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new UseBalance.Request(1L,"2000000000",3000L)
+                ))
+        ).andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(jsonPath("$.errorCode").value("AMOUNT_EXCEED_BALANCE"));
+        verify(failedTransactionRecorder).record(USE, "2000000000", 3000L);
+    }
+
     @Test
     void successQueryTransaction() throws  Exception{
         //given
@@ -129,5 +190,166 @@ class TransactionControllerTest {
 
     }
 
+    @Test
+    void successGetTransactionHistory() throws Exception {
+        //given
+        given(transactionService.getTransactionHistory(
+                eq("1000000000"), eq(USE), eq(S), eq("cursor"), eq(2)))
+                .willReturn(new TransactionPageDto(List.of(
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactionType(USE)
+                                .transactionResultType(S)
+                                .transactionId("transactionId2")
+                                .amount(1000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build(),
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactionType(USE)
+                                .transactionResultType(S)
+                                .transactionId("transactionId1")
+                                .amount(2000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build()),
+                        "nextCursor"));
+
+        //when
+        //then
+        mockMvc.perform(get("/account/1000000000/transactions")
+                        .param("type", "USE")
+                        .param("result", "S")
+                        .param("cursor", "cursor")
+                        .param("size", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions[0].transactionId").value("transactionId2"))
+                .andExpect(jsonPath("$.transactions[1].amount").value(2000L))
+                .andExpect(jsonPath("$.nextCursor").value("nextCursor"));
+    }
+
+    @Test
+    void successExportTransactions() throws Exception {
+        //given
+        given(transactionExportService.resolveAccountId("1000000000"))
+                .willReturn(1L);
+
+        //when
+        //then
+        mockMvc.perform(get("/transaction/export")
+                        .param("account_number", "1000000000")
+                        .param("from", "2022-01-01T00:00:00")
+                        .param("to", "2022-02-01T00:00:00")
+                        .param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition",
+                        "attachment; filename=\"transactions.csv\""));
+        verify(transactionExportService).export(eq(1L),
+                eq(LocalDateTime.of(2022, 1, 1, 0, 0)),
+                eq(LocalDateTime.of(2022, 2, 1, 0, 0)),
+                eq(ExportFormat.CSV), any());
+    }
+
+    @Test
+    void exportTransactions_invalidRange() throws Exception {
+        //given
+        //when
+        //then
+        mockMvc.perform(get("/transaction/export")
+                        .param("from", "2022-02-01T00:00:00")
+                        .param("to", "2022-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_REQUEST"));
+        verify(transactionExportService, never()).export(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void successUseBalances() throws Exception {
+        //given
+        given(batchTransactionService.useBalances(anyList()))
+                .willReturn(List.of(
+                        BatchItemResult.success(TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactionResultType(S)
+                                .transactionId("transactionId")
+                                .amount(1000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build()),
+                        BatchItemResult.failure(
+                                new UseBalance.Request(1L, "1000000001", 2000L),
+                                ErrorCode.AMOUNT_EXCEED_BALANCE)));
+
+        //when
+        //then
+        mockMvc.perform(post("/transaction/use/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BatchUseBalance.Request(List.of(
+                                        new UseBalance.Request(1L, "1000000000", 1000L),
+                                        new UseBalance.Request(1L, "1000000001", 2000L))))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.successCount").value(1))
+                .andExpect(jsonPath("$.failureCount").value(1))
+                .andExpect(jsonPath("$.results[0].transactionResult").value("S"))
+                .andExpect(jsonPath("$.results[0].transactionId").value("transactionId"))
+                .andExpect(jsonPath("$.results[1].transactionResult").value("F"))
+                .andExpect(jsonPath("$.results[1].errorCode").value("AMOUNT_EXCEED_BALANCE"));
+    }
+
+    @Test
+    void successTransfer() throws Exception {
+        //given
+        given(transactionService.transfer(anyLong(), anyString(), anyString(), anyLong()))
+                .willReturn(new TransferDto(
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactionType(TRANSFER_OUT)
+                                .transactionResultType(S)
+                                .transactionId("withdrawalId")
+                                .amount(1000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build(),
+                        TransactionDto.builder()
+                                .accountNumber("1000000001")
+                                .transactionType(TRANSFER_IN)
+                                .transactionResultType(S)
+                                .transactionId("depositId")
+                                .amount(1000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build()));
+
+        //when
+        //then
+        mockMvc.perform(post("/transaction/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new TransferBalance.Request(1L, "1000000000",
+                                        "1000000001", 1000L))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fromAccountNumber").value("1000000000"))
+                .andExpect(jsonPath("$.toAccountNumber").value("1000000001"))
+                .andExpect(jsonPath("$.transactionResult").value("S"))
+                .andExpect(jsonPath("$.withdrawalTransactionId").value("withdrawalId"))
+                .andExpect(jsonPath("$.depositTransactionId").value("depositId"));
+    }
+
+    @Test
+    void failTransfer_saveFailedTransaction() throws Exception {
+        //given
+        given(transactionService.transfer(anyLong(), anyString(), anyString(), anyLong()))
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
 
-}
\ No newline at end of file
+        //when
+        //then
+        mockMvc.perform(post("/transaction/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new TransferBalance.Request(1L, "1000000000",
+                                        "1000000001", 1000L))))
+                .andExpect(jsonPath("$.errorCode").value("AMOUNT_EXCEED_BALANCE"));
+        verify(failedTransactionRecorder).record(TRANSFER_OUT, "1000000000", 1000L);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.account.generator;
+
+import com.example.account.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountNumberGeneratorTest {
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Test
+    void reserveBlockOnce() {
+        //given
+        given(accountRepository.nextAccountNumberBlock())
+                .willReturn(1_000_000_000L, 1_000_000_100L);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 100L);
+
+        //when
+        String first = generator.next();
+        for (int i = 0; i < 99; i++) {
+            generator.next();
+        }
+        String nextBlock = generator.next();
+
+        //then
+        assertEquals("1000000000", first);
+        assertEquals("1000000100", nextBlock);
+        verify(accountRepository, times(2)).nextAccountNumberBlock();
+    }
+
+    @Test
+    void beyondIntegerRange_keepTenDigits() {
+        //given
+        given(accountRepository.nextAccountNumberBlock())
+                .willReturn(4_294_967_295L);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 10L);
+
+        //when
+        String accountNumber = generator.next();
+
+        //then
+        assertEquals("4294967295", accountNumber);
+    }
+
+    @Test
+    void exhausted() {
+        //given
+        given(accountRepository.nextAccountNumberBlock())
+                .willReturn(AccountNumberGenerator.MAX_ACCOUNT_NUMBER + 1);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 10L);
+
+        //when
+        //then
+        assertThrows(IllegalStateException.class, generator::next);
+    }
+
+    @Test
+    void concurrentNext_noDuplicate() throws InterruptedException {
+        //given
+        given(accountRepository.nextAccountNumberBlock())
+                .willReturn(1_000_000_000L, 1_000_000_010L, 1_000_000_020L,
+                        1_000_000_030L, 1_000_000_040L);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 10L);
+        Set<String> accountNumbers = new HashSet<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                String accountNumber = generator.next();
+                synchronized (accountNumbers) {
+                    accountNumbers.add(accountNumber);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        //then
+        assertEquals(50, accountNumbers.size());
+        verify(accountRepository, times(5)).nextAccountNumberBlock();
+    }
+
+    @Test
+    void sequenceIncrementMismatch_refuseToStart() {
+        //given
+        given(accountRepository.accountNumberSequenceIncrement())
+                .willReturn(50L);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 100L);
+
+        //when
+        //then
+        assertThrows(IllegalStateException.class, () -> generator.run(null));
+    }
+
+    @Test
+    void sequenceIncrementMatch_start() {
+        //given
+        given(accountRepository.accountNumberSequenceIncrement())
+                .willReturn(100L);
+        AccountNumberGenerator generator =
+                new AccountNumberGenerator(accountRepository, 100L);
+
+        //when
+        //then
+        assertDoesNotThrow(() -> generator.run(null));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.account.generator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedTransactionIdGeneratorTest {
+
+    @Test
+    void increasingAndFixedLength() {
+        //given
+        TimeOrderedTransactionIdGenerator generator =
+                new TimeOrderedTransactionIdGenerator(1L);
+        List<String> ids = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(generator.next());
+        }
+
+        //then
+        for (int i = 1; i < ids.size(); i++) {
+            assertEquals(16, ids.get(i).length());
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0,
+                    ids.get(i - 1) + " >= " + ids.get(i));
+        }
+    }
+
+    @Test
+    void containsNodeId() {
+        //given
+        TimeOrderedTransactionIdGenerator generator =
+                new TimeOrderedTransactionIdGenerator(1023L);
+
+        //when
+        long id = Long.parseUnsignedLong(generator.next(), 16);
+
+        //then
+        assertEquals(1023L, (id >>> TimeOrderedTransactionIdGenerator.SEQUENCE_BITS)
+                & TimeOrderedTransactionIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void differentNodes_noCollision() {
+        //given
+        TimeOrderedTransactionIdGenerator node1 = new TimeOrderedTransactionIdGenerator(1L);
+        TimeOrderedTransactionIdGenerator node2 = new TimeOrderedTransactionIdGenerator(2L);
+
+        //when
+        //then
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(node1.next(), node2.next());
+        }
+    }
+
+    @Test
+    void concurrentNext_noDuplicate() throws InterruptedException {
+        //given
+        TimeOrderedTransactionIdGenerator generator =
+                new TimeOrderedTransactionIdGenerator(0L);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 20_000; j++) {
+                    ids.add(generator.next());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then
+        assertEquals(160_000, ids.size());
+    }
+
+    @Test
+    void invalidNodeId() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TimeOrderedTransactionIdGenerator(1024L));
+    }
+}
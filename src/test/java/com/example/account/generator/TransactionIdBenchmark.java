@@ -0,0 +1,90 @@
+package com.example.account.generator;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * TIME_ORDERED vs UUID 거래 id
+ * 1. 생성 비용 (ns/id)
+ * 2. unique 인덱스가 있는 H2 테이블에 insert 하는 비용
+ *
+ * ./gradlew benchmark --tests '*TransactionIdBenchmark'
+ */
+@Tag("benchmark")
+class TransactionIdBenchmark {
+    private static final int WARMUP = 200_000;
+    private static final int GENERATE_COUNT = 2_000_000;
+    private static final int INSERT_COUNT = 200_000;
+    private static final int INSERT_BATCH = 1_000;
+
+    @Test
+    void generate() {
+        for (TransactionIdGenerator generator : generators()) {
+            consume(generator, WARMUP);
+
+            long start = System.nanoTime();
+            int sink = consume(generator, GENERATE_COUNT);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("[%s] generate %d ids, %.1f ns/id (%d)%n",
+                    generator.getClass().getSimpleName(), GENERATE_COUNT,
+                    (double) elapsed / GENERATE_COUNT, sink);
+        }
+    }
+
+    @Test
+    void insertIntoUniqueIndex() throws SQLException {
+        for (TransactionIdGenerator generator : generators()) {
+            String url = "jdbc:h2:mem:" + generator.getClass().getSimpleName();
+            try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tx (id bigint auto_increment primary key,"
+                            + " transaction_id varchar(64) not null)");
+                    statement.execute("create unique index ux_tx_transaction_id"
+                            + " on tx (transaction_id)");
+                }
+                connection.setAutoCommit(false);
+
+                long start = System.nanoTime();
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "insert into tx (transaction_id) values (?)")) {
+                    for (int i = 1; i <= INSERT_COUNT; i++) {
+                        insert.setString(1, generator.next());
+                        insert.addBatch();
+                        if (i % INSERT_BATCH == 0) {
+                            insert.executeBatch();
+                            connection.commit();
+                        }
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+                System.out.printf("[%s] insert %d rows, %.2fs, %.0f rows/s%n",
+                        generator.getClass().getSimpleName(), INSERT_COUNT,
+                        seconds, INSERT_COUNT / seconds);
+            }
+        }
+    }
+
+    private static TransactionIdGenerator[] generators() {
+        return new TransactionIdGenerator[]{
+                new TimeOrderedTransactionIdGenerator(1L),
+                new UuidTransactionIdGenerator()
+        };
+    }
+
+    // 결과를 써야 JIT 이 생성 코드를 지우지 않는다
+    private static int consume(TransactionIdGenerator generator, int count) {
+        int sink = 0;
+        for (int i = 0; i < count; i++) {
+            sink += generator.next().charAt(15);
+        }
+        return sink;
+    }
+}
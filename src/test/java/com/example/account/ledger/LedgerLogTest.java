@@ -0,0 +1,190 @@
+package com.example.account.ledger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerLogTest {
+    @TempDir
+    Path directory;
+
+    private final List<LedgerLog> opened = new ArrayList<>();
+
+    // 마지막으로 연 원장이 돌려준 (checkpoint 이후) 레코드
+    private List<LedgerRecord> recovered;
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(LedgerLog::close);
+    }
+
+    @Test
+    void appendAndRecoverAfterRestart() throws Exception {
+        //given
+        List<LedgerRecord> written = new ArrayList<>();
+        LedgerLog ledgerLog = open(1 << 20, 100, written);
+        LocalDateTime transactedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        //when
+        LedgerRecord first = ledgerLog.append(record("t1", 300L, transactedAt)).join();
+        ledgerLog.append(record("t2", 200L, transactedAt)).join();
+        ledgerLog.close();
+        LedgerLog reopened = open(1 << 20, 100, new ArrayList<>());
+
+        //then
+        assertEquals(1L, first.getSequence());
+        assertEquals(2, written.size());
+        assertEquals(2, recovered.size());
+        assertEquals("t1", recovered.get(0).getTransactionId());
+        assertEquals(USE, recovered.get(0).getTransactionType());
+        assertEquals(12L, recovered.get(0).getUserId());
+        assertEquals("1000000012", recovered.get(0).getAccountNumber());
+        assertEquals(300L, recovered.get(0).getAmount());
+        assertEquals(700L, recovered.get(0).getBalanceSnapshot());
+        assertEquals(transactedAt, recovered.get(0).getTransactedAt());
+        assertEquals(3L, reopened.append(record("t3", 100L, transactedAt)).join().getSequence());
+    }
+
+    @Test
+    void tornTail_discardedOnRecovery() throws Exception {
+        //given
+        LedgerLog ledgerLog = open(1 << 20, 100, new ArrayList<>());
+        ledgerLog.append(record("t1", 300L, LocalDateTime.now())).join();
+        ledgerLog.append(record("t2", 200L, LocalDateTime.now())).join();
+        ledgerLog.close();
+        // 두 번째 레코드의 본문 마지막 바이트를 깨뜨린다
+        Path segment = segments().get(0);
+        int secondEnd = 2 * record("t1", 300L, LocalDateTime.now()).encode().length;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x7f}), secondEnd - 1);
+        }
+
+        //when
+        LedgerLog reopened = open(1 << 20, 100, new ArrayList<>());
+
+        //then
+        assertEquals(1, recovered.size());
+        assertEquals("t1", recovered.get(0).getTransactionId());
+        assertEquals(2L, reopened.append(record("t3", 100L, LocalDateTime.now()))
+                .join().getSequence());
+    }
+
+    @Test
+    void corruptionBeforeAcknowledgedRecord_failToOpen() throws Exception {
+        //given
+        LedgerLog ledgerLog = open(1 << 20, 100, new ArrayList<>());
+        ledgerLog.append(record("t1", 300L, LocalDateTime.now())).join();
+        ledgerLog.append(record("t2", 200L, LocalDateTime.now())).join();
+        ledgerLog.append(record("t3", 100L, LocalDateTime.now())).join();
+        ledgerLog.close();
+        // t3 는 이미 응답한 레코드, 그 앞의 t2 를 깨뜨린다
+        Path segment = segments().get(0);
+        int secondEnd = 2 * record("t1", 300L, LocalDateTime.now()).encode().length;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x7f}), secondEnd - 1);
+        }
+
+        //when
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> open(1 << 20, 100, new ArrayList<>()));
+
+        //then
+        assertTrue(exception.getMessage().startsWith("Corrupted ledger segment"));
+        // t3 를 지우지 않는다
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer thirdLength = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(thirdLength, secondEnd);
+            assertNotEquals(0, thirdLength.getInt(0));
+        }
+    }
+
+    @Test
+    void rotateSegments_deleteProjectedOnCheckpoint() throws Exception {
+        //given
+        // 레코드가 65 byte 라서 segment 하나에 3개
+        LedgerLog ledgerLog = open(LedgerLog.MAX_RECORD_SIZE, 1, new ArrayList<>());
+        for (int i = 1; i <= 10; i++) {
+            ledgerLog.append(record("t" + (i % 10), 100L, LocalDateTime.now())).join();
+        }
+        assertEquals(4, segments().size());
+
+        //when
+        ledgerLog.checkpoint(10L);
+        ledgerLog.close();
+        LedgerLog reopened = open(LedgerLog.MAX_RECORD_SIZE, 1, new ArrayList<>());
+
+        //then
+        assertEquals(1, segments().size());
+        assertEquals(10L, reopened.getCheckpoint());
+        assertTrue(recovered.isEmpty());
+        assertEquals(11L, reopened.append(record("t1", 100L, LocalDateTime.now()))
+                .join().getSequence());
+    }
+
+    @Test
+    void partialCheckpoint_keepUnprojectedSegments() throws Exception {
+        //given
+        LedgerLog ledgerLog = open(LedgerLog.MAX_RECORD_SIZE, 1, new ArrayList<>());
+        for (int i = 1; i <= 7; i++) {
+            ledgerLog.append(record("t" + i, 100L, LocalDateTime.now())).join();
+        }
+
+        //when
+        ledgerLog.checkpoint(5L);
+        ledgerLog.close();
+        open(LedgerLog.MAX_RECORD_SIZE, 1, new ArrayList<>());
+
+        //then
+        // 1~3 segment 만 지워지고 4~6, 7 은 남는다
+        assertEquals(2, segments().size());
+        assertEquals(List.of(6L, 7L), recovered.stream()
+                .map(LedgerRecord::getSequence)
+                .collect(Collectors.toList()));
+    }
+
+    private LedgerLog open(int segmentSize, int maxBatch, List<LedgerRecord> written)
+            throws Exception {
+        LedgerLog ledgerLog = new LedgerLog(directory, segmentSize, maxBatch,
+                new SimpleMeterRegistry());
+        opened.add(ledgerLog);
+        recovered = ledgerLog.open(written::addAll);
+        return ledgerLog;
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static LedgerRecord record(String transactionId, Long amount,
+                                       LocalDateTime transactedAt) {
+        return LedgerRecord.builder()
+                .transactionType(USE)
+                .userId(12L)
+                .accountNumber("1000000012")
+                .amount(amount)
+                .balanceSnapshot(1000L - amount)
+                .transactionId(transactionId)
+                .transactedAt(transactedAt.truncatedTo(ChronoUnit.MILLIS))
+                .build();
+    }
+}
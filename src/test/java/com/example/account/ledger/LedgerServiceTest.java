@@ -0,0 +1,288 @@
+package com.example.account.ledger;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.TransactionDto;
+import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.service.TransactionCache;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+    @TempDir
+    Path directory;
+
+    @Mock
+    private LedgerOwnerLock ledgerOwnerLock;
+
+    @Mock
+    private LedgerProjector ledgerProjector;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Mock
+    private TransactionCache transactionCache;
+
+    private final List<LedgerLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(LedgerLog::close);
+    }
+
+    @Test
+    void useBalance_validateAgainstMemoryBalance() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1", "t2");
+        LedgerService ledgerService = start();
+
+        //when
+        TransactionDto first = ledgerService.useBalance(12L, "1000000012", 300L).join();
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> ledgerService.useBalance(12L, "1000000012", 800L).join());
+
+        //then
+        assertEquals(700L, first.getBalanceSnapshot());
+        assertEquals(USE, first.getTransactionType());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE,
+                ((AccountException) exception.getCause()).getErrorCode());
+        // 반영 전이라 DB 는 처음 한 번만 읽는다
+        verify(accountRepository, times(1)).findByAccountNumber("1000000012");
+        verify(transactionCache).putAfterCommit(any(TransactionDto.class));
+        verify(ledgerProjector).enqueue(any(LedgerRecord.class));
+    }
+
+    @Test
+    void userUnMatch_fail() throws Exception {
+        //given
+        givenAccount(1000L);
+        LedgerService ledgerService = start();
+
+        //when
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> ledgerService.useBalance(13L, "1000000012", 300L).join());
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(ledgerProjector, never()).enqueue(any());
+    }
+
+    @Test
+    void projected_reloadBalanceFromDatabase() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1", "t2");
+        LedgerService ledgerService = start();
+        ArgumentCaptor<LedgerRecord> captor = ArgumentCaptor.forClass(LedgerRecord.class);
+        ledgerService.useBalance(12L, "1000000012", 300L).join();
+        verify(ledgerProjector).enqueue(captor.capture());
+
+        //when
+        ledgerService.onProjected(List.of(captor.getValue()));
+        ledgerService.useBalance(12L, "1000000012", 100L).join();
+
+        //then
+        verify(accountRepository, times(2)).findByAccountNumber("1000000012");
+    }
+
+    @Test
+    void cancelUnprojectedTransaction_withoutDatabase() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1", "t2");
+        LedgerService ledgerService = start();
+        ledgerService.useBalance(12L, "1000000012", 300L).join();
+
+        //when
+        TransactionDto cancel = ledgerService.cancelBalance("t1", "1000000012", 300L).join();
+
+        //then
+        assertEquals(CANCEL, cancel.getTransactionType());
+        assertEquals(1000L, cancel.getBalanceSnapshot());
+        verify(transactionRepository, never()).findByTransactionId(anyString());
+    }
+
+    @Test
+    void cancelPartially_fail() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1");
+        LedgerService ledgerService = start();
+        ledgerService.useBalance(12L, "1000000012", 300L).join();
+
+        //when
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> ledgerService.cancelBalance("t1", "1000000012", 100L).join());
+
+        //then
+        assertEquals(ErrorCode.CANCEL_MUST_FULLY,
+                ((AccountException) exception.getCause()).getErrorCode());
+    }
+
+    @Test
+    void restart_replayOnlyRecordsMissingInDatabase() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1", "t2", "t3");
+        LedgerService before = start();
+        before.useBalance(12L, "1000000012", 300L).join();
+        before.useBalance(12L, "1000000012", 200L).join();
+        opened.forEach(LedgerLog::close);
+        // t1 은 DB 에 반영됨 (잔액 700), t2 는 반영 전에 종료
+        givenAccount(700L);
+        given(transactionRepository.findExistingTransactionIds(anyCollection()))
+                .willReturn(List.of("t1"));
+        ArgumentCaptor<LedgerRecord> captor = ArgumentCaptor.forClass(LedgerRecord.class);
+
+        //when
+        LedgerService after = start();
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> after.useBalance(12L, "1000000012", 600L).join());
+
+        //then
+        // 재시작 전 2건 + 재시작 후 t2 다시 반영
+        verify(ledgerProjector, times(3)).enqueue(captor.capture());
+        assertEquals("t2", captor.getAllValues().get(2).getTransactionId());
+        // 메모리 잔액 = DB 700 - 반영 전 200
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE,
+                ((AccountException) exception.getCause()).getErrorCode());
+        assertEquals(0L, after.useBalance(12L, "1000000012", 500L).join()
+                .getBalanceSnapshot());
+    }
+
+    @Test
+    void pendingBalances_memoryBalanceUntilProjected() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1");
+        LedgerService ledgerService = start();
+        ledgerService.useBalance(12L, "1000000012", 300L).join();
+        ArgumentCaptor<LedgerRecord> captor = ArgumentCaptor.forClass(LedgerRecord.class);
+        verify(ledgerProjector).enqueue(captor.capture());
+
+        //when
+        Map<String, Long> pending = ledgerService.pendingBalances(List.of("1000000012"));
+        Map<String, Long> pendingOfUser = ledgerService.pendingBalancesOfUsers(List.of(12L));
+        ledgerService.onProjected(List.of(captor.getValue()));
+
+        //then
+        assertEquals(700L, pending.get("1000000012"));
+        assertEquals(700L, pendingOfUser.get("1000000012"));
+        assertTrue(ledgerService.pendingBalances(List.of("1000000012")).isEmpty());
+    }
+
+    @Test
+    void unwrittenRecord_reservedButNotPublished() throws Exception {
+        //given
+        givenAccount(1000L);
+        given(transactionIdGenerator.next()).willReturn("t1");
+        LedgerLog ledgerLog = mock(LedgerLog.class);
+        CompletableFuture<LedgerRecord> fsync = new CompletableFuture<>();
+        given(ledgerLog.append(any())).willReturn(fsync);
+        LedgerService ledgerService = start(ledgerLog);
+        ArgumentCaptor<LedgerRecord> captor = ArgumentCaptor.forClass(LedgerRecord.class);
+
+        //when
+        CompletableFuture<TransactionDto> use = ledgerService.useBalance(12L, "1000000012", 300L);
+        verify(ledgerLog).append(captor.capture());
+        Map<String, Long> beforeFsync = ledgerService.pendingBalances(List.of("1000000012"));
+        CompletionException exceeded = assertThrows(CompletionException.class,
+                () -> ledgerService.useBalance(12L, "1000000012", 800L).join());
+        LedgerRecord written = captor.getValue().withSequence(1L);
+        ledgerService.onWritten(List.of(written));
+        fsync.complete(written);
+
+        //then
+        // fsync 전에는 조회에 보이지 않지만 검증에는 잡혀 있다
+        assertEquals(1000L, beforeFsync.get("1000000012"));
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE,
+                ((AccountException) exceeded.getCause()).getErrorCode());
+        assertEquals(700L, use.join().getBalanceSnapshot());
+        assertEquals(700L, ledgerService.pendingBalances(List.of("1000000012"))
+                .get("1000000012"));
+    }
+
+    @Test
+    void ownerLockLost_rejectAppend() throws Exception {
+        //given
+        LedgerService ledgerService = start();
+        willThrow(new IllegalStateException("Ledger owner lock is not held"))
+                .given(ledgerOwnerLock).checkHeld();
+
+        //when
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> ledgerService.useBalance(12L, "1000000012", 300L).join());
+
+        //then
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        verify(accountRepository, never()).findByAccountNumber(anyString());
+    }
+
+    private LedgerService start() throws Exception {
+        LedgerLog ledgerLog = new LedgerLog(directory, 1 << 20, 100, new SimpleMeterRegistry());
+        opened.add(ledgerLog);
+        return start(ledgerLog);
+    }
+
+    private LedgerService start(LedgerLog ledgerLog) throws Exception {
+        LedgerService ledgerService = new LedgerService(ledgerLog, ledgerOwnerLock, ledgerProjector,
+                accountRepository, transactionRepository, transactionIdGenerator,
+                transactionCache, new SimpleMeterRegistry());
+        ledgerService.start();
+        return ledgerService;
+    }
+
+    private void givenAccount(Long balance) {
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(12L);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .accountNumber("1000000012")
+                        .accountStatus(IN_USE)
+                        .balance(balance)
+                        .build()));
+    }
+}
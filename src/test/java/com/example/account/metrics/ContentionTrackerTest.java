@@ -0,0 +1,54 @@
+package com.example.account.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ContentionTrackerTest {
+
+    @Test
+    void topAccountsByContention() {
+        //given
+        ContentionTracker tracker = new ContentionTracker(10);
+        for (int i = 0; i < 5; i++) {
+            tracker.record("1000000001");
+        }
+        for (int i = 0; i < 3; i++) {
+            tracker.record("1000000002");
+        }
+        tracker.record("1000000003");
+
+        //when
+        List<ContentionTracker.HotAccount> top = tracker.top(2);
+
+        //then
+        assertEquals(2, top.size());
+        assertEquals("1000000001", top.get(0).getAccountNumber());
+        assertEquals(5, top.get(0).getContentionCount());
+        assertEquals("1000000002", top.get(1).getAccountNumber());
+        assertEquals(3, top.get(1).getContentionCount());
+    }
+
+    @Test
+    void boundedCapacityKeepsHotAccount() {
+        //given
+        ContentionTracker tracker = new ContentionTracker(3);
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("1000000001");
+        }
+
+        //when
+        // 한번씩만 나오는 계좌가 많아도 자리는 3개만 쓴다
+        for (int i = 0; i < 1000; i++) {
+            tracker.record(String.valueOf(2000000000L + i));
+        }
+        List<ContentionTracker.HotAccount> top = tracker.top(10);
+
+        //then
+        assertEquals(3, top.size());
+        assertEquals("1000000001", top.get(0).getAccountNumber());
+        assertEquals(1000, top.get(0).getContentionCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.type.AccountStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 계좌 목록 projection 조회가 select 한번, 엔티티 로딩 없이 끝나는지 확인
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AccountProjectionTest {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // data.sql 의 사용자
+        AccountUser user = testEntityManager.find(AccountUser.class, 1L);
+        for (int i = 0; i < 3; i++) {
+            testEntityManager.persist(Account.builder()
+                    .accountUser(user)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .accountNumber(String.valueOf(1_000_000_000L + i))
+                    .balance(1000L * (i + 1))
+                    .registerAt(LocalDateTime.now())
+                    .build());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findBalances_oneStatementNoEntity() {
+        //when
+        List<AccountBalanceView> balances = accountRepository.findBalancesByAccountUserId(1L);
+
+        //then
+        assertEquals(3, balances.size());
+        assertEquals("1000000000", balances.get(0).getAccountNumber());
+        assertEquals(3000L, balances.get(2).getBalance());
+        assertEquals(1L, statistics.getPrepareStatementCount());
+        assertEquals(0L, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findByAccountUser_loadsEntities() {
+        //when
+        List<Account> accounts = accountRepository.findByAccountUser(
+                testEntityManager.find(AccountUser.class, 1L));
+
+        //then
+        // 비교용 : 사용자 + 계좌 3개를 엔티티로 만든다
+        assertEquals(3, accounts.size());
+        assertEquals(4L, statistics.getEntityLoadCount());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.account.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 매 거래 요청마다 실행되는 조회가 인덱스를 타는지 H2 EXPLAIN 으로 확인
+ */
+@DataJpaTest
+class QueryPlanTest {
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void findByAccountNumber_useUniqueIndex() {
+        String plan = explain(
+                "select * from account where account_number = '1000000000'");
+
+        assertUsesIndex(plan, "ux_account_account_number");
+    }
+
+    @Test
+    void findByAccountUser_useIndex() {
+        String plan = explain(
+                "select * from account where account_user_id = 1");
+
+        assertUsesIndex(plan, "ix_account_account_user_id");
+    }
+
+    @Test
+    void findByTransactionId_useUniqueIndex() {
+        String plan = explain(
+                "select * from transaction where transaction_id = 'transactionId'");
+
+        assertUsesIndex(plan, "ux_transaction_transaction_id");
+    }
+
+    @Test
+    void transactionsOfAccount_useCompositeIndex() {
+        String plan = explain("select * from transaction where account_id = 1"
+                + " and (transacted_at < timestamp '2022-06-01 00:00:00'"
+                + " or (transacted_at = timestamp '2022-06-01 00:00:00' and id < 100))"
+                + " order by transacted_at desc, id desc limit 21");
+
+        assertUsesIndex(plan, "ix_transaction_account_id_transacted_at_id");
+    }
+
+    private String explain(String sql) {
+        return String.valueOf(entityManager
+                .createNativeQuery("explain " + sql)
+                .getSingleResult());
+    }
+
+    // H2 는 unique 제약의 인덱스 이름 뒤에 _INDEX_xx 를 붙인다
+    private static void assertUsesIndex(String plan, String indexName) {
+        assertTrue(plan.toUpperCase().contains(indexName.toUpperCase()), plan);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionCursor;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * keyset 페이지를 끝까지 넘겼을 때 빠지거나 겹치는 거래가 없는지 확인
+ * (같은 transactedAt 이 여러건인 경우 포함)
+ */
+@DataJpaTest
+class TransactionHistoryQueryTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2022, 6, 1, 10, 0);
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        account = testEntityManager.persist(Account.builder()
+                .accountUser(testEntityManager.find(AccountUser.class, 1L))
+                .accountStatus(AccountStatus.IN_USE)
+                .accountNumber("1000000000")
+                .balance(0L)
+                .registerAt(BASE)
+                .build());
+        for (int i = 0; i < 25; i++) {
+            testEntityManager.persist(Transaction.builder()
+                    .account(account)
+                    .transactionType(i % 5 == 0 ? CANCEL : USE)
+                    .transactionResultType(i % 3 == 0 ? F : S)
+                    .transactionId("transactionId" + i)
+                    .amount(100L)
+                    .balanceSnapshot(0L)
+                    // 3건씩 같은 시각
+                    .transactedAt(BASE.plusSeconds(i / 3))
+                    .build());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    void walkAllPages() {
+        List<Transaction> all = walk(null);
+
+        assertEquals(25, all.size());
+        assertEquals(25, all.stream().map(Transaction::getTransactionId).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            Transaction prev = all.get(i - 1);
+            Transaction next = all.get(i);
+            assertTrue(prev.getTransactedAt().isAfter(next.getTransactedAt())
+                    || (prev.getTransactedAt().isEqual(next.getTransactedAt())
+                    && prev.getId() > next.getId()));
+        }
+    }
+
+    @Test
+    void walkWithTypeFilter() {
+        List<Transaction> cancels = walk(CANCEL);
+
+        assertEquals(5, cancels.size());
+        assertTrue(cancels.stream().allMatch(t -> t.getTransactionType() == CANCEL));
+    }
+
+    private List<Transaction> walk(TransactionType type) {
+        List<Transaction> result = new ArrayList<>();
+        TransactionCursor cursor = TransactionCursor.FIRST;
+        while (true) {
+            List<Transaction> page = transactionRepository.findHistory(account, type, null,
+                    cursor.getTransactedAt(), cursor.getId(), PageRequest.of(0, 4));
+            if (page.isEmpty()) {
+                return result;
+            }
+            result.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+    }
+}
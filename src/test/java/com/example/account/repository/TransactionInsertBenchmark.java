@@ -0,0 +1,103 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.Transaction;
+import com.example.account.type.AccountStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+
+/**
+ * Transaction insert 처리량 (H2)
+ * - 행마다 save + commit (기존 거래 한건 처리 방식)
+ * - 한 트랜잭션에서 saveAll (jdbc batch + pooled id)
+ *
+ * ./gradlew benchmark --tests '*TransactionInsertBenchmark'
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.show_sql=false")
+class TransactionInsertBenchmark {
+    private static final int ROWS = 20_000;
+    private static final int CHUNK = 500;
+    private static final AtomicLong TRANSACTION_ID = new AtomicLong();
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void saveEachVsSaveAll() {
+        Account account = accountRepository.save(Account.builder()
+                .accountUser(accountUserRepository.findById(1L).get())
+                .accountStatus(AccountStatus.IN_USE)
+                .accountNumber("4000000000")
+                .balance(0L)
+                .registerAt(LocalDateTime.now())
+                .build());
+
+        // warm up
+        saveEach(account, 1_000);
+        saveAll(account, 1_000);
+
+        long start = System.nanoTime();
+        saveEach(account, ROWS);
+        print("save each", start);
+
+        start = System.nanoTime();
+        saveAll(account, ROWS);
+        print("saveAll (chunk " + CHUNK + ")", start);
+    }
+
+    private void saveEach(Account account, int rows) {
+        for (int i = 0; i < rows; i++) {
+            transactionRepository.save(transaction(account));
+        }
+    }
+
+    private void saveAll(Account account, int rows) {
+        for (int saved = 0; saved < rows; saved += CHUNK) {
+            List<Transaction> chunk = new ArrayList<>(CHUNK);
+            for (int i = 0; i < CHUNK; i++) {
+                chunk.add(transaction(account));
+            }
+            transactionTemplate.executeWithoutResult(
+                    status -> transactionRepository.saveAll(chunk));
+        }
+    }
+
+    private static Transaction transaction(Account account) {
+        return Transaction.builder()
+                .transactionType(USE)
+                .transactionResultType(S)
+                .account(account)
+                .amount(100L)
+                .balanceSnapshot(0L)
+                .transactionId("bench" + TRANSACTION_ID.incrementAndGet())
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static void print(String mode, long start) {
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("[%s] rows=%d, elapsed=%.2fs, throughput=%.0f inserts/s%n",
+                mode, ROWS, seconds, ROWS / seconds);
+    }
+}
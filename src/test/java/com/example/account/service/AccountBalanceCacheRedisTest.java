@@ -0,0 +1,162 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 노드 두 개 (Redisson 클라이언트 두 개) 가 같은 Redis 를 쓸 때의 무효화
+ */
+class AccountBalanceCacheRedisTest {
+    private static RedisServer redisServer;
+    private static RedissonClient firstClient;
+    private static RedissonClient secondClient;
+
+    private static final AtomicLong userIds = new AtomicLong();
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        firstClient = client(port);
+        secondClient = client(port);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        firstClient.shutdown();
+        secondClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Test
+    void evictOnOneNode_otherNodeReloadsRightAway() {
+        //given
+        AccountBalanceCache first = cache(firstClient);
+        AccountBalanceCache second = cache(secondClient);
+        Long userId = userIds.incrementAndGet();
+        AtomicLong database = new AtomicLong(1000L);
+        AtomicInteger loads = new AtomicInteger();
+        first.get(userId, () -> load(loads, database));
+        // 두 번째 노드는 Redis 에서 읽어서 local 에 둔다 (Redis 쓰기는 비동기라 다시 읽을 수도 있다)
+        assertEquals(1000L, second.get(userId, () -> load(loads, database)).get(0).getBalance());
+        assertEquals(1000L, second.get(userId, () -> load(loads, database)).get(0).getBalance());
+        int loadsBeforeEvict = loads.get();
+
+        //when
+        database.set(500L);
+        first.evictAfterCommit(userId);
+
+        //then
+        // 무효화한 노드는 바로, 다른 노드는 topic 메시지를 받으면
+        assertEquals(500L, first.get(userId, () -> load(loads, database)).get(0).getBalance());
+        assertEquals(500L, awaitBalance(second, userId, loads, database, 500L));
+        assertTrue(loads.get() > loadsBeforeEvict);
+    }
+
+    @Test
+    void loadStartedBeforeEvict_notServedAfterward() {
+        //given
+        AccountBalanceCache first = cache(firstClient);
+        AccountBalanceCache second = cache(secondClient);
+        Long userId = userIds.incrementAndGet();
+        AtomicLong database = new AtomicLong(1000L);
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        // 두 번째 노드가 커밋 전 값을 읽은 뒤, 캐시에 넣기 전에 첫 번째 노드에서 커밋 + 무효화
+        List<AccountDto> stale = second.get(userId, () -> {
+            List<AccountDto> loaded = load(loads, database);
+            database.set(700L);
+            first.evictAfterCommit(userId);
+            return loaded;
+        });
+
+        //then
+        assertEquals(1000L, stale.get(0).getBalance());
+        assertEquals(700L, awaitBalance(second, userId, loads, database, 700L));
+        assertEquals(700L, first.get(userId, () -> load(loads, database)).get(0).getBalance());
+    }
+
+    @Test
+    void localHit_servedWithoutRedis() {
+        //given
+        AccountBalanceCache first = cache(firstClient);
+        Long userId = userIds.incrementAndGet();
+        AtomicLong database = new AtomicLong(1000L);
+        AtomicInteger loads = new AtomicInteger();
+        first.get(userId, () -> load(loads, database));
+
+        //when
+        // Redis 의 값과 버전을 지워도 local 값은 그대로 쓴다
+        firstClient.getMapCache("ACCOUNTS_BY_USER").delete();
+        firstClient.getMapCache("ACCOUNTS_BY_USER:VERSION").delete();
+        List<AccountDto> result = first.get(userId, () -> load(loads, database));
+
+        //then
+        assertEquals(1000L, result.get(0).getBalance());
+        assertEquals(1, loads.get());
+    }
+
+    // topic 메시지는 비동기로 도착한다
+    private static long awaitBalance(AccountBalanceCache cache, Long userId, AtomicInteger loads,
+                                     AtomicLong database, long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        long balance;
+        do {
+            balance = cache.get(userId, () -> load(loads, database)).get(0).getBalance();
+            if (balance == expected) {
+                return balance;
+            }
+            Thread.onSpinWait();
+        } while (System.nanoTime() < deadline);
+        return balance;
+    }
+
+    private static AccountBalanceCache cache(RedissonClient redissonClient) {
+        return new AccountBalanceCache(redissonClient,
+                new ObjectMapper().findAndRegisterModules(), 100, 10L, 1000, 60L);
+    }
+
+    private static List<AccountDto> load(AtomicInteger loads, AtomicLong database) {
+        loads.incrementAndGet();
+        return List.of(account(database.get()));
+    }
+
+    private static AccountDto account(Long balance) {
+        return AccountDto.builder()
+                .userId(1L)
+                .accountNumber("1000000000")
+                .balance(balance)
+                .build();
+    }
+
+    private static RedissonClient client(int port) {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        return Redisson.create(config);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
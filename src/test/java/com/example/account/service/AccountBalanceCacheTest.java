@@ -0,0 +1,240 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.codec.Codec;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountBalanceCacheTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RMapCache<Long, AccountBalanceCache.Entry> accounts;
+
+    @Mock
+    private RMapCache<Long, Long> versions;
+
+    @Mock
+    private RAtomicLong versionSequence;
+
+    @Mock
+    private RTopic invalidations;
+
+    private AccountBalanceCache accountBalanceCache;
+
+    @BeforeEach
+    void setUp() {
+        given(redissonClient.<Long, AccountBalanceCache.Entry>getMapCache(
+                eq("ACCOUNTS_BY_USER"), any(Codec.class)))
+                .willReturn(accounts);
+        given(redissonClient.<Long, Long>getMapCache(
+                eq("ACCOUNTS_BY_USER:VERSION"), any(Codec.class)))
+                .willReturn(versions);
+        given(redissonClient.getAtomicLong(anyString())).willReturn(versionSequence);
+        given(redissonClient.getTopic(anyString(), any(Codec.class))).willReturn(invalidations);
+        accountBalanceCache = new AccountBalanceCache(
+                redissonClient, new ObjectMapper(), 100, 10L, 1000, 60L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void hit_doNotLoad() {
+        //given
+        given(versions.get(1L)).willReturn(3L);
+        given(accounts.get(1L)).willReturn(new AccountBalanceCache.Entry(
+                3L, List.of(account("1000000000"))));
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        List<AccountDto> result = accountBalanceCache.get(1L, () -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+
+        //then
+        assertEquals("1000000000", result.get(0).getAccountNumber());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void miss_loadAndPutWithCurrentVersion() {
+        //given
+        given(versions.get(1L)).willReturn(3L);
+        given(accounts.fastPutAsync(eq(1L), any(), anyLong(), any()))
+                .willReturn(mock(RFuture.class));
+
+        //when
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("1000000000")));
+
+        //then
+        assertEquals(1, result.size());
+        verify(accounts).fastPutAsync(eq(1L),
+                argThat(entry -> entry.getVersion() == 3L),
+                eq(60_000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void olderVersion_reload() {
+        //given
+        // 무효화 직전에 읽기 시작한 요청이 넣은 옛 값
+        given(versions.get(1L)).willReturn(4L);
+        given(accounts.get(1L)).willReturn(new AccountBalanceCache.Entry(
+                3L, List.of(account("old"))));
+        given(accounts.fastPutAsync(eq(1L), any(), anyLong(), any()))
+                .willReturn(mock(RFuture.class));
+
+        //when
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("new")));
+
+        //then
+        assertEquals("new", result.get(0).getAccountNumber());
+    }
+
+    @Test
+    void localHit_doNotReadRedis() {
+        //given
+        given(accounts.fastPutAsync(eq(1L), any(), anyLong(), any()))
+                .willReturn(mock(RFuture.class));
+        accountBalanceCache.get(1L, () -> List.of(account("old")));
+
+        //when
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("new")));
+
+        //then
+        assertEquals("old", result.get(0).getAccountNumber());
+        verify(versions, times(1)).get(1L);
+        verify(accounts, times(1)).get(1L);
+    }
+
+    @Test
+    void invalidationMessage_dropLocal() {
+        //given
+        ArgumentCaptor<MessageListener<AccountBalanceCache.Invalidation>> listener =
+                ArgumentCaptor.forClass(MessageListener.class);
+        verify(invalidations).addListener(eq(AccountBalanceCache.Invalidation.class),
+                listener.capture());
+        given(accounts.fastPutAsync(eq(1L), any(), anyLong(), any()))
+                .willReturn(mock(RFuture.class));
+        accountBalanceCache.get(1L, () -> List.of(account("old")));
+
+        //when
+        // 다른 노드에서 무효화
+        listener.getValue().onMessage("ACCOUNTS_BY_USER:INVALIDATION",
+                new AccountBalanceCache.Invalidation(1L, 5L));
+        given(versions.get(1L)).willReturn(5L);
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("new")));
+
+        //then
+        assertEquals("new", result.get(0).getAccountNumber());
+    }
+
+    @Test
+    void loadStartedBeforeInvalidation_notKeptLocally() {
+        //given
+        ArgumentCaptor<MessageListener<AccountBalanceCache.Invalidation>> listener =
+                ArgumentCaptor.forClass(MessageListener.class);
+        verify(invalidations).addListener(eq(AccountBalanceCache.Invalidation.class),
+                listener.capture());
+        given(versions.get(1L)).willReturn(4L);
+        given(accounts.fastPutAsync(eq(1L), any(), anyLong(), any()))
+                .willReturn(mock(RFuture.class));
+
+        //when
+        // 버전 4 로 읽는 도중에 다른 노드가 커밋하고 버전 5 로 무효화
+        accountBalanceCache.get(1L, () -> {
+            listener.getValue().onMessage("ACCOUNTS_BY_USER:INVALIDATION",
+                    new AccountBalanceCache.Invalidation(1L, 5L));
+            return List.of(account("old"));
+        });
+        given(versions.get(1L)).willReturn(5L);
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("new")));
+
+        //then
+        assertEquals("new", result.get(0).getAccountNumber());
+    }
+
+    @Test
+    void redisDown_loadFromDb() {
+        //given
+        given(versions.get(1L)).willThrow(new RedisConnectionException("down"));
+
+        //when
+        List<AccountDto> result = accountBalanceCache.get(1L,
+                () -> List.of(account("1000000000")));
+
+        //then
+        assertEquals(1, result.size());
+        verify(accounts, never()).fastPutAsync(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void evictAfterCommit_bumpVersionSynchronously() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        given(versionSequence.incrementAndGet()).willReturn(7L);
+
+        //when
+        accountBalanceCache.evictAfterCommit(1L);
+
+        //then
+        verify(versions, never()).fastPut(any(), any(), anyLong(), any());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(TransactionSynchronization::afterCommit);
+        verify(versions).fastPut(1L, 7L, 120_000L, TimeUnit.MILLISECONDS);
+        verify(invalidations).publish(argThat(invalidation ->
+                invalidation instanceof AccountBalanceCache.Invalidation
+                        && ((AccountBalanceCache.Invalidation) invalidation).getVersion() == 7L));
+    }
+
+    private static AccountDto account(String accountNumber) {
+        return AccountDto.builder()
+                .userId(1L)
+                .accountNumber(accountNumber)
+                .balance(1000L)
+                .build();
+    }
+}
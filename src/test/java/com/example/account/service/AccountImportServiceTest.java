@@ -0,0 +1,185 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountImportReport;
+import com.example.account.generator.AccountNumberGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.UserAccountCount;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.ImportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountImportServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private AccountUserRepository accountUserRepository;
+
+    @Mock
+    private AccountNumberGenerator accountNumberGenerator;
+
+    @Mock
+    private AccountBalanceCache accountBalanceCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AccountImportService accountImportService;
+
+    @BeforeEach
+    void setUp() {
+        accountImportService = new AccountImportService(accountRepository,
+                accountUserRepository, accountNumberGenerator, accountBalanceCache,
+                transactionManager, new ObjectMapper(), meterRegistry, 2, 100);
+    }
+
+    @Test
+    void importCsv_chunkedAndCountsPrefetchedOnce() throws Exception {
+        //given
+        givenUsers(List.of(1L, 2L));
+        given(accountRepository.countByAccountUserIdIn(anyCollection()))
+                .willAnswer(invocation -> invocation.<Collection<Long>>getArgument(0)
+                        .contains(1L) ? List.of(accountCount(1L, 9L)) : List.of());
+        given(accountUserRepository.getById(anyLong()))
+                .willAnswer(invocation -> user(invocation.getArgument(0)));
+        given(accountNumberGenerator.next()).willReturn("1000000000", "1000000001");
+        String csv = "userId,initialBalance\n"
+                + "1,1000\n"
+                + "2,2000\n"
+                // 사용자 1 은 이미 9개 + 위에서 1개 = 10개
+                + "1,3000\n"
+                + "3,100\n"
+                + "x,100\n";
+
+        //when
+        AccountImportReport report = accountImportService.importAccounts(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ImportFormat.CSV);
+
+        //then
+        assertFalse(report.isRunning());
+        assertEquals(5, report.getProcessed());
+        assertEquals(2, report.getCreated());
+        assertEquals(3, report.getRejected());
+        assertEquals(4L, report.getErrors().get(0).getLine());
+        assertEquals(ErrorCode.MAX_ACCOUNT_PER_USER_10, report.getErrors().get(0).getErrorCode());
+        assertEquals(5L, report.getErrors().get(1).getLine());
+        assertEquals(ErrorCode.USER_NOT_FOUND, report.getErrors().get(1).getErrorCode());
+        assertEquals(ErrorCode.INVALID_REQUEST, report.getErrors().get(2).getErrorCode());
+
+        // chunk 3개, 계좌 수는 처음 보는 사용자가 있는 chunk 에서만 조회
+        ArgumentCaptor<List<Account>> captor = ArgumentCaptor.forClass(List.class);
+        verify(accountRepository, times(3)).saveAll(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).size());
+        assertEquals("1000000001", captor.getAllValues().get(0).get(1).getAccountNumber());
+        assertEquals(2000L, captor.getAllValues().get(0).get(1).getBalance());
+        assertEquals(0, captor.getAllValues().get(1).size());
+        verify(accountRepository, times(2)).countByAccountUserIdIn(anyCollection());
+        verify(accountBalanceCache).evictAfterCommit(1L);
+        verify(accountBalanceCache).evictAfterCommit(2L);
+    }
+
+    @Test
+    void importNdjson() throws Exception {
+        //given
+        givenUsers(List.of(1L));
+        given(accountUserRepository.getById(1L)).willReturn(user(1L));
+        given(accountNumberGenerator.next()).willReturn("1000000000");
+        String ndjson = "{\"userId\":1,\"initialBalance\":1000}\n"
+                + "\n"
+                + "{\"userId\":1}\n";
+
+        //when
+        AccountImportReport report = accountImportService.importAccounts(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+                ImportFormat.NDJSON);
+
+        //then
+        assertEquals(1, report.getCreated());
+        assertEquals(1, report.getRejected());
+        assertEquals(3L, report.getErrors().get(0).getLine());
+        assertEquals(ErrorCode.INVALID_REQUEST, report.getErrors().get(0).getErrorCode());
+    }
+
+    @Test
+    void chunkRolledBack_notCounted() {
+        //given
+        givenUsers(List.of(1L));
+        given(accountUserRepository.getById(1L)).willReturn(user(1L));
+        given(accountNumberGenerator.next()).willReturn("1000000000");
+        willThrow(new RuntimeException("db down"))
+                .given(accountRepository).saveAll(any());
+        String csv = "1,1000\n"
+                + "x,100\n";
+
+        //when
+        assertThrows(RuntimeException.class, () -> accountImportService.importAccounts(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ImportFormat.CSV));
+
+        //then
+        assertEquals(0.0, meterRegistry.get("account.import.rows")
+                .tag("result", "created").counter().count());
+        assertEquals(0.0, meterRegistry.get("account.import.rows")
+                .tag("result", "rejected").counter().count());
+        verify(transactionManager).rollback(any());
+        assertTrue(accountImportService.runningImports().isEmpty());
+    }
+
+    private void givenUsers(List<Long> userIds) {
+        given(accountUserRepository.findExistingIds(anyCollection()))
+                .willAnswer(invocation -> invocation.<Collection<Long>>getArgument(0)
+                        .stream()
+                        .filter(userIds::contains)
+                        .collect(Collectors.toList()));
+    }
+
+    private static AccountUser user(Long id) {
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(id);
+        return user;
+    }
+
+    private static UserAccountCount accountCount(Long userId, Long count) {
+        return new UserAccountCount() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Long getAccountCount() {
+                return count;
+            }
+        };
+    }
+}
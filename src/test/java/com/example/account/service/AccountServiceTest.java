@@ -3,7 +3,12 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountUserInfo;
 import com.example.account.exception.AccountException;
+import com.example.account.generator.AccountNumberGenerator;
+import com.example.account.ledger.LedgerService;
+import com.example.account.repository.AccountBalanceView;
+import com.example.account.repository.AccountLookupView;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.AccountRepository;
 import com.example.account.type.AccountStatus;
@@ -15,14 +20,21 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -34,6 +46,18 @@ class AccountServiceTest {
     @Mock
     private AccountUserRepository accountUserRepository;
 
+    @Mock
+    private AccountNumberGenerator accountNumberGenerator;
+
+    @Mock
+    private AccountBalanceCache accountBalanceCache;
+
+    @Mock
+    private ObjectProvider<LedgerService> ledgerServiceProvider;
+
+    @Mock
+    private LedgerService ledgerService;
+
     @InjectMocks
     private AccountService accountService;
 
@@ -44,14 +68,13 @@ class AccountServiceTest {
         AccountUser user = AccountUser.builder()
                 .name("Pobi").build();
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
+        given(accountUserRepository.getById(12L))
+                .willReturn(user);
 
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.of(Account.builder()
-                                .accountUser(user)
-                                .accountNumber("1000000012")
-                        .build()));
+        given(accountNumberGenerator.next())
+                .willReturn("1000000013");
 
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
@@ -75,6 +98,7 @@ class AccountServiceTest {
         verify(accountRepository, times(1)).save(captor.capture());
         assertEquals(12L,accountDto.getUserId());
         assertEquals("1000000013",captor.getValue().getAccountNumber());
+        verify(accountBalanceCache).evictAfterCommit(12L);
     }
     @Test
     @DisplayName("delete success!!")
@@ -84,8 +108,8 @@ class AccountServiceTest {
                 .name("Pobi").build();
 
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
 
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -114,13 +138,14 @@ class AccountServiceTest {
         assertEquals(12L,accountDto.getUserId());
         assertEquals("1000000012",captor.getValue().getAccountNumber());
         assertEquals(AccountStatus.UNREGISTERED, captor.getValue().getAccountStatus());
+        verify(accountBalanceCache).evictAfterCommit(12L);
     }
 
     @Test
     @DisplayName("not found match Account- > fail to del account")
     void deleteAccount_UserNotFound(){
         //given
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserRepository.findInfoById(anyLong()))
                 .willReturn(Optional.empty());
         //when
         AccountException exception = assertThrows(AccountException.class,
@@ -137,8 +162,8 @@ class AccountServiceTest {
                 .name("Pobi")
                 .build();
         user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.empty());
         //when
@@ -162,8 +187,8 @@ class AccountServiceTest {
                 .name("harry")
                 .build();
         harry.setId(13L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(pobi)));
 
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -190,8 +215,8 @@ class AccountServiceTest {
         pobi.setId(13L);
 
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(pobi)));
 
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -216,11 +241,13 @@ class AccountServiceTest {
 
                         user.setId(15L);
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
+        given(accountUserRepository.getById(15L))
+                .willReturn(user);
 
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.empty());
+        given(accountNumberGenerator.next())
+                .willReturn("1000000000");
 
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
@@ -255,8 +282,8 @@ class AccountServiceTest {
                 .build();
         pobi.setId(12L);
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(pobi)));
 
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(Account.builder()
@@ -280,7 +307,7 @@ class AccountServiceTest {
     void createAccount_UserNotFound(){
         //given
 
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserRepository.findInfoById(anyLong()))
                 .willReturn(Optional.empty());
 
 
@@ -307,8 +334,10 @@ class AccountServiceTest {
                 .build();
                 user.setId(15L);
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
+        given(accountUserRepository.getById(15L))
+                .willReturn(user);
 
         given(accountRepository.countByAccountUser(any()))
                 .willReturn(10);
@@ -330,47 +359,112 @@ class AccountServiceTest {
                 .build();
                 pobi.setId(15L);
 
-        List<Account> accounts = Arrays.asList(
-                Account.builder()
-                        .accountUser(pobi)
-                        .accountNumber("1111111111")
-                        .balance(1000L)
-                        .build(),
-                Account.builder()
-                        .accountUser(pobi)
-                        .accountNumber("2222222222")
-                        .balance(2000L)
-                        .build(),
-                Account.builder()
-                        .accountUser(pobi)
-                        .accountNumber("3333333333")
-                        .balance(3000L)
-                        .build()
+        List<AccountBalanceView> accounts = Arrays.asList(
+                balanceView("1111111111", 1000L),
+                balanceView("2222222222", 2000L),
+                balanceView("3333333333", 3000L)
         );
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(pobi));
-        given(accountRepository.findByAccountUser(any()))
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(pobi)));
+        given(accountRepository.findBalancesByAccountUserId(15L))
                 .willReturn(accounts);
+        // 캐시에 없는 경우 -> loader 로 DB 조회
+        given(accountBalanceCache.get(anyLong(), any()))
+                .willAnswer(invocation -> invocation
+                        .<Supplier<List<AccountDto>>>getArgument(1).get());
         //when
 
         List<AccountDto> accountDtos = accountService.getAccountByUserId(1L);
         //then
         // account 타입의  리스트인 dtos 의 길이가 3
         assertEquals(3, accountDtos.size());
+        assertEquals(15L, accountDtos.get(0).getUserId());
         assertEquals("1111111111", accountDtos.get(0).getAccountNumber());
         assertEquals(1000, accountDtos.get(0).getBalance());
         assertEquals("2222222222", accountDtos.get(1).getAccountNumber());
         assertEquals(2000, accountDtos.get(1).getBalance());
         assertEquals("3333333333", accountDtos.get(2).getAccountNumber());
         assertEquals(3000, accountDtos.get(2).getBalance());
+        verify(accountBalanceCache).get(eq(15L), any());
+    }
+
+    @Test
+    void getAccountsByUserId_ledgerMode_pendingBalanceOverDb() {
+        //given
+        AccountUser pobi = AccountUser.builder()
+                .name("Pobi")
+                .build();
+        pobi.setId(15L);
+        AccountDto cached = AccountDto.builder()
+                .userId(15L)
+                .accountNumber("1111111111")
+                .balance(1000L)
+                .build();
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(pobi)));
+        given(ledgerServiceProvider.getIfAvailable()).willReturn(ledgerService);
+        given(ledgerService.pendingBalancesOfUsers(List.of(15L)))
+                .willReturn(Map.of("1111111111", 700L));
+        given(accountBalanceCache.get(eq(15L), any())).willReturn(List.of(cached));
+
+        //when
+        List<AccountDto> accountDtos = accountService.getAccountByUserId(1L);
+
+        //then
+        // 원장에 반영 전 사용 300 이 있는 계좌
+        assertEquals(700L, accountDtos.get(0).getBalance());
+        // 캐시에 있는 객체는 그대로
+        assertEquals(1000L, cached.getBalance());
+    }
+
+    @Test
+    void deleteAccount_ledgerPending_fail() {
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi").build();
+        user.setId(12L);
+        given(accountUserRepository.findInfoById(anyLong()))
+                .willReturn(Optional.of(AccountUserInfo.from(user)));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .accountUser(user)
+                        .balance(0L)
+                        .accountNumber("1000000012")
+                        .build()));
+        given(ledgerServiceProvider.getIfAvailable()).willReturn(ledgerService);
+        // DB 는 0 이지만 반영 전 취소가 있다
+        given(ledgerService.pendingBalances(List.of("1000000012")))
+                .willReturn(Map.of("1000000012", 500L));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> accountService.deleteAccount(1L, "1000000012"));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(accountRepository, never()).save(any());
+    }
+
+    private static AccountBalanceView balanceView(String accountNumber, Long balance) {
+        return new AccountBalanceView() {
+            @Override
+            public String getAccountNumber() {
+                return accountNumber;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+        };
     }
 
     @Test
     void failedToGetAccounts(){
         //given
         // 아이디 요청시 만약 빈값이 온다면
-        given(accountUserRepository.findById(anyLong()))
+        given(accountUserRepository.findInfoById(anyLong()))
                 .willReturn(Optional.empty());
         //when
         // 예외객체를 만들어서
@@ -382,4 +476,74 @@ class AccountServiceTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAccountsByAccountNumbers_chunkedInQuery() {
+        //given
+        // 중복 포함 1201 개 -> 중복 제외 1200 개 -> IN 3 번 (500, 500, 200)
+        List<String> accountNumbers = IntStream.range(0, 1200)
+                .mapToObj(i -> String.valueOf(1_000_000_000L + i))
+                .collect(Collectors.toList());
+        accountNumbers.add(accountNumbers.get(0));
+        given(accountRepository.findBalancesByAccountNumberIn(anyCollection()))
+                .willAnswer(invocation -> invocation.<Collection<String>>getArgument(0)
+                        .stream()
+                        .filter(accountNumber -> !accountNumber.endsWith("7"))
+                        .map(accountNumber -> lookupView(1L, accountNumber, 100L))
+                        .collect(Collectors.toList()));
+        ArgumentCaptor<Collection<String>> captor = ArgumentCaptor.forClass(Collection.class);
+
+        //when
+        Map<String, AccountDto> accounts =
+                accountService.getAccountsByAccountNumbers(accountNumbers);
+
+        //then
+        verify(accountRepository, times(3)).findBalancesByAccountNumberIn(captor.capture());
+        assertEquals(500, captor.getAllValues().get(0).size());
+        assertEquals(200, captor.getAllValues().get(2).size());
+        assertEquals(1080, accounts.size());
+        assertEquals(100L, accounts.get("1000000000").getBalance());
+        assertNull(accounts.get("1000000007"));
+    }
+
+    @Test
+    void getAccountsByUserIds_unknownUserAndUserWithoutAccount() {
+        //given
+        given(accountUserRepository.findExistingIds(anyCollection()))
+                .willReturn(Arrays.asList(1L, 2L));
+        given(accountRepository.findBalancesByAccountUserIdIn(anyCollection()))
+                .willReturn(Arrays.asList(
+                        lookupView(1L, "1000000000", 1000L),
+                        lookupView(1L, "1000000001", 2000L)));
+
+        //when
+        Map<Long, List<AccountDto>> accounts =
+                accountService.getAccountsByUserIds(Arrays.asList(1L, 2L, 3L));
+
+        //then
+        assertEquals(2, accounts.get(1L).size());
+        assertEquals("1000000001", accounts.get(1L).get(1).getAccountNumber());
+        assertTrue(accounts.get(2L).isEmpty());
+        assertFalse(accounts.containsKey(3L));
+    }
+
+    private static AccountLookupView lookupView(Long userId, String accountNumber,
+                                                Long balance) {
+        return new AccountLookupView() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return accountNumber;
+            }
+
+            @Override
+            public Long getBalance() {
+                return balance;
+            }
+        };
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountShardExecutorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LockMetrics lockMetrics = new LockMetrics(meterRegistry, 5L, 100);
+    private AccountShardExecutor shardExecutor;
+
+    @AfterEach
+    void tearDown() {
+        shardExecutor.shutdown();
+    }
+
+    @Test
+    void sameAccountRunsInSubmitOrder() {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 4, 1000);
+        List<Integer> executed = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 500; i++) {
+            int order = i;
+            results.add(shardExecutor.submit("1000000000", () -> {
+                // 같은 샤드 스레드에서만 실행되므로 동기화 없이 추가
+                executed.add(order);
+                return order;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        //then
+        assertEquals(500, executed.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, executed.get(i));
+        }
+    }
+
+    @Test
+    void nestedSubmitRunsInline() {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 1, 10);
+
+        //when
+        String result = shardExecutor.submit("1000000000", () ->
+                shardExecutor.submit("1000000001", () -> "nested").join()
+        ).join();
+
+        //then
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void nestedSubmitOnUnownedShard_failFast() throws Exception {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 2, 10);
+        String first = accountOnShard(0);
+        String second = accountOnShard(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        //when
+        // shard 1 의 명령이 shard 0 계좌를 중첩 호출하는 동안
+        // 이체가 shard 0 을 점유하고 shard 1 에서 기다린다
+        CompletableFuture<String> nested = shardExecutor.submit(second, () -> {
+            running.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return shardExecutor.submit(first, () -> "nested").join();
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> transfer =
+                shardExecutor.submitAll(List.of(first, second), () -> "transfer");
+        release.countDown();
+
+        //then
+        // 서로 기다리지 않고 중첩 호출이 락 실패로 끝난다
+        CompletionException exception = assertThrows(CompletionException.class, nested::join);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCode());
+        assertEquals("transfer", transfer.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submitAll_occupyEveryShard() throws Exception {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 2, 10);
+        String first = accountOnShard(0);
+        String second = accountOnShard(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+        //when
+        CompletableFuture<String> transfer = shardExecutor.submitAll(List.of(second, first), () -> {
+            running.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            executed.add("transfer");
+            // 점유한 샤드의 계좌는 바로 실행
+            return shardExecutor.submit(first, () -> "nested").join();
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> single = shardExecutor.submit(first, () -> executed.add("single"));
+        release.countDown();
+
+        //then
+        assertEquals("nested", transfer.join());
+        single.join();
+        // 앞 샤드도 이체가 끝날 때까지 다른 명령을 실행하지 않는다
+        assertEquals(List.of("transfer", "single"), executed);
+    }
+
+    @Test
+    void commandFailure_completeExceptionally() {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 2, 10);
+
+        //when
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> shardExecutor.submit("1000000000", () -> {
+                    throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+                }).join());
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE,
+                ((AccountException) exception.getCause()).getErrorCode());
+    }
+
+    @Test
+    void queueFull_rejectWithLockError() throws InterruptedException {
+        //given
+        shardExecutor = new AccountShardExecutor(lockMetrics, 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        shardExecutor.submit("1000000000", () -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        running.await(5, TimeUnit.SECONDS);
+        shardExecutor.submit("1000000000", () -> "queued");
+
+        //when
+        CompletableFuture<String> rejected =
+                shardExecutor.submit("1000000000", () -> "rejected");
+        release.countDown();
+
+        //then
+        CompletionException exception =
+                assertThrows(CompletionException.class, rejected::join);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCode());
+        // 샤드 큐 거절도 락 실패로 센다
+        assertEquals(1.0, meterRegistry.get("account.lock.failures").counter().count());
+        assertEquals("1000000000", lockMetrics.hotAccounts(1).get(0).getAccountNumber());
+    }
+
+    private String accountOnShard(int shard) {
+        for (long number = 1000000000L; ; number++) {
+            if (shardExecutor.shardOf(String.valueOf(number)) == shard) {
+                return String.valueOf(number);
+            }
+        }
+    }
+}
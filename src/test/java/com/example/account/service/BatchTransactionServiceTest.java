@@ -0,0 +1,272 @@
+package com.example.account.service;
+
+import com.example.account.app.LockPolicy;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.BatchItemResult;
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ConcurrencyMode;
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.account.type.AccountStatus.IN_USE;
+import static com.example.account.type.TransactionResultType.F;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BatchTransactionServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Mock
+    private AccountBalanceCache accountBalanceCache;
+
+    @Mock
+    private FailedTransactionRecorder failedTransactionRecorder;
+
+    @Mock
+    private LockService lockService;
+
+    @Mock
+    private AccountShardExecutor shardExecutor;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatchTransactionService batchTransactionService;
+
+    @BeforeEach
+    void setUp() {
+        // 계좌 묶음은 호출 스레드에서 바로 실행
+        batchTransactionService = new BatchTransactionService(accountRepository,
+                transactionRepository, transactionIdGenerator,
+                new TransactionCache(new ConcurrentMapCacheManager(), new SimpleMeterRegistry()),
+                accountBalanceCache, failedTransactionRecorder, lockService, shardExecutor,
+                transactionManager, Runnable::run, ConcurrencyMode.LOCK, 4, false);
+    }
+
+    @Test
+    void groupByAccount_lockOnceAndSaveInOneBatch() {
+        //given
+        Account first = account(12L, "1000000012", 1000L);
+        Account second = account(13L, "1000000013", 1000L);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(first));
+        given(accountRepository.findByAccountNumber("1000000013"))
+                .willReturn(Optional.of(second));
+        given(accountRepository.debitBalance(anyString(), any(), any(), eq(IN_USE)))
+                .willReturn(1);
+        given(transactionIdGenerator.next()).willReturn("transactionId");
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 100L),
+                new UseBalance.Request(13L, "1000000013", 300L),
+                new UseBalance.Request(12L, "1000000012", 200L)));
+
+        //then
+        verify(lockService, times(1)).lock(eq("1000000012"), any(LockPolicy.class));
+        verify(lockService, times(1)).unlock(eq("1000000012"), any(LockPolicy.class));
+        verify(transactionRepository, times(2)).saveAll(captor.capture());
+        List<Transaction> saved = captor.getAllValues().get(0);
+        assertEquals(2, saved.size());
+        assertEquals(900L, saved.get(0).getBalanceSnapshot());
+        assertEquals(700L, saved.get(1).getBalanceSnapshot());
+        // 계좌마다 성공한 금액의 합으로 한 번만 차감
+        verify(accountRepository).debitBalance("1000000012", 12L, 300L, IN_USE);
+        verify(accountRepository).debitBalance("1000000013", 13L, 300L, IN_USE);
+
+        // 요청 순서대로
+        assertEquals(3, results.size());
+        assertEquals("1000000012", results.get(0).getAccountNumber());
+        assertEquals(100L, results.get(0).getAmount());
+        assertEquals("1000000013", results.get(1).getAccountNumber());
+        assertEquals(200L, results.get(2).getAmount());
+        assertTrue(results.stream().allMatch(BatchItemResult::isSuccess));
+        verify(accountBalanceCache).evictAfterCommit(12L);
+        verify(accountBalanceCache).evictAfterCommit(13L);
+    }
+
+    @Test
+    void invalidItem_failOnlyThatItem() {
+        //given
+        Account account = account(12L, "1000000012", 1000L);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account));
+        given(accountRepository.debitBalance("1000000012", 12L, 1000L, IN_USE))
+                .willReturn(1);
+        given(transactionIdGenerator.next()).willReturn("transactionId");
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 800L),
+                new UseBalance.Request(12L, "1000000012", 300L),
+                new UseBalance.Request(99L, "1000000012", 100L),
+                new UseBalance.Request(12L, "1000000012", 200L)));
+
+        //then
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, results.get(1).getErrorCode());
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH, results.get(2).getErrorCode());
+        assertTrue(results.get(3).isSuccess());
+
+        verify(transactionRepository).saveAll(captor.capture());
+        List<Transaction> saved = captor.getValue();
+        assertEquals(S, saved.get(0).getTransactionResultType());
+        assertEquals(F, saved.get(1).getTransactionResultType());
+        assertEquals(200L, saved.get(1).getBalanceSnapshot());
+        assertEquals(F, saved.get(2).getTransactionResultType());
+        assertEquals(S, saved.get(3).getTransactionResultType());
+        verify(failedTransactionRecorder, never()).record(any(), anyString(), any());
+    }
+
+    @Test
+    void lockFailed_failWholeAccount() {
+        //given
+        willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK))
+                .given(lockService).lock(eq("1000000012"), any(LockPolicy.class));
+        given(accountRepository.findByAccountNumber("1000000013"))
+                .willReturn(Optional.of(account(13L, "1000000013", 1000L)));
+        given(accountRepository.debitBalance("1000000013", 13L, 300L, IN_USE))
+                .willReturn(1);
+        given(transactionIdGenerator.next()).willReturn("transactionId");
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 100L),
+                new UseBalance.Request(12L, "1000000012", 200L),
+                new UseBalance.Request(13L, "1000000013", 300L)));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, results.get(0).getErrorCode());
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, results.get(1).getErrorCode());
+        assertTrue(results.get(2).isSuccess());
+        verify(failedTransactionRecorder).record(USE, "1000000012", 100L);
+        verify(failedTransactionRecorder).record(USE, "1000000012", 200L);
+    }
+
+    @Test
+    void accountNotFound_failWholeAccount() {
+        //given
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.empty());
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 100L)));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, results.get(0).getErrorCode());
+        verify(transactionRepository, never()).saveAll(any());
+        verify(lockService).unlock(eq("1000000012"), any(LockPolicy.class));
+    }
+
+    @Test
+    void balanceChangedElsewhere_reloadAndValidateAgain() {
+        //given
+        // 처음 읽은 뒤 다른 경로에서 600 이 빠져나감
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account(12L, "1000000012", 1000L)))
+                .willReturn(Optional.of(account(12L, "1000000012", 400L)));
+        given(accountRepository.debitBalance("1000000012", 12L, 800L, IN_USE))
+                .willReturn(0);
+        given(accountRepository.debitBalance("1000000012", 12L, 300L, IN_USE))
+                .willReturn(1);
+        given(transactionIdGenerator.next()).willReturn("transactionId");
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 300L),
+                new UseBalance.Request(12L, "1000000012", 500L)));
+
+        //then
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(100L, results.get(0).getTransaction().getBalanceSnapshot());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, results.get(1).getErrorCode());
+        verify(transactionRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void debitKeepsFailing_failWholeAccount() {
+        //given
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account(12L, "1000000012", 1000L)));
+        given(accountRepository.debitBalance("1000000012", 12L, 100L, IN_USE))
+                .willReturn(0);
+
+        //when
+        List<BatchItemResult> results = batchTransactionService.useBalances(Arrays.asList(
+                new UseBalance.Request(12L, "1000000012", 100L)));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, results.get(0).getErrorCode());
+        verify(accountRepository, times(3)).debitBalance("1000000012", 12L, 100L, IN_USE);
+        verify(transactionRepository, never()).saveAll(any());
+        verify(failedTransactionRecorder).record(USE, "1000000012", 100L);
+    }
+
+    @Test
+    void ledgerMode_reject() {
+        //given
+        BatchTransactionService ledgerMode = new BatchTransactionService(accountRepository,
+                transactionRepository, transactionIdGenerator,
+                new TransactionCache(new ConcurrentMapCacheManager(), new SimpleMeterRegistry()),
+                accountBalanceCache, failedTransactionRecorder, lockService, shardExecutor,
+                transactionManager, Runnable::run, ConcurrencyMode.LOCK, 4, true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> ledgerMode.useBalances(Arrays.asList(
+                        new UseBalance.Request(12L, "1000000012", 100L))));
+
+        //then
+        assertEquals(ErrorCode.LEDGER_MODE_UNSUPPORTED, exception.getErrorCode());
+        verify(accountRepository, never()).debitBalance(anyString(), any(), any(), any());
+    }
+
+    private static Account account(Long userId, String accountNumber, Long balance) {
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(userId);
+        return Account.builder()
+                .accountUser(user)
+                .accountNumber(accountNumber)
+                .accountStatus(IN_USE)
+                .balance(balance)
+                .build();
+    }
+}
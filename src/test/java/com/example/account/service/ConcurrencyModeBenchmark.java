@@ -0,0 +1,108 @@
+package com.example.account.service;
+
+import com.example.account.controller.TransactionController;
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.UseBalance;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.type.AccountStatus;
+import com.example.account.type.ConcurrencyMode;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LOCK(Redisson) vs OPTIMISTIC(@Version) vs SHARDED(계좌별 단일 스레드) 처리량 비교
+ * 같은 요청 수를 계좌 1개 / 10개 / 100개에 나눠서 보내 경합 정도를 바꾼다.
+ *
+ * ./gradlew benchmark --tests '*ConcurrencyModeBenchmark'
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ConcurrencyModeBenchmark {
+    private static final int REQUESTS = 1_000;
+    private static final int CLIENT_THREADS = 32;
+    private static final int[] ACCOUNT_COUNTS = {1, 10, 100};
+    private static final AtomicLong ACCOUNT_NUMBER = new AtomicLong(3_000_000_000L);
+
+    @Autowired
+    private TransactionController transactionController;
+
+    @Autowired
+    private LockAopAspect lockAopAspect;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+
+    @Test
+    void compareModes() throws InterruptedException {
+        for (int accountCount : ACCOUNT_COUNTS) {
+            for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+                ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode", mode);
+                run(mode, createAccounts(accountCount));
+            }
+        }
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode", ConcurrencyMode.LOCK);
+    }
+
+    private void run(ConcurrencyMode mode, List<String> accountNumbers)
+            throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        List<CompletableFuture<?>> results = new ArrayList<>(REQUESTS);
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            String accountNumber = accountNumbers.get(i % accountNumbers.size());
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            results.add(result);
+            clients.execute(() -> transactionController
+                    .useBalance(new UseBalance.Request(1L, accountNumber, 10L))
+                    .whenComplete((response, e) -> {
+                        if (e != null) {
+                            failures.incrementAndGet();
+                        }
+                        result.complete(null);
+                    }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        clients.shutdown();
+
+        System.out.printf("[%s] accounts=%d, requests=%d, elapsed=%.2fs, "
+                        + "throughput=%.0f req/s, failures=%d%n",
+                mode, accountNumbers.size(), REQUESTS, seconds, REQUESTS / seconds,
+                failures.get());
+    }
+
+    private List<String> createAccounts(int count) {
+        AccountUser user = accountUserRepository.findById(1L).get();
+        List<String> accountNumbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Account account = accountRepository.save(Account.builder()
+                    .accountUser(user)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .accountNumber(String.valueOf(ACCOUNT_NUMBER.incrementAndGet()))
+                    .balance(1_000_000_000L)
+                    .registerAt(LocalDateTime.now())
+                    .build());
+            accountNumbers.add(account.getAccountNumber());
+        }
+        return accountNumbers;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.account.service;
+
+import com.example.account.dto.FailedTransaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class FailedTransactionRecorderTest {
+    @Mock
+    private TransactionService transactionService;
+
+    @Test
+    void recordIsQueuedUntilFlush() {
+        //given
+        FailedTransactionRecorder recorder = recorder(100, 10);
+
+        //when
+        recorder.record(USE, "1000000000", 1000L);
+        recorder.record(CANCEL, "1000000001", 2000L);
+
+        //then
+        verify(transactionService, never()).saveFailedTransactions(anyList());
+    }
+
+    @Test
+    void flushSavesRecordedFailure() {
+        //given
+        FailedTransactionRecorder recorder = recorder(100, 10);
+        recorder.record(USE, "1000000012", 200L);
+
+        //when
+        recorder.flush();
+
+        //then
+        ArgumentCaptor<List<FailedTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).saveFailedTransactions(captor.capture());
+        FailedTransaction failed = captor.getValue().get(0);
+        assertEquals(USE, failed.getTransactionType());
+        assertEquals("1000000012", failed.getAccountNumber());
+        assertEquals(200L, failed.getAmount());
+    }
+
+    @Test
+    void flushInBatches() {
+        //given
+        FailedTransactionRecorder recorder = recorder(100, 10);
+        List<Integer> batchSizes = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            recorder.record(USE, "1000000000", 1000L);
+        }
+
+        //when
+        recorder.flush();
+
+        //then
+        ArgumentCaptor<List<FailedTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService, times(3)).saveFailedTransactions(captor.capture());
+        captor.getAllValues().forEach(batch -> batchSizes.add(batch.size()));
+        assertEquals(List.of(10, 10, 5), batchSizes);
+    }
+
+    @Test
+    void queueFull_saveOnCallerThread() {
+        //given
+        FailedTransactionRecorder recorder = recorder(1, 10);
+        recorder.record(USE, "1000000000", 1000L);
+
+        //when
+        recorder.record(USE, "1000000001", 2000L);
+
+        //then
+        ArgumentCaptor<List<FailedTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).saveFailedTransactions(captor.capture());
+        assertEquals("1000000001", captor.getValue().get(0).getAccountNumber());
+    }
+
+    @Test
+    void shutdown_drainQueue() throws InterruptedException {
+        //given
+        FailedTransactionRecorder recorder = recorder(100, 10);
+        recorder.start();
+        recorder.record(CANCEL, "1000000000", 1000L);
+
+        //when
+        recorder.shutdown();
+
+        //then
+        verify(transactionService).saveFailedTransactions(anyList());
+    }
+
+    @Test
+    void saveFailure_keepFlushing() {
+        //given
+        FailedTransactionRecorder recorder = recorder(100, 1);
+        recorder.record(USE, "1000000000", 1000L);
+        recorder.record(USE, "1000000001", 1000L);
+        willThrow(new RuntimeException("db down"))
+                .willDoNothing()
+                .given(transactionService).saveFailedTransactions(anyList());
+
+        //when
+        recorder.flush();
+
+        //then
+        verify(transactionService, times(2)).saveFailedTransactions(anyList());
+    }
+
+    private FailedTransactionRecorder recorder(int queueCapacity, int batchSize) {
+        // 주기 flush 는 테스트에서 직접 호출
+        return new FailedTransactionRecorder(transactionService, new SimpleMeterRegistry(),
+                queueCapacity, batchSize, 60_000L, 1L);
+    }
+}
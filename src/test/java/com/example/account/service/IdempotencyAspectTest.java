@@ -0,0 +1,296 @@
+package com.example.account.service;
+
+import com.example.account.app.Idempotent;
+import com.example.account.controller.TransactionController;
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.example.account.type.TransactionResultType.S;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyAspectTest {
+    private static final Idempotent USE = useBalanceMethod().getAnnotation(Idempotent.class);
+
+    @Mock
+    private ProceedingJoinPoint proceedingJoinPoint;
+
+    @Mock
+    private MethodSignature methodSignature;
+
+    private final MemoryIdempotencyStore idempotencyStore =
+            new MemoryIdempotencyStore(100, 60, 30_000);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private IdempotencyAspect idempotencyAspect;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyAspect = new IdempotencyAspect(idempotencyStore,
+                new ObjectMapper().findAndRegisterModules(), meterRegistry, 30_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        idempotencyAspect.shutdown();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void noHeader_proceed() throws Throwable {
+        //given
+        givenRequest(null);
+        given(proceedingJoinPoint.proceed()).willReturn("result");
+
+        //when
+        Object result = idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+
+        //then
+        assertEquals("result", result);
+    }
+
+    @Test
+    void retryAfterSuccess_replayStoredResponse() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        given(methodSignature.getMethod()).willReturn(useBalanceMethod());
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.completedFuture(response()));
+
+        //when
+        UseBalance.Response first = join(idempotencyAspect.aroundMethod(proceedingJoinPoint, USE));
+        UseBalance.Response retry = join(idempotencyAspect.aroundMethod(proceedingJoinPoint, USE));
+
+        //then
+        verify(proceedingJoinPoint, times(1)).proceed();
+        assertEquals(first.getTransactionId(), retry.getTransactionId());
+        assertEquals(1000L, retry.getAmount());
+        assertEquals(S, retry.getTransactionResult());
+        assertEquals(first.getTransactedAt(), retry.getTransactedAt());
+        assertEquals(1.0, meterRegistry.get("account.idempotency.requests")
+                .tag("result", "replayed").counter().count());
+    }
+
+    @Test
+    void concurrentDuplicate_coalesceOnInFlightResult() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        CompletableFuture<UseBalance.Response> pending = new CompletableFuture<>();
+        given(proceedingJoinPoint.proceed()).willReturn(pending);
+
+        //when
+        CompletableFuture<?> first = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+        CompletableFuture<?> duplicate = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+        assertFalse(duplicate.isDone());
+        pending.complete(response());
+
+        //then
+        verify(proceedingJoinPoint, times(1)).proceed();
+        assertSame(first.join(), duplicate.join());
+        assertTrue(idempotencyStore.claim("use:key-1", "fingerprint").isCompleted());
+    }
+
+    @Test
+    void failure_releaseKeyForRetry() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK)))
+                .willReturn(CompletableFuture.completedFuture(response()));
+
+        //when
+        CompletableFuture<?> failed = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+        UseBalance.Response retry = join(idempotencyAspect.aroundMethod(proceedingJoinPoint, USE));
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, failed::join);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(proceedingJoinPoint, times(2)).proceed();
+        assertEquals("transactionId", retry.getTransactionId());
+    }
+
+    @Test
+    void inProgressOnAnotherNode_failWithoutProceed() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        given(proceedingJoinPoint.proceed()).willReturn(new CompletableFuture<>());
+        // 같은 저장소를 쓰는 다른 노드에서 처리중
+        new IdempotencyAspect(idempotencyStore, new ObjectMapper(), new SimpleMeterRegistry(), 30_000)
+                .aroundMethod(proceedingJoinPoint, USE);
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(proceedingJoinPoint, times(1)).proceed();
+    }
+
+    @Test
+    void longerThanInFlightTtl_keepKeyUntilComplete() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        CompletableFuture<UseBalance.Response> pending = new CompletableFuture<>();
+        given(proceedingJoinPoint.proceed()).willReturn(pending);
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60, 60);
+        IdempotencyAspect node = new IdempotencyAspect(store,
+                new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), 60);
+        IdempotencyAspect otherNode = new IdempotencyAspect(store,
+                new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), 60);
+
+        //when
+        CompletableFuture<?> first = (CompletableFuture<?>) node.aroundMethod(proceedingJoinPoint, USE);
+        // 락 대기 + 트랜잭션이 in-flight-ttl(60ms) 보다 오래 걸린다
+        Thread.sleep(300L);
+        CompletableFuture<?> retry = (CompletableFuture<?>)
+                otherNode.aroundMethod(proceedingJoinPoint, USE);
+        pending.complete(response());
+        Thread.sleep(300L);
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, retry::join);
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(proceedingJoinPoint, times(1)).proceed();
+        assertEquals("transactionId", ((UseBalance.Response) first.join()).getTransactionId());
+        // 완료 뒤에는 연장이 멈추고 응답은 ttl(60초) 동안 남는다
+        assertTrue(store.claim("use:key-1", "fingerprint").isCompleted());
+        node.shutdown();
+        otherNode.shutdown();
+    }
+
+    @Test
+    void sameKeyDifferentBody_reusedWithoutProceed() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        given(methodSignature.getMethod()).willReturn(useBalanceMethod());
+        given(proceedingJoinPoint.getArgs())
+                .willReturn(new Object[]{new UseBalance.Request(1L, "1000000000", 1000L)})
+                .willReturn(new Object[]{new UseBalance.Request(1L, "1000000000", 2000L)})
+                .willReturn(new Object[]{new UseBalance.Request(1L, "1000000000", 1000L)});
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.completedFuture(response()));
+        idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+
+        //when
+        CompletableFuture<?> reused = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+        UseBalance.Response retry = join(idempotencyAspect.aroundMethod(proceedingJoinPoint, USE));
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, reused::join);
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED,
+                ((AccountException) exception.getCause()).getErrorCode());
+        // 같은 본문의 재시도는 그대로 replay
+        assertEquals("transactionId", retry.getTransactionId());
+        verify(proceedingJoinPoint, times(1)).proceed();
+    }
+
+    @Test
+    void sameKeyDifferentBodyWhileInFlight_reused() throws Throwable {
+        //given
+        givenRequest("key-1");
+        givenAsyncMethod();
+        given(proceedingJoinPoint.getArgs())
+                .willReturn(new Object[]{new UseBalance.Request(1L, "1000000000", 1000L)})
+                .willReturn(new Object[]{new UseBalance.Request(1L, "1000000000", 2000L)});
+        given(proceedingJoinPoint.proceed()).willReturn(new CompletableFuture<>());
+        idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+
+        //when
+        CompletableFuture<?> reused = (CompletableFuture<?>)
+                idempotencyAspect.aroundMethod(proceedingJoinPoint, USE);
+
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, reused::join);
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(proceedingJoinPoint, times(1)).proceed();
+    }
+
+    @Test
+    void tooLongKey_invalidRequest() {
+        //given
+        givenRequest("k".repeat(101));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, USE));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+    }
+
+    private void givenRequest(String idempotencyKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transaction/use");
+        if (idempotencyKey != null) {
+            request.addHeader(IdempotencyAspect.HEADER, idempotencyKey);
+        }
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private void givenAsyncMethod() {
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+    }
+
+    private static UseBalance.Response join(Object result) {
+        return (UseBalance.Response) ((CompletableFuture<?>) result).join();
+    }
+
+    private static UseBalance.Response response() {
+        return UseBalance.Response.builder()
+                .accountNumber("1000000000")
+                .transactionResult(S)
+                .transactionId("transactionId")
+                .amount(1000L)
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static Method useBalanceMethod() {
+        try {
+            return TransactionController.class.getMethod("useBalance", UseBalance.Request.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalAccountLocksTest {
+    private final LocalAccountLocks localLocks = new LocalAccountLocks();
+
+    @Test
+    void differentAccountsNeverWait() throws Exception {
+        //given
+        assertTrue(localLocks.tryLock("1000000001", 0, TimeUnit.MILLISECONDS));
+
+        //when
+        boolean other = localLocks.tryLock("1000000002", 0, TimeUnit.MILLISECONDS);
+        boolean same = localLocks.tryLock("1000000001", 10, TimeUnit.MILLISECONDS);
+
+        //then
+        assertTrue(other);
+        assertFalse(same);
+    }
+
+    @Test
+    void unlockHandsOverToWaiterAndCleansUp() throws Exception {
+        //given
+        assertTrue(localLocks.tryLock("1000000001", 0, TimeUnit.MILLISECONDS));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiter = executor.submit(() ->
+                    localLocks.tryLock("1000000001", 5, TimeUnit.SECONDS));
+
+            //when
+            Thread.sleep(50);
+            localLocks.unlock("1000000001");
+
+            //then
+            assertTrue(waiter.get(5, TimeUnit.SECONDS));
+            assertEquals(1, localLocks.size());
+            // 잡은 스레드가 아니어도 풀 수 있고, 아무도 없으면 지워진다
+            localLocks.unlock("1000000001");
+            assertEquals(0, localLocks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,20 +1,39 @@
 package com.example.account.service;
 
+import com.example.account.app.AccountLock;
+import com.example.account.app.LockPolicy;
+import com.example.account.dto.TransferBalance;
 import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
+import com.example.account.type.ConcurrencyMode;
 import com.example.account.type.ErrorCode;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.Lock;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -23,10 +42,18 @@ class LockAopAspectTest {
     @Mock
     private LockService lockService;
 
+    @Mock
+    private LockMetrics lockMetrics;
+
+    @Mock
+    private AccountShardExecutor shardExecutor;
 
     @Mock
     private ProceedingJoinPoint proceedingJoinPoint;
 
+    @Mock
+    private MethodSignature methodSignature;
+
     @InjectMocks
     private LockAopAspect lockAopAspect;
 
@@ -46,12 +73,13 @@ class LockAopAspectTest {
         //then
 
         verify(lockService, times(1))
-                .lock(lockArgumentCaptor.capture());
+                .lock(lockArgumentCaptor.capture(), any());
         verify(lockService, times(1))
-                .unlock(unlockArgumentCaptor.capture());
+                .unlock(unlockArgumentCaptor.capture(), any());
 
         assertEquals("1234",lockArgumentCaptor.getValue());
         assertEquals("1234",unlockArgumentCaptor.getValue());
+        verify(lockMetrics, times(1)).recordHold(anyLong());
     }
     @Test
     void lockAndUnlock_evenIfThrow() throws Throwable {
@@ -72,17 +100,315 @@ class LockAopAspectTest {
         //then
 
         verify(lockService, times(1))
-                .lock(lockArgumentCaptor.capture());
+                .lock(lockArgumentCaptor.capture(), any());
         verify(lockService, times(1))
-                .unlock(unlockArgumentCaptor.capture());
+                .unlock(unlockArgumentCaptor.capture(), any());
 
         assertEquals("54321",lockArgumentCaptor.getValue());
         assertEquals("54321",unlockArgumentCaptor.getValue());
     }
 
+    @Test
+    void asyncLockAndUnlock() throws Throwable {
+        //given
+        ArgumentCaptor<Long> lockOwnerCaptor = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Long> unlockOwnerCaptor = ArgumentCaptor.forClass(Long.class);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+        given(lockService.lockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(lockService.unlockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.completedFuture("result"));
 
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint, request);
 
+        //then
+        assertEquals("result", ((CompletableFuture<?>) result).join());
+        verify(lockService, times(1))
+                .lockAsync(eq("1234"), any(), lockOwnerCaptor.capture());
+        verify(lockService, times(1))
+                .unlockAsync(eq("1234"), any(), unlockOwnerCaptor.capture());
+        verify(lockService, never()).lock(anyString(), any());
+        assertEquals(lockOwnerCaptor.getValue(), unlockOwnerCaptor.getValue());
+    }
 
+    @Test
+    void asyncUnlock_evenIfFutureFails() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"54321",
+                1000L);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+        given(lockService.lockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(lockService.unlockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.ACCOUNT_NOT_FOUND)));
 
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request);
 
-}
\ No newline at end of file
+        //then
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(lockService, times(1)).unlockAsync(eq("54321"), any(), anyLong());
+    }
+
+    @Test
+    void asyncLockFailed_doNotProceed() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"54321",
+                1000L);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+        given(lockService.lockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK)));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        assertThrows(CompletionException.class, result::join);
+        verify(proceedingJoinPoint, never()).proceed();
+        verify(lockService, never()).unlockAsync(anyString(), any(), anyLong());
+    }
+
+    @Test
+    void asyncProceedOnTransactionExecutor() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(lockAopAspect, "transactionExecutor",
+                (Executor) submitted::add);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+        given(lockService.lockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(lockService.unlockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(proceedingJoinPoint.proceed())
+                .willReturn(CompletableFuture.completedFuture("result"));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        // 락을 완료시킨 스레드가 아니라 executor 에서 실행된다
+        verify(proceedingJoinPoint, never()).proceed();
+        assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        assertEquals("result", result.join());
+        verify(lockService, times(1)).unlockAsync(eq("1234"), any(), anyLong());
+    }
+
+    @Test
+    void asyncExecutorRejected_unlock() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        ReflectionTestUtils.setField(lockAopAspect, "transactionExecutor",
+                (Executor) command -> {
+                    throw new RejectedExecutionException();
+                });
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getReturnType()).willReturn(CompletableFuture.class);
+        given(lockService.lockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(lockService.unlockAsync(anyString(), any(), anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        assertThrows(CompletionException.class, result::join);
+        verify(proceedingJoinPoint, never()).proceed();
+        verify(lockService, times(1)).unlockAsync(eq("1234"), any(), anyLong());
+    }
+
+    @Test
+    void lockWithAnnotatedPolicy() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        ArgumentCaptor<LockPolicy> policyCaptor = ArgumentCaptor.forClass(LockPolicy.class);
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getMethod())
+                .willReturn(PolicyTarget.class.getMethod("cancel", UseBalance.Request.class));
+        given(methodSignature.getReturnType()).willReturn(String.class);
+
+        //when
+        lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+        lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        verify(lockService, times(2)).lock(eq("1234"), policyCaptor.capture());
+        LockPolicy policy = policyCaptor.getValue();
+        assertEquals(3000L, policy.getWaitMillis());
+        assertEquals(15000L, policy.getLeaseMillis());
+        assertTrue(policy.isFair());
+        assertEquals(2, policy.getRetryCount());
+        // 두번째 호출은 캐시된 같은 정책을 쓴다
+        assertSame(policyCaptor.getAllValues().get(0), policyCaptor.getAllValues().get(1));
+    }
+
+    @Test
+    void optimisticMode_retryWithoutLock() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode",
+                ConcurrencyMode.OPTIMISTIC);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new OptimisticLockingFailureException("conflict"))
+                .willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        assertEquals("result", result);
+        verify(proceedingJoinPoint, times(2)).proceed();
+        verify(lockService, never()).lock(anyString(), any());
+    }
+
+    @Test
+    void optimisticMode_retryExhausted() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode",
+                ConcurrencyMode.OPTIMISTIC);
+        ReflectionTestUtils.setField(lockAopAspect, "optimisticBackoffMillis", 1L);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new OptimisticLockingFailureException("conflict"));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(proceedingJoinPoint, times(4)).proceed();
+        verify(lockMetrics, times(3)).recordConflict("1234");
+        verify(lockMetrics, times(1)).recordFailed(eq("1234"), anyLong());
+    }
+
+    @Test
+    void shardedMode_runOnShardWithoutLock() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode",
+                ConcurrencyMode.SHARDED);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(shardExecutor.submitAll(eq(List.of("1234")), any()))
+                .willAnswer(invocation -> CompletableFuture.completedFuture(
+                        invocation.<AccountShardExecutor.Command<Object>>getArgument(1).run()));
+        given(proceedingJoinPoint.proceed()).willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        assertEquals("result", result);
+        verify(lockService, never()).lock(anyString(), any());
+        verify(lockService, never()).unlock(anyString(), any());
+    }
+
+    @Test
+    void ledgerMode_proceedWithoutLock() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "ledgerEnabled", true);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(proceedingJoinPoint.proceed()).willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+
+        //then
+        assertEquals("result", result);
+        verify(lockService, never()).lock(anyString(), any());
+        verify(lockService, never()).lockAsync(anyString(), any(), anyLong());
+        verify(shardExecutor, never()).submitAll(any(), any());
+    }
+
+    @Test
+    void shardedMode_rethrowCommandFailure() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode",
+                ConcurrencyMode.SHARDED);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",
+                1000L);
+        given(shardExecutor.submitAll(eq(List.of("1234")), any()))
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE)));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+    }
+
+    static class PolicyTarget {
+        @AccountLock(tryLockTime = 3000L, fair = true, retryCount = 2)
+        public String cancel(UseBalance.Request request) {
+            return request.getAccountNumber();
+        }
+    }
+
+    @Test
+    void transfer_lockAllAndUnlockAll_evenIfThrow() throws Throwable {
+        //given
+        TransferBalance.Request request = new TransferBalance.Request(
+                12L, "1000000013", "1000000012", 1000L);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        assertThrows(AccountException.class,
+                () -> lockAopAspect.aroundMultiAccountMethod(proceedingJoinPoint, request));
+
+        //then
+        verify(lockService).lockAll(eq(List.of("1000000013", "1000000012")), any());
+        verify(lockService).unlockAll(eq(List.of("1000000013", "1000000012")), any());
+        verify(lockService, never()).lock(anyString(), any());
+        verify(lockMetrics, times(1)).recordHold(anyLong());
+    }
+
+    @Test
+    void transfer_shardedMode_runOnAllShards() throws Throwable {
+        //given
+        ReflectionTestUtils.setField(lockAopAspect, "concurrencyMode",
+                ConcurrencyMode.SHARDED);
+        TransferBalance.Request request = new TransferBalance.Request(
+                12L, "1000000013", "1000000012", 1000L);
+        given(shardExecutor.submitAll(eq(List.of("1000000013", "1000000012")), any()))
+                .willAnswer(invocation -> CompletableFuture.completedFuture(
+                        invocation.<AccountShardExecutor.Command<Object>>getArgument(1).run()));
+        given(proceedingJoinPoint.proceed()).willReturn("result");
+
+        //when
+        Object result = lockAopAspect.aroundMultiAccountMethod(proceedingJoinPoint, request);
+
+        //then
+        assertEquals("result", result);
+        verify(lockService, never()).lockAll(any(), any());
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.account.service;
+
+import com.example.account.app.AccountLock;
+import com.example.account.dto.UseBalance;
+import com.example.account.metrics.LockMetrics;
+import com.example.account.type.ConcurrencyMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 한 노드가 동시에 감당하는 요청 수 비교 (sync 락 vs async 락 vs 샤드 실행)
+ * servlet 스레드 풀 크기는 같게 두고, 계좌 경합이 있는 상태에서
+ * 처리량 / 동시 처리중인 요청 수 최대치 / 실패 수를 출력한다.
+ *
+ * ./gradlew benchmark --tests '*LockModeLoadTest'
+ */
+@Tag("benchmark")
+class LockModeLoadTest {
+    private static final int SERVLET_THREADS = 20;
+    private static final int WORKER_THREADS = 20;
+    private static final int REQUESTS = 2_000;
+    private static final int ACCOUNTS = 50;
+    private static final long WORK_MILLIS = 10L;
+
+    private static RedisServer redisServer;
+    private static RedissonClient redissonClient;
+    private static ExecutorService workers;
+    private static LoadTarget target;
+    private static LoadTarget shardedTarget;
+    private static AccountShardExecutor shardExecutor;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        redissonClient = Redisson.create(config);
+
+        workers = Executors.newFixedThreadPool(WORKER_THREADS);
+
+        LockMetrics lockMetrics = new LockMetrics(new SimpleMeterRegistry(), 5L, 100);
+        LockService lockService = new LockService(redissonClient, lockMetrics);
+        shardExecutor = new AccountShardExecutor(lockMetrics, 16, 10_000);
+
+        target = proxy(new LockAopAspect(lockService, lockMetrics, shardExecutor));
+
+        LockAopAspect shardedAspect = new LockAopAspect(lockService, lockMetrics, shardExecutor);
+        ReflectionTestUtils.setField(shardedAspect, "concurrencyMode", ConcurrencyMode.SHARDED);
+        shardedTarget = proxy(shardedAspect);
+    }
+
+    private static LoadTarget proxy(LockAopAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new LoadTarget());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(aspect);
+        return proxyFactory.getProxy();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        workers.shutdownNow();
+        shardExecutor.shutdown();
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Test
+    void syncLockMode() throws InterruptedException {
+        Result result = run((request, done) -> {
+            try {
+                target.useBalance(request);
+                done.accept(null);
+            } catch (Exception e) {
+                done.accept(e);
+            }
+        });
+        result.print("sync");
+        assertTrue(result.peakInFlight <= SERVLET_THREADS);
+    }
+
+    @Test
+    void asyncLockMode() throws InterruptedException {
+        Result result = run((request, done) ->
+                target.useBalanceAsync(request)
+                        .whenComplete((value, e) -> done.accept(e)));
+        result.print("async");
+    }
+
+    @Test
+    void shardedMode() throws InterruptedException {
+        Result result = run((request, done) -> {
+            try {
+                shardedTarget.useBalance(request);
+                done.accept(null);
+            } catch (Exception e) {
+                done.accept(e);
+            }
+        });
+        result.print("sharded");
+        assertEquals(0, result.failures);
+    }
+
+    private Result run(Call call) throws InterruptedException {
+        ExecutorService servletThreads = Executors.newFixedThreadPool(SERVLET_THREADS);
+        CountDownLatch finished = new CountDownLatch(REQUESTS);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            UseBalance.Request request = new UseBalance.Request(1L,
+                    String.valueOf(1_000_000_000L + i % ACCOUNTS), 1000L);
+            servletThreads.execute(() -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                call.invoke(request, e -> {
+                    if (e != null) {
+                        failures.incrementAndGet();
+                    }
+                    inFlight.decrementAndGet();
+                    finished.countDown();
+                });
+            });
+        }
+        finished.await(5, TimeUnit.MINUTES);
+        long elapsedNanos = System.nanoTime() - start;
+        servletThreads.shutdown();
+
+        return new Result(elapsedNanos, peakInFlight.get(), failures.get());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private interface Call {
+        void invoke(UseBalance.Request request, Consumer<Throwable> done);
+    }
+
+    private static class Result {
+        private final long elapsedNanos;
+        private final int peakInFlight;
+        private final int failures;
+
+        Result(long elapsedNanos, int peakInFlight, int failures) {
+            this.elapsedNanos = elapsedNanos;
+            this.peakInFlight = peakInFlight;
+            this.failures = failures;
+        }
+
+        void print(String mode) {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            System.out.printf("[%s] requests=%d, servletThreads=%d, elapsed=%.2fs, "
+                            + "throughput=%.0f req/s, peakInFlight=%d, lockFailures=%d%n",
+                    mode, REQUESTS, SERVLET_THREADS, seconds, REQUESTS / seconds,
+                    peakInFlight, failures);
+        }
+    }
+
+    public static class LoadTarget {
+        @AccountLock
+        public String useBalance(UseBalance.Request request) {
+            sleepQuietly();
+            return request.getAccountNumber();
+        }
+
+        @AccountLock
+        public CompletableFuture<String> useBalanceAsync(UseBalance.Request request) {
+            return CompletableFuture.supplyAsync(() -> {
+                sleepQuietly();
+                return request.getAccountNumber();
+            }, workers);
+        }
+
+        private static void sleepQuietly() {
+            try {
+                Thread.sleep(WORK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
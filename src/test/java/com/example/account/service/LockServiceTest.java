@@ -1,17 +1,32 @@
 package com.example.account.service;
+import com.example.account.app.LockPolicy;
 import com.example.account.exception.AccountException;
+import com.example.account.metrics.LockMetrics;
 import com.example.account.type.ErrorCode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RFuture;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class LockServiceTest {
@@ -21,6 +36,12 @@ class LockServiceTest {
     @Mock
     private RLock rLock;
 
+    @Mock
+    private RFuture<Boolean> lockFuture;
+
+    @Mock
+    private LockMetrics lockMetrics;
+
     @InjectMocks
     private LockService lockService;
 
@@ -54,8 +75,196 @@ class LockServiceTest {
         //then
 
         assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(lockMetrics, times(1)).recordFailed(eq("123"), anyLong());
+    }
+
+
+
+    @Test
+    void sameNodeContenderWaitsLocally() throws Exception {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        lockService.lock("123");
+
+        //when
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> contender = executor.submit(() -> lockService.lock("123"));
+            Exception exception = assertThrows(Exception.class, contender::get);
+
+            //then
+            // 같은 노드의 두번째 요청은 Redis 까지 가지 않는다
+            assertTrue(exception.getCause() instanceof AccountException);
+            assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                    ((AccountException) exception.getCause()).getErrorCode());
+            verify(redissonClient, times(1)).getLock(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncSameNodeContenderWaitsLocally() {
+        //given
+        LockPolicy policy = LockPolicy.builder()
+                .waitMillis(10L)
+                .leaseMillis(1000L)
+                .build();
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(lockFuture);
+        given(lockFuture.toCompletableFuture())
+                .willReturn(CompletableFuture.completedFuture(true));
+        lockService.lockAsync("123", policy, -1L).join();
+
+        //when
+        CompletableFuture<Void> contender = lockService.lockAsync("123", policy, -2L);
+
+        //then
+        // 비동기 경로도 같은 노드의 두번째 요청은 Redis 까지 가지 않는다
+        CompletionException exception = assertThrows(CompletionException.class, contender::join);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCode());
+        verify(rLock, times(1)).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+    }
+
+    @Test
+    void releaseLocalLockEvenIfRedisUnlockFails() throws Exception {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        willThrow(new IllegalMonitorStateException())
+                .given(rLock).unlock();
+        lockService.lock("123");
+
+        //when
+        assertThrows(IllegalMonitorStateException.class,
+                () -> lockService.unlock("123"));
+
+        //then
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> next = executor.submit(() -> lockService.lock("123"));
+            assertDoesNotThrow(() -> next.get());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
+    @Test
+    void redisFailure_failClosed() throws Exception {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willThrow(new IllegalStateException("redis down"))
+                .willReturn(true);
 
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockService.lock("123"));
 
-}
\ No newline at end of file
+        //then
+        // Redis 장애면 로컬 락만으로 진행하지 않고, 로컬 락도 풀어둔다
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(lockMetrics, times(1)).recordFailed(eq("123"), anyLong());
+        assertDoesNotThrow(() -> lockService.lock("123"));
+    }
+
+    @Test
+    void retryWithBackoffUntilLocked() throws InterruptedException {
+        //given
+        LockPolicy policy = LockPolicy.builder()
+                .waitMillis(10L)
+                .leaseMillis(1000L)
+                .retryCount(2)
+                .retryBackoffMillis(1L)
+                .build();
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(false, false, true);
+
+        //when
+        assertDoesNotThrow(() -> lockService.lock("123", policy));
+
+        //then
+        verify(rLock, times(3)).tryLock(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void fairPolicyUsesFairLock() throws InterruptedException {
+        //given
+        LockPolicy policy = LockPolicy.builder()
+                .waitMillis(10L)
+                .leaseMillis(1000L)
+                .fair(true)
+                .build();
+        given(redissonClient.getFairLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+
+        //when
+        lockService.lock("123", policy);
+
+        //then
+        verify(redissonClient, times(1)).getFairLock("ACLK:123");
+    }
+
+    @Test
+    void lockAllInAccountNumberOrder() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+
+        //when
+        lockService.lockAll(List.of("1000000002", "1000000001"), LockPolicy.DEFAULT);
+
+        //then
+        // 요청 순서와 상관없이 계좌번호 순서로 잡는다
+        InOrder order = inOrder(redissonClient);
+        order.verify(redissonClient).getLock("ACLK:1000000001");
+        order.verify(redissonClient).getLock("ACLK:1000000002");
+        verify(lockMetrics).recordAcquired(eq("1000000001"), anyLong());
+        verify(lockMetrics).recordAcquired(eq("1000000002"), anyLong());
+    }
+
+    @Test
+    void lockAllFailed_releaseAcquiredLocalLocks() throws Exception {
+        //given
+        LockPolicy policy = LockPolicy.builder()
+                .waitMillis(10L)
+                .leaseMillis(1000L)
+                .build();
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        lockService.lock("1000000002", policy);
+
+        //when
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> transfer = executor.submit(() -> lockService.lockAll(
+                    List.of("1000000001", "1000000002"), policy));
+            Exception exception = assertThrows(Exception.class, transfer::get);
+
+            //then
+            assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                    ((AccountException) exception.getCause()).getErrorCode());
+            // 먼저 잡았던 1000000001 의 로컬 락은 풀려 있어야 한다
+            assertDoesNotThrow(() -> lockService.lock("1000000001", policy));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryIdempotencyStoreTest {
+    @Test
+    void inProgress_expireAfterInFlightTtl() throws InterruptedException {
+        //given
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60, 10);
+        store.claim("use:key-1", "fingerprint");
+
+        //when
+        Thread.sleep(50L);
+
+        //then
+        // 처리하던 노드가 죽어도 key 가 ttl(60초) 동안 잠기지 않는다
+        assertNull(store.claim("use:key-1", "fingerprint"));
+    }
+
+    @Test
+    void completed_keptForTtl() throws InterruptedException {
+        //given
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60, 10);
+        store.claim("use:key-1", "fingerprint");
+        store.complete("use:key-1", "fingerprint", "{}");
+
+        //when
+        Thread.sleep(50L);
+
+        //then
+        IdempotencyStore.Entry entry = store.claim("use:key-1", "fingerprint");
+        assertNotNull(entry);
+        assertTrue(entry.isCompleted());
+    }
+
+    @Test
+    void renew_keepInProgressPastInFlightTtl() throws InterruptedException {
+        //given
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60, 100);
+        store.claim("use:key-1", "fingerprint");
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(40L);
+            assertTrue(store.renew("use:key-1", "fingerprint"));
+        }
+
+        //then
+        IdempotencyStore.Entry entry = store.claim("use:key-1", "fingerprint");
+        assertNotNull(entry);
+        assertFalse(entry.isCompleted());
+    }
+
+    @Test
+    void renewAfterExpire_false() throws InterruptedException {
+        //given
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60, 10);
+        store.claim("use:key-1", "fingerprint");
+
+        //when
+        Thread.sleep(50L);
+
+        //then
+        assertFalse(store.renew("use:key-1", "fingerprint"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.account.service;
+
+import com.example.account.dto.ReconciliationMismatch;
+import com.example.account.dto.ReconciliationReport;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.ReconciliationRow;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.MismatchType;
+import com.example.account.type.TransactionType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.TRANSFER_IN;
+import static com.example.account.type.TransactionType.TRANSFER_OUT;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationServiceTest {
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<ReconciliationRow> rows = new ArrayList<>();
+
+    private ReconciliationService reconciliationService;
+
+    @AfterEach
+    void tearDown() {
+        reconciliationService.shutdown();
+    }
+
+    @Test
+    void consistentHistory_noMismatch() {
+        //given
+        // 잔액 1000 -> 사용 200 -> 취소 200 -> 사용 300
+        row(1L, 700L, "t1", USE, 200L, 800L);
+        row(1L, 700L, "t2", CANCEL, 200L, 1000L);
+        row(1L, 700L, "t3", USE, 300L, 700L);
+        givenAccounts(1L, 1L, 10);
+
+        //when
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //then
+        assertFalse(report.isRunning());
+        assertEquals(1.0, report.getProgress());
+        assertEquals(1, report.getAccounts());
+        assertEquals(3, report.getTransactions());
+        assertEquals(0, report.getMismatchCount());
+    }
+
+    @Test
+    void transferOutIsDebitAndTransferInIsCredit() {
+        //given
+        row(1L, 900L, "t1", USE, 100L, 900L);
+        row(1L, 900L, "t2", TRANSFER_OUT, 500L, 400L);
+        row(1L, 900L, "t3", TRANSFER_IN, 500L, 900L);
+        givenAccounts(1L, 1L, 10);
+
+        //when
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //then
+        assertEquals(0, report.getMismatchCount());
+    }
+
+    @Test
+    void brokenSnapshot_reportFirstDivergingTransaction() {
+        //given
+        row(1L, 500L, "t1", USE, 200L, 800L);
+        row(1L, 500L, "t2", USE, 100L, 600L);
+        row(1L, 500L, "t3", USE, 100L, 500L);
+        givenAccounts(1L, 1L, 10);
+
+        //when
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //then
+        assertEquals(1, report.getMismatchCount());
+        ReconciliationMismatch mismatch = report.getMismatches().get(0);
+        assertEquals("t2", mismatch.getTransactionId());
+        assertEquals(MismatchType.SNAPSHOT, mismatch.getMismatchType());
+        assertEquals(700L, mismatch.getExpected());
+        assertEquals(600L, mismatch.getActual());
+    }
+
+    @Test
+    void balanceDiffersFromLastSnapshot() {
+        //given
+        row(1L, 999L, "t1", USE, 200L, 800L);
+        givenAccounts(1L, 1L, 10);
+
+        //when
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //then
+        ReconciliationMismatch mismatch = report.getMismatches().get(0);
+        assertEquals("t1", mismatch.getTransactionId());
+        assertEquals(MismatchType.BALANCE, mismatch.getMismatchType());
+        assertEquals(800L, mismatch.getExpected());
+        assertEquals(999L, mismatch.getActual());
+    }
+
+    @Test
+    void manyPartitions_everyAccountOnce() {
+        //given
+        for (long accountId = 1; accountId <= 100; accountId++) {
+            // 짝수 계좌만 잔액이 틀림
+            long balance = accountId % 2 == 0 ? 1L : 700L;
+            row(accountId, balance, "a" + accountId, USE, 200L, 800L);
+            row(accountId, balance, "b" + accountId, USE, 100L, 700L);
+        }
+        givenAccounts(1L, 100L, 7);
+
+        //when
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //then
+        assertEquals(100, report.getAccounts());
+        assertEquals(200, report.getTransactions());
+        assertEquals(50, report.getMismatchCount());
+        assertEquals(200.0, meterRegistry.get("account.reconciliation.transactions")
+                .counter().count());
+        assertEquals(1.0, meterRegistry.get("account.reconciliation.progress")
+                .gauge().value());
+    }
+
+    private void givenAccounts(long minId, long maxId, long partitionSize) {
+        given(accountRepository.findMinId()).willReturn(minId);
+        given(accountRepository.findMaxId()).willReturn(maxId);
+        given(transactionRepository.streamForReconciliation(anyLong(), anyLong()))
+                .willAnswer(invocation -> {
+                    long from = invocation.getArgument(0);
+                    long to = invocation.getArgument(1);
+                    return rows.stream()
+                            .filter(row -> row.getAccountId() >= from && row.getAccountId() < to)
+                            .collect(Collectors.toList())
+                            .stream();
+                });
+        reconciliationService = new ReconciliationService(transactionRepository,
+                accountRepository, transactionManager, meterRegistry, 4, partitionSize, 100);
+    }
+
+    private void row(Long accountId, Long accountBalance, String transactionId,
+                     TransactionType transactionType, Long amount, Long balanceSnapshot) {
+        rows.add(new ReconciliationRow() {
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+
+            @Override
+            public String getAccountNumber() {
+                return String.valueOf(1_000_000_000L + accountId);
+            }
+
+            @Override
+            public Long getAccountBalance() {
+                return accountBalance;
+            }
+
+            @Override
+            public String getTransactionId() {
+                return transactionId;
+            }
+
+            @Override
+            public TransactionType getTransactionType() {
+                return transactionType;
+            }
+
+            @Override
+            public Long getAmount() {
+                return amount;
+            }
+
+            @Override
+            public Long getBalanceSnapshot() {
+                return balanceSnapshot;
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.account.service;
+
+import com.example.account.dto.TransactionDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransactionCache transactionCache =
+            new TransactionCache(new ConcurrentMapCacheManager(), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void putAfterCommit_waitForCommit() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        transactionCache.putAfterCommit(transaction("transactionId"));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(TransactionSynchronization::afterCommit);
+
+        //then
+        TransactionDto cached = transactionCache.get("transactionId", () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        assertEquals("transactionId", cached.getTransactionId());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void putAfterCommit_notCachedIfNotCommitted() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        transactionCache.putAfterCommit(transaction("transactionId"));
+
+        //then
+        transactionCache.get("transactionId", () -> {
+            loads.incrementAndGet();
+            return transaction("transactionId");
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void recordQueryTimers() {
+        //given
+        transactionCache.putAfterCommit(transaction("transactionId"));
+
+        //when
+        transactionCache.get("transactionId", () -> null);
+        transactionCache.get("other", () -> transaction("other"));
+
+        //then
+        assertEquals(1L, meterRegistry.get("account.transaction.query")
+                .tag("result", "hit").timer().count());
+        assertEquals(1L, meterRegistry.get("account.transaction.query")
+                .tag("result", "miss").timer().count());
+    }
+
+    private static TransactionDto transaction(String transactionId) {
+        return TransactionDto.builder()
+                .transactionId(transactionId)
+                .amount(1000L)
+                .build();
+    }
+}
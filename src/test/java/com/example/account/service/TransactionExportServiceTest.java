@@ -0,0 +1,172 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.example.account.type.ExportFormat.CSV;
+import static com.example.account.type.ExportFormat.NDJSON;
+import static com.example.account.type.TransactionResultType.S;
+import static com.example.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2022, 2, 1, 0, 0);
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private TransactionExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new TransactionExportService(transactionRepository,
+                accountRepository, entityManager,
+                new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    void exportNdjson_oneLinePerTransaction() throws Exception {
+        //given
+        AtomicBoolean closed = new AtomicBoolean();
+        given(transactionRepository.streamByAccountId(1L, FROM, TO))
+                .willReturn(transactions(3).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        long count = exportService.export(1L, FROM, TO, NDJSON, out);
+
+        //then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, count);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{"));
+        assertTrue(lines[2].contains("\"transactionId\":\"transactionId2\""));
+        assertTrue(closed.get());
+        verify(entityManager, never()).clear();
+    }
+
+    @Test
+    void exportCsv_headerAndRows() throws Exception {
+        //given
+        given(transactionRepository.streamByTransactedAt(FROM, TO))
+                .willReturn(transactions(2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        exportService.export(null, FROM, TO, CSV, out);
+
+        //then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(TransactionExportService.CSV_HEADER, lines[0]);
+        assertEquals("transactionId0,1000000012,USE,S,100,900,2022-01-01T00:00",
+                lines[1]);
+    }
+
+    @Test
+    void exportLarge_clearPersistenceContextPerChunk() throws Exception {
+        //given
+        given(transactionRepository.streamByAccountId(1L, FROM, TO))
+                .willReturn(transactions(TransactionExportService.CHUNK * 2 + 1));
+
+        //when
+        long count = exportService.export(1L, FROM, TO, NDJSON,
+                new ByteArrayOutputStream());
+
+        //then
+        assertEquals(TransactionExportService.CHUNK * 2 + 1, count);
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void exportNdjson_flushOncePerChunk() throws Exception {
+        //given
+        given(transactionRepository.streamByAccountId(1L, FROM, TO))
+                .willReturn(transactions(TransactionExportService.CHUNK * 2 + 1));
+        AtomicInteger flushes = new AtomicInteger();
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        //when
+        exportService.export(1L, FROM, TO, NDJSON, out);
+
+        //then
+        // CHUNK 두 번 + 마지막 한 번, 한 줄마다 flush 하지 않는다
+        assertEquals(3, flushes.get());
+    }
+
+    @Test
+    void resolveAccountId_accountNotFound() {
+        //given
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> exportService.resolveAccountId("1000000012"));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    void resolveAccountId_allAccounts() {
+        assertNull(exportService.resolveAccountId(null));
+    }
+
+    private static Stream<Transaction> transactions(int count) {
+        Account account = Account.builder()
+                .accountUser(AccountUser.builder().name("Pobi").build())
+                .accountNumber("1000000012")
+                .build();
+        return IntStream.range(0, count)
+                .mapToObj(i -> Transaction.builder()
+                        .account(account)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .amount(100L)
+                        .balanceSnapshot(900L)
+                        .transactionId("transactionId" + i)
+                        .transactedAt(FROM.plusSeconds(i))
+                        .build());
+    }
+}
@@ -3,22 +3,33 @@ package com.example.account.service;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.FailedTransaction;
+import com.example.account.dto.TransactionCursor;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionPageDto;
+import com.example.account.dto.TransferDto;
 import com.example.account.exception.AccountException;
+import com.example.account.generator.TransactionIdGenerator;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.repository.TransactionRepository;
 import com.example.account.type.AccountStatus;
 import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static com.example.account.type.AccountStatus.*;
@@ -29,6 +40,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -46,6 +58,16 @@ class TransactionServiceTest {
     @Mock
     private AccountUserRepository accountUserRepository;
 
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Mock
+    private AccountBalanceCache accountBalanceCache;
+
+    @Spy
+    private TransactionCache transactionCache = new TransactionCache(
+            new ConcurrentMapCacheManager(), new SimpleMeterRegistry());
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -57,13 +79,13 @@ class TransactionServiceTest {
                 .build();
                 user.setId(12L);
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
-
+        // 차감은 update 문에서 끝나고, 다시 읽은 계좌는 차감된 잔액
+        given(accountRepository.debitBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1);
         Account account = Account.builder()
                 .accountUser(user)
                 .accountStatus(IN_USE)
-                .balance(10000L)
+                .balance(9800L)
                 .accountNumber("1000000012")
                 .build();
         given(accountRepository.findByAccountNumber(anyString()))
@@ -93,6 +115,39 @@ class TransactionServiceTest {
         assertEquals(USE,transactionDto.getTransactionType());
         assertEquals(9000L,transactionDto.getBalanceSnapshot());
         assertEquals(1000L,transactionDto.getAmount());
+        verify(accountRepository).debitBalance("1000000000", 1L, USE_AMOUNT, IN_USE);
+        verify(accountBalanceCache).evictAfterCommit(1L);
+        verify(accountUserRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("검증은 통과했지만 그 사이 잔액이 바뀌어 차감 실패")
+    void useBalance_debitRace(){
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("Pobi")
+                .build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.debitBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(0);
+        given(accountUserRepository.findById(anyLong()))
+                .willReturn(Optional.of(user));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", USE_AMOUNT));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(transactionRepository, never()).save(any());
     }
 
     // 해당유저 x --> 잔액사용 x
@@ -242,8 +297,8 @@ class TransactionServiceTest {
     }
 
     @Test
-    @DisplayName("실패 트랜잭션 저장")
-    void saveFailedUseTransaction(){
+    @DisplayName("실패 트랜잭션 저장 (FailedTransactionRecorder 의 batch)")
+    void saveFailedTransactions(){
         //given
         AccountUser user = AccountUser.builder()
                 .name("Pobi")
@@ -256,34 +311,31 @@ class TransactionServiceTest {
                 .balance(10000L)
                 .accountNumber("1000000012")
                 .build();
+        LocalDateTime failedAt = LocalDateTime.now();
 
-//        given(accountUserRepository.findById(anyLong()))
-//                .willReturn(Optional.of(user));
-
-        given(accountRepository.findByAccountNumber(anyString()))
-                .willReturn(Optional.of(account));
-
-        given(transactionRepository.save(any()))
-                .willReturn(Transaction.builder()
-                        .account(account)
-                        .transactionType(USE)
-                        .transactionResultType(S)
-                        .transactionId("transactionId")
-                        .transactedAt(LocalDateTime.now())
-                        .amount(1000L)
-                        .balanceSnapshot(9000L)
-                        .build());
+        given(accountRepository.findByAccountNumberIn(anyCollection()))
+                .willReturn(List.of(account));
+        given(transactionIdGenerator.next()).willReturn("failedId");
+        given(transactionRepository.saveAll(anyList()))
+                .willAnswer(invocation -> invocation.getArgument(0));
 
-        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
 
 
         //when
-        transactionService.saveFailedUseTransaction("1000000000",USE_AMOUNT);
+        transactionService.saveFailedTransactions(List.of(
+                new FailedTransaction(USE, "1000000012", USE_AMOUNT, failedAt),
+                new FailedTransaction(CANCEL, "9999999999", USE_AMOUNT, failedAt)));
         //then
-        verify(transactionRepository,times(1)).save(captor.capture());
-        assertEquals(USE_AMOUNT, captor.getValue().getAmount());
-        assertEquals(10000L, captor.getValue().getBalanceSnapshot());
-        assertEquals(F, captor.getValue().getTransactionResultType());
+        // 없는 계좌의 실패 거래는 건너뛴다
+        verify(transactionRepository,times(1)).saveAll(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        Transaction saved = captor.getValue().get(0);
+        assertEquals(USE, saved.getTransactionType());
+        assertEquals(USE_AMOUNT, saved.getAmount());
+        assertEquals(10000L, saved.getBalanceSnapshot());
+        assertEquals(F, saved.getTransactionResultType());
+        assertEquals(failedAt, saved.getTransactedAt());
 
 
     }
@@ -598,4 +650,287 @@ class TransactionServiceTest {
         //then
         assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void queryTransaction_cached(){
+        //given
+        Account account = Account.builder()
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(account)
+                        .transactionType(USE)
+                        .transactionResultType(S)
+                        .transactionId("transactionId")
+                        .transactedAt(LocalDateTime.now())
+                        .amount(1000L)
+                        .balanceSnapshot(9000L)
+                        .build()));
+
+        //when
+        transactionService.queryTransaction("transactionId");
+        TransactionDto transactionDto = transactionService.queryTransaction("transactionId");
+
+        //then
+        assertEquals("transactionId", transactionDto.getTransactionId());
+        verify(transactionRepository, times(1)).findByTransactionId("transactionId");
+    }
+
+    @Test
+    void queryTransaction_notFoundCached(){
+        //given
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        assertThrows(AccountException.class,
+                ()-> transactionService.queryTransaction("unknown"));
+        AccountException exception = assertThrows(AccountException.class,
+                ()-> transactionService.queryTransaction("unknown"));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+        verify(transactionRepository, times(1)).findByTransactionId("unknown");
+    }
+
+    @Test
+    void useBalance_populateCache(){
+        //given
+        Account account = Account.builder()
+                .accountStatus(IN_USE)
+                .balance(9800L)
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.debitBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        given(transactionIdGenerator.next()).willReturn("newTransactionId");
+
+        //when
+        transactionService.useBalance(1L, "1000000012", USE_AMOUNT);
+        TransactionDto transactionDto = transactionService.queryTransaction("newTransactionId");
+
+        //then
+        assertEquals(USE_AMOUNT, transactionDto.getAmount());
+        verify(transactionRepository, never()).findByTransactionId(anyString());
+    }
+
+    @Test
+    void getTransactionHistory_nextCursor(){
+        //given
+        Account account = Account.builder()
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> rows = List.of(
+                historyRow(account, 3L, now),
+                historyRow(account, 2L, now),
+                historyRow(account, 1L, now.minusSeconds(1)));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.findHistory(any(), any(), any(), any(), any(), any()))
+                .willReturn(rows);
+
+        //when
+        TransactionPageDto page = transactionService.getTransactionHistory(
+                "1000000012", USE, null, null, 2);
+
+        //then
+        // size + 1 건을 읽어서 다음 페이지 판단
+        verify(transactionRepository).findHistory(account, USE, null,
+                TransactionCursor.FIRST.getTransactedAt(), Long.MAX_VALUE, PageRequest.of(0, 3));
+        assertEquals(2, page.getTransactions().size());
+        TransactionCursor next = TransactionCursor.decode(page.getNextCursor());
+        assertEquals(now, next.getTransactedAt());
+        assertEquals(2L, next.getId());
+    }
+
+    @Test
+    void getTransactionHistory_lastPage(){
+        //given
+        Account account = Account.builder()
+                .accountNumber("1000000012")
+                .build();
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.findHistory(any(), any(), any(), any(), any(), any()))
+                .willReturn(List.of(historyRow(account, 1L, LocalDateTime.now())));
+        String cursor = new TransactionCursor(LocalDateTime.now(), 5L).encode();
+
+        //when
+        TransactionPageDto page = transactionService.getTransactionHistory(
+                "1000000012", null, F, cursor, 20);
+
+        //then
+        assertEquals(1, page.getTransactions().size());
+        assertEquals(null, page.getNextCursor());
+    }
+
+    @Test
+    void getTransactionHistory_invalidCursor(){
+        //given
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder().build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.getTransactionHistory(
+                        "1000000012", null, null, "not-a-cursor", 20));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+    }
+
+    private static Transaction historyRow(Account account, Long id, LocalDateTime transactedAt) {
+        Transaction transaction = Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .transactionId("transactionId" + id)
+                .transactedAt(transactedAt)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .build();
+        transaction.setId(id);
+        return transaction;
+    }
+
+    @Test
+    void successTransfer() {
+        //given
+        AccountUser pobi = AccountUser.builder().name("Pobi").build();
+        pobi.setId(12L);
+        AccountUser crong = AccountUser.builder().name("Crong").build();
+        crong.setId(13L);
+        Account from = Account.builder()
+                .accountUser(pobi)
+                .accountStatus(IN_USE)
+                .balance(9000L)
+                .accountNumber("1000000012")
+                .build();
+        Account to = Account.builder()
+                .accountUser(crong)
+                .accountStatus(IN_USE)
+                .balance(2000L)
+                .accountNumber("1000000013")
+                .build();
+        given(accountRepository.debitBalance("1000000012", 12L, 1000L, IN_USE))
+                .willReturn(1);
+        given(accountRepository.creditBalance("1000000013", 1000L, IN_USE))
+                .willReturn(1);
+        given(accountRepository.findByAccountNumberIn(anyCollection()))
+                .willReturn(List.of(to, from));
+        given(transactionIdGenerator.next()).willReturn("withdrawalId", "depositId");
+        given(transactionRepository.saveAll(anyList()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransferDto transferDto = transactionService.transfer(
+                12L, "1000000012", "1000000013", 1000L);
+
+        //then
+        assertEquals(TRANSFER_OUT, transferDto.getWithdrawal().getTransactionType());
+        assertEquals("1000000012", transferDto.getWithdrawal().getAccountNumber());
+        assertEquals(9000L, transferDto.getWithdrawal().getBalanceSnapshot());
+        assertEquals(TRANSFER_IN, transferDto.getDeposit().getTransactionType());
+        assertEquals("1000000013", transferDto.getDeposit().getAccountNumber());
+        assertEquals(2000L, transferDto.getDeposit().getBalanceSnapshot());
+
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).saveAll(captor.capture());
+        assertEquals("depositId", captor.getValue().get(0).getCounterpartTransactionId());
+        assertEquals("withdrawalId", captor.getValue().get(1).getCounterpartTransactionId());
+        verify(accountBalanceCache).evictAfterCommit(12L);
+        verify(accountBalanceCache).evictAfterCommit(13L);
+    }
+
+    @Test
+    @DisplayName("입금 계좌가 해지되어 있으면 이체 실패 (출금도 롤백)")
+    void transfer_toAccountUnregistered() {
+        //given
+        given(accountRepository.debitBalance(anyString(), anyLong(), anyLong(), any()))
+                .willReturn(1);
+        given(accountRepository.creditBalance(anyString(), anyLong(), any()))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber("1000000013"))
+                .willReturn(Optional.of(Account.builder()
+                        .accountStatus(UNREGISTERED)
+                        .accountNumber("1000000013")
+                        .build()));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.transfer(12L, "1000000012", "1000000013", 1000L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void transfer_sameAccount() {
+        //given
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.transfer(12L, "1000000012", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+        verify(accountRepository, never()).debitBalance(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void transfer_ledgerMode_reject() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "ledgerEnabled", true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.transfer(12L, "1000000012", "1000000013", 1000L));
+
+        //then
+        assertEquals(ErrorCode.LEDGER_MODE_UNSUPPORTED, exception.getErrorCode());
+        verify(accountRepository, never()).debitBalance(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("이체 거래는 한쪽만 취소할 수 없다")
+    void cancelTransaction_transfer() {
+        //given
+        AccountUser user = AccountUser.builder().name("Pobi").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(Transaction.builder()
+                        .account(account)
+                        .transactionType(TRANSFER_OUT)
+                        .transactionResultType(S)
+                        .transactionId("transactionId")
+                        .transactedAt(LocalDateTime.now())
+                        .amount(CANCEL_AMOUNT)
+                        .build()));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance(
+                        "transactionId", "1000000012", CANCEL_AMOUNT));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+    }
+}